@@ -0,0 +1,353 @@
+package com.xc.framework.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.xc.framework.util.XCArrayUtil;
+import com.xc.framework.util.XCStringUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Date：2021/4/14
+ * Author：ZhangXuanChen
+ * Description：数据库性能对比测试,统计每秒操作数,结果输出到logcat(TAG:DBBenchmark);
+ * 改造前为BaselineDB:复刻改造前DBManager的insert/query(方法同步、每次操作先查sqlite_master判断表存在、操作后关闭连接、无WAL、拼接sql插入),
+ * 改造后为使用独立数据库文件的DBManager;两者各用一个测试数据库文件,不影响应用数据库
+ */
+@RunWith(AndroidJUnit4.class)
+public class DBBenchmarkTest {
+    public static final String TAG = "DBBenchmark";
+    private static final String BASELINE_DB_NAME = "xcBenchmarkBaseline.db";
+    private static final String CURRENT_DB_NAME = "xcBenchmark.db";
+    private static final int OPERATIONS = 1000;//每项测试操作数
+    private static final int THREADS = 4;//并发查询线程数
+    private Context context;
+    private BaselineDB baselineDB;
+    private DBHelper currentHelper;
+    private DBManager currentManager;
+
+    /**
+     * 测试表
+     */
+    public static class BenchmarkBean {
+        private String name;
+        private String value;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * 测试对象
+     */
+    private interface Target {
+        void insert(BenchmarkBean bean);
+
+        void insert(List<BenchmarkBean> beanList);
+
+        List<BenchmarkBean> query(BenchmarkBean bean);
+
+        int count();
+    }
+
+    /**
+     * 测试结果
+     */
+    private static class Result {
+        String name;
+        double insertOpsPerSecond;//单条插入
+        double bulkInsertRowsPerSecond;//批量插入
+        double queryOpsPerSecond;//单线程查询
+        double mixedOpsPerSecond;//多线程查询+单线程插入
+
+        @Override
+        public String toString() {
+            return name + "{" +
+                    "insertOpsPerSecond=" + (long) insertOpsPerSecond +
+                    ", bulkInsertRowsPerSecond=" + (long) bulkInsertRowsPerSecond +
+                    ", queryOpsPerSecond=" + (long) queryOpsPerSecond +
+                    ", mixedOpsPerSecond=" + (long) mixedOpsPerSecond +
+                    '}';
+        }
+    }
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(BASELINE_DB_NAME);
+        context.deleteDatabase(CURRENT_DB_NAME);
+        baselineDB = new BaselineDB(context);
+        currentHelper = new DBHelper(context, CURRENT_DB_NAME, 1);
+        currentManager = new DBManager(context, currentHelper);
+    }
+
+    @After
+    public void tearDown() {
+        currentManager.close();
+        currentHelper.close();
+        baselineDB.close();
+        context.deleteDatabase(BASELINE_DB_NAME);
+        context.deleteDatabase(CURRENT_DB_NAME);
+    }
+
+    @Test
+    public void compare() throws Exception {
+        Result before = run("before", new Target() {
+            @Override
+            public void insert(BenchmarkBean bean) {
+                List<BenchmarkBean> beanList = new ArrayList<BenchmarkBean>();
+                beanList.add(bean);
+                baselineDB.insert(beanList);
+            }
+
+            @Override
+            public void insert(List<BenchmarkBean> beanList) {
+                baselineDB.insert(beanList);
+            }
+
+            @Override
+            public List<BenchmarkBean> query(BenchmarkBean bean) {
+                return baselineDB.query(bean);
+            }
+
+            @Override
+            public int count() {
+                return baselineDB.count(BenchmarkBean.class);
+            }
+        });
+        Result after = run("after", new Target() {
+            @Override
+            public void insert(BenchmarkBean bean) {
+                currentManager.insert(bean);
+            }
+
+            @Override
+            public void insert(List<BenchmarkBean> beanList) {
+                currentManager.insert(beanList);
+            }
+
+            @Override
+            public List<BenchmarkBean> query(BenchmarkBean bean) {
+                return currentManager.query(bean);
+            }
+
+            @Override
+            public int count() {
+                return currentManager.queryTotalCount(new BenchmarkBean());
+            }
+        });
+        Log.i(TAG, before.toString());
+        Log.i(TAG, after.toString());
+        assertEquals(before.name + " rows", OPERATIONS * 2 + OPERATIONS / THREADS, baselineDB.count(BenchmarkBean.class));
+        assertEquals(after.name + " rows", OPERATIONS * 2 + OPERATIONS / THREADS, currentManager.queryTotalCount(new BenchmarkBean()));
+    }
+
+    private Result run(String name, final Target target) throws InterruptedException {
+        Result result = new Result();
+        result.name = name;
+        //单条插入
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            target.insert(newBean(i));
+        }
+        result.insertOpsPerSecond = opsPerSecond(OPERATIONS, start);
+        //批量插入
+        List<BenchmarkBean> beanList = new ArrayList<BenchmarkBean>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            beanList.add(newBean(OPERATIONS * 2 + i));
+        }
+        start = System.nanoTime();
+        target.insert(beanList);
+        result.bulkInsertRowsPerSecond = opsPerSecond(OPERATIONS, start);
+        //单线程查询
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            target.query(newQuery(i));
+        }
+        result.queryOpsPerSecond = opsPerSecond(OPERATIONS, start);
+        //多线程查询+单线程插入
+        final int perThread = OPERATIONS / THREADS;
+        List<Thread> threadList = new ArrayList<Thread>();
+        for (int t = 0; t < THREADS; t++) {
+            final int offset = t;
+            threadList.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        target.query(newQuery((i + offset) % OPERATIONS));
+                    }
+                }
+            });
+        }
+        threadList.add(new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < perThread; i++) {
+                    target.insert(newBean(OPERATIONS + i));
+                }
+            }
+        });
+        start = System.nanoTime();
+        for (Thread thread : threadList) {
+            thread.start();
+        }
+        for (Thread thread : threadList) {
+            thread.join();
+        }
+        result.mixedOpsPerSecond = opsPerSecond(perThread * threadList.size(), start);
+        return result;
+    }
+
+    private static BenchmarkBean newBean(int i) {
+        BenchmarkBean bean = new BenchmarkBean();
+        bean.setName("name" + i);
+        bean.setValue("value" + i);
+        return bean;
+    }
+
+    private static BenchmarkBean newQuery(int i) {
+        BenchmarkBean bean = new BenchmarkBean();
+        bean.setName("name" + i);
+        return bean;
+    }
+
+    private static double opsPerSecond(int operations, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed > 0 ? operations * 1000000000d / elapsed : 0;
+    }
+
+    /**
+     * 改造前DBManager的insert/query实现(每次操作打开并关闭连接,所有操作串行)
+     */
+    private static class BaselineDB extends SQLiteOpenHelper {
+
+        BaselineDB(Context context) {
+            super(context, BASELINE_DB_NAME, null, 1);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        }
+
+        synchronized boolean isTableExist(Class<?> tableClass) {
+            SQLiteDatabase db = getReadableDatabase();
+            Cursor cursor = null;
+            try {
+                cursor = db.rawQuery("select count(*) as c from sqlite_master where type = 'table' and name = '" + tableClass.getSimpleName() + "'", null);
+                return cursor != null && cursor.moveToNext() && cursor.getInt(0) > 0;
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                db.close();
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+            return false;
+        }
+
+        synchronized void createTable(Class<?> tableClass) {
+            SQLiteDatabase db = getReadableDatabase();
+            try {
+                db.execSQL(DBUtil.getCreateTableSql(tableClass));
+            } finally {
+                db.close();
+            }
+        }
+
+        synchronized <T> void insert(List<T> classObjectList) {
+            if (!isTableExist(classObjectList.get(0).getClass())) {
+                createTable(classObjectList.get(0).getClass());
+            }
+            SQLiteDatabase db = getReadableDatabase();
+            List<List<T>> splitObjectList = new ArrayList<List<T>>();
+            if (classObjectList.size() > 500) {//sqlite每次插入上限500
+                splitObjectList.addAll(XCArrayUtil.split(classObjectList, 500));
+            } else {
+                splitObjectList.add(classObjectList);
+            }
+            try {
+                for (int i = 0; i < splitObjectList.size(); i++) {
+                    String insertSql = DBUtil.getInsertSql(splitObjectList.get(i), null);
+                    if (!XCStringUtil.isEmpty(insertSql)) {
+                        db.execSQL(insertSql);
+                    }
+                }
+            } finally {
+                db.close();
+            }
+        }
+
+        synchronized <T> List<T> query(T classObject) {
+            if (!isTableExist(classObject.getClass())) {
+                return null;
+            }
+            String sql = DBUtil.getQuerySql(classObject, -1, -1, null, null, null, null);
+            SQLiteDatabase db = getReadableDatabase();
+            Cursor cursor = null;
+            try {
+                cursor = db.rawQuery(sql, null);
+                List<T> list = new ArrayList<T>();
+                if (cursor.moveToFirst()) {
+                    do {
+                        T newClassObject = DBUtil.parseClassObject(cursor, classObject, false);
+                        if (newClassObject != null) {
+                            list.add(newClassObject);
+                        }
+                    } while (cursor.moveToNext());
+                }
+                return list;
+            } finally {
+                db.close();
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
+
+        synchronized int count(Class<?> tableClass) {
+            SQLiteDatabase db = getReadableDatabase();
+            Cursor cursor = null;
+            try {
+                cursor = db.rawQuery("select count(*) from " + tableClass.getSimpleName(), null);
+                return cursor.moveToFirst() ? cursor.getInt(0) : -1;
+            } finally {
+                db.close();
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.xc.framework.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Date：2021/4/14
+ * Author：ZhangXuanChen
+ * Description：索引注释（数据库索引字段,同名索引的字段按声明顺序组成联合索引）
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface FieldIndex {
+    /**
+     * 索引名,默认idx_表名_字段名
+     *
+     */
+    String value() default "";
+
+    /**
+     * 是否唯一索引
+     *
+     */
+    boolean unique() default false;
+}
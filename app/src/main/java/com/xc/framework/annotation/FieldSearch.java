@@ -0,0 +1,20 @@
+package com.xc.framework.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Date：2021/4/15
+ * Author：ZhangXuanChen
+ * Description：全文检索注释（建表时为注释字段创建表名_fts全文检索表,按词/前缀匹配）
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface FieldSearch {
+}
@@ -0,0 +1,30 @@
+package com.xc.framework.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Date：2021/4/14
+ * Author：ZhangXuanChen
+ * Description：字段类型注释（数据库列类型,未注释为text）
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface FieldType {
+    String TEXT = "text";
+    String INTEGER = "integer";
+    String REAL = "real";
+    String BLOB = "blob";
+
+    /**
+     * 列类型,FieldType.TEXT/INTEGER/REAL/BLOB
+     *
+     */
+    String value() default TEXT;
+}
@@ -12,6 +12,10 @@ public class FieldBean implements Serializable {
     private String alias;//别名
     private boolean isKeyId;//是否反射主键
     private boolean isUnique;//是否约束字段
+    private String type;//列类型
+    private String index;//索引名
+    private boolean isIndexUnique;//是否唯一索引
+    private boolean isSearch;//是否全文检索字段
 
     public FieldBean() {
     }
@@ -48,6 +52,38 @@ public class FieldBean implements Serializable {
         isUnique = unique;
     }
 
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public void setIndex(String index) {
+        this.index = index;
+    }
+
+    public boolean isIndexUnique() {
+        return isIndexUnique;
+    }
+
+    public void setIndexUnique(boolean indexUnique) {
+        isIndexUnique = indexUnique;
+    }
+
+    public boolean isSearch() {
+        return isSearch;
+    }
+
+    public void setSearch(boolean search) {
+        isSearch = search;
+    }
+
     @Override
     public String toString() {
         return "FieldBean{" +
@@ -55,6 +91,10 @@ public class FieldBean implements Serializable {
                 ", alias='" + alias + '\'' +
                 ", isKeyId=" + isKeyId +
                 ", isUnique=" + isUnique +
+                ", type='" + type + '\'' +
+                ", index='" + index + '\'' +
+                ", isIndexUnique=" + isIndexUnique +
+                ", isSearch=" + isSearch +
                 '}';
     }
 }
@@ -35,13 +35,17 @@ public class BitmapGlobalConfig {
 
     private boolean memoryCacheEnabled = true;
     private boolean diskCacheEnabled = true;
+    private boolean diskCacheBinaryJournal = false;
+    private boolean diskCacheLazyLoad = false;
 
     private Downloader downloader;
     private BitmapCache bitmapCache;
 
+    // downloads run on the load executor; disk cache lookups, decoding and
+    // transforming run on the disk cache executor
     private final static int DEFAULT_POOL_SIZE = 5;
-    private final static PriorityExecutor BITMAP_LOAD_EXECUTOR = new PriorityExecutor(DEFAULT_POOL_SIZE);
-    private final static PriorityExecutor DISK_CACHE_EXECUTOR = new PriorityExecutor(2);
+    private final static PriorityExecutor BITMAP_LOAD_EXECUTOR = new PriorityExecutor(DEFAULT_POOL_SIZE, true);
+    private final static PriorityExecutor DISK_CACHE_EXECUTOR = new PriorityExecutor(2, true);
 
     private long defaultCacheExpiry = 1000L * 60 * 60 * 24 * 30; // 30 days
     private int defaultConnectTimeout = 1000 * 15; // 15 sec
@@ -209,6 +213,30 @@ public class BitmapGlobalConfig {
         this.diskCacheEnabled = diskCacheEnabled;
     }
 
+    public boolean isDiskCacheBinaryJournal() {
+        return diskCacheBinaryJournal;
+    }
+
+    /**
+     * Use the checksummed binary journal for the disk cache. Takes effect the
+     * next time the disk cache is opened; an existing journal is migrated.
+     */
+    public void setDiskCacheBinaryJournal(boolean diskCacheBinaryJournal) {
+        this.diskCacheBinaryJournal = diskCacheBinaryJournal;
+    }
+
+    public boolean isDiskCacheLazyLoad() {
+        return diskCacheLazyLoad;
+    }
+
+    /**
+     * Read the disk cache journal in the background instead of while opening
+     * it. Takes effect the next time the disk cache is opened.
+     */
+    public void setDiskCacheLazyLoad(boolean diskCacheLazyLoad) {
+        this.diskCacheLazyLoad = diskCacheLazyLoad;
+    }
+
     public FileNameGenerator getFileNameGenerator() {
         return fileNameGenerator;
     }
@@ -2,8 +2,12 @@ package com.xc.framework.bitmap;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.view.View;
 import android.view.animation.Animation;
@@ -13,14 +17,21 @@ import com.xc.framework.bitmap.callback.BitmapLoadCallBack;
 import com.xc.framework.bitmap.callback.BitmapLoadFrom;
 import com.xc.framework.bitmap.callback.DefaultBitmapLoadCallBack;
 import com.xc.framework.bitmap.core.AsyncDrawable;
+import com.xc.framework.bitmap.core.BitmapCache;
 import com.xc.framework.bitmap.core.BitmapSize;
 import com.xc.framework.bitmap.download.Downloader;
-import com.xc.framework.bitmap.task.PriorityAsyncTask;
+import com.xc.framework.bitmap.task.Priority;
 import com.xc.framework.bitmap.task.PriorityExecutor;
+import com.xc.framework.bitmap.task.PriorityRunnable;
 import com.xc.framework.bitmap.task.TaskHandler;
 
 import java.io.File;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author ZhangXuanChen
@@ -34,6 +45,14 @@ public class BitmapLoader implements TaskHandler {
 	private boolean cancelAllTask = false;
 	private final Object pauseTaskLock = new Object();
 
+	private final ConcurrentHashMap<String, BitmapLoadTask<View>> prefetchTasks = new ConcurrentHashMap<String, BitmapLoadTask<View>>();
+	private final LinkedList<BitmapLoadTask<?>> waitingPrefetches = new LinkedList<BitmapLoadTask<?>>();
+	private final Object prefetchLock = new Object();
+	private int runningPrefetchCount = 0;
+	private int prefetchConcurrency = 2;
+	private long prefetchBandwidth = 0;
+	private long prefetchBudgetTime = 0;
+
 	private Context context;
 	private BitmapGlobalConfig globalConfig;
 	private BitmapDisplayConfig defaultDisplayConfig;
@@ -192,6 +211,16 @@ public class BitmapLoader implements TaskHandler {
 		return this;
 	}
 
+	public BitmapLoader configDiskCacheBinaryJournal(boolean binaryJournal) {
+		globalConfig.setDiskCacheBinaryJournal(binaryJournal);
+		return this;
+	}
+
+	public BitmapLoader configDiskCacheLazyLoad(boolean lazyLoad) {
+		globalConfig.setDiskCacheLazyLoad(lazyLoad);
+		return this;
+	}
+
 	public BitmapLoader configDiskCacheFileNameGenerator(FileNameGenerator fileNameGenerator) {
 		globalConfig.setFileNameGenerator(fileNameGenerator);
 		return this;
@@ -202,6 +231,27 @@ public class BitmapLoader implements TaskHandler {
 		return this;
 	}
 
+	/**
+	 * @param concurrency
+	 *            the number of prefetch downloads allowed to run at once, 2
+	 *            by default
+	 */
+	public BitmapLoader configPrefetchConcurrency(int concurrency) {
+		if (concurrency > 0) {
+			prefetchConcurrency = concurrency;
+		}
+		return this;
+	}
+
+	/**
+	 * @param bytesPerSecond
+	 *            the combined download rate of all prefetches, 0 for no limit
+	 */
+	public BitmapLoader configPrefetchBandwidth(long bytesPerSecond) {
+		prefetchBandwidth = bytesPerSecond;
+		return this;
+	}
+
 	// //////////////////////// display ////////////////////////////////////
 
 	public <T extends View> void display(T container, String uri) {
@@ -253,19 +303,125 @@ public class BitmapLoader implements TaskHandler {
 
 			final BitmapLoadTask<T> loadTask = new BitmapLoadTask<T>(container, uri, displayConfig, callBack);
 
-			// get executor
-			PriorityExecutor executor = globalConfig.getBitmapLoadExecutor();
-			File diskCacheFile = this.getBitmapFileFromDiskCache(uri);
-			boolean diskCacheExist = diskCacheFile != null && diskCacheFile.exists();
-			if (diskCacheExist && executor.isBusy()) {
-				executor = globalConfig.getDiskCacheExecutor();
-			}
 			// set loading image
 			Drawable loadingDrawable = displayConfig.getLoadingDrawable();
 			callBack.setDrawable(container, new AsyncDrawable<T>(loadingDrawable, loadTask));
 
 			loadTask.setPriority(displayConfig.getPriority());
-			loadTask.executeOnExecutor(executor);
+			loadTask.start();
+		}
+	}
+
+	// //////////////////////// prefetch ////////////////////////////////////
+
+	public PrefetchGroup prefetch(List<String> uris) {
+		return prefetch(uris, false, null);
+	}
+
+	/**
+	 * Load bitmaps ahead of their display at {@link Priority#BG_LOW}, at most
+	 * {@link #configPrefetchConcurrency} downloads at a time and within
+	 * {@link #configPrefetchBandwidth}. A display of a uri whose prefetch is
+	 * downloading waits for it instead of downloading again; one whose
+	 * prefetch is still queued takes its place.
+	 *
+	 * @param uris
+	 * @param toMemory
+	 *            true to decode into the memory cache as well, false to only
+	 *            download into the disk cache.
+	 * @param maxSize
+	 *            the size to decode to, must match the size the bitmap is
+	 *            displayed at for the memory cache to hit. null for the
+	 *            default size.
+	 * @return the started prefetches, to cancel them together
+	 */
+	public PrefetchGroup prefetch(List<String> uris, boolean toMemory, BitmapSize maxSize) {
+		PrefetchGroup group = new PrefetchGroup();
+		if (uris == null) {
+			return group;
+		}
+
+		BitmapDisplayConfig displayConfig = defaultDisplayConfig.cloneNew();
+		if (maxSize != null) {
+			displayConfig.setBitmapMaxSize(maxSize);
+		}
+		displayConfig.setPriority(Priority.BG_LOW);
+
+		BitmapCache cache = globalConfig.getBitmapCache();
+		for (String uri : uris) {
+			if (TextUtils.isEmpty(uri) || prefetchTasks.containsKey(uri)) {
+				continue;
+			}
+			if (toMemory && cache.getBitmapFromMemCache(uri, displayConfig) != null) {
+				continue;
+			}
+			BitmapLoadTask<View> task = new BitmapLoadTask<View>(uri, displayConfig, group, toMemory);
+			if (prefetchTasks.putIfAbsent(uri, task) == null) {
+				group.add(task);
+				task.setPriority(Priority.BG_LOW);
+				task.start();
+			}
+		}
+		return group;
+	}
+
+	/**
+	 * @return the number of prefetches queued or running
+	 */
+	public int getPrefetchCount() {
+		return prefetchTasks.size();
+	}
+
+	private void startPrefetchDownload(BitmapLoadTask<?> task) {
+		synchronized (prefetchLock) {
+			if (runningPrefetchCount >= prefetchConcurrency) {
+				waitingPrefetches.add(task);
+				return;
+			}
+			if (task.isCancelled()) {
+				return;
+			}
+			runningPrefetchCount++;
+			task.prefetchPermit = true;
+		}
+		task.submitStage(BitmapLoadTask.STAGE_DOWNLOAD, globalConfig.getBitmapLoadExecutor());
+	}
+
+	private void finishPrefetchDownload() {
+		BitmapLoadTask<?> next = null;
+		synchronized (prefetchLock) {
+			runningPrefetchCount--;
+			while (next == null && !waitingPrefetches.isEmpty()) {
+				BitmapLoadTask<?> task = waitingPrefetches.removeFirst();
+				if (!task.isCancelled()) {
+					next = task;
+					next.prefetchPermit = true;
+					runningPrefetchCount++;
+				}
+			}
+		}
+		if (next != null) {
+			next.submitStage(BitmapLoadTask.STAGE_DOWNLOAD, globalConfig.getBitmapLoadExecutor());
+		}
+	}
+
+	/**
+	 * Holds the calling download thread back while prefetches read faster
+	 * than {@link #configPrefetchBandwidth}, allowing a burst of one second.
+	 */
+	private void throttlePrefetch(long bytes) {
+		long bytesPerSecond = prefetchBandwidth;
+		if (bytesPerSecond <= 0 || bytes <= 0) {
+			return;
+		}
+		long delay;
+		synchronized (prefetchLock) {
+			long now = SystemClock.uptimeMillis();
+			prefetchBudgetTime = Math.max(prefetchBudgetTime, now - 1000) + bytes * 1000 / bytesPerSecond;
+			delay = prefetchBudgetTime - now;
+		}
+		if (delay > 0) {
+			SystemClock.sleep(delay);
 		}
 	}
 
@@ -345,6 +501,38 @@ public class BitmapLoader implements TaskHandler {
 		synchronized (pauseTaskLock) {
 			pauseTaskLock.notifyAll();
 		}
+		reprioritizeTasks();
+	}
+
+	/**
+	 * Drops queued tasks whose container was recycled and runs the ones whose
+	 * container is on screen first. Call on the UI thread once a list comes
+	 * to rest; {@link #resume()} does it already.
+	 */
+	public void reprioritizeTasks() {
+		globalConfig.getBitmapLoadExecutor().reprioritize();
+		globalConfig.getDiskCacheExecutor().reprioritize();
+	}
+
+	/**
+	 * @return the number of load tasks waiting for a thread
+	 */
+	public int getPendingTaskCount() {
+		return globalConfig.getBitmapLoadExecutor().getQueueSize() + globalConfig.getDiskCacheExecutor().getQueueSize();
+	}
+
+	/**
+	 * @return the number of load tasks dropped before they started
+	 */
+	public long getDroppedTaskCount() {
+		return globalConfig.getBitmapLoadExecutor().getDroppedCount() + globalConfig.getDiskCacheExecutor().getDroppedCount();
+	}
+
+	/**
+	 * @return the number of load tasks that loaded a bitmap after their container was recycled
+	 */
+	public long getWastedTaskCount() {
+		return globalConfig.getBitmapLoadExecutor().getWastedCount() + globalConfig.getDiskCacheExecutor().getWastedCount();
 	}
 
 	@Override
@@ -394,13 +582,52 @@ public class BitmapLoader implements TaskHandler {
 		return false;
 	}
 
-	public class BitmapLoadTask<T extends View> extends PriorityAsyncTask<Object, Object, Bitmap> {
+	/**
+	 * Delivers the progress and the result of load tasks on the UI thread.
+	 */
+	private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Loads a bitmap in stages, each on its own executor: the disk cache
+	 * lookup and decode on the disk cache executor, the download on the load
+	 * executor, and the rotation and transformation of a downloaded bitmap
+	 * back on the disk cache executor. Cached bitmaps therefore never wait
+	 * behind network I/O. The memory cache is checked on the UI thread by
+	 * {@link #display}.
+	 * <p>
+	 * A prefetch task has no container and delivers nothing; a display task
+	 * that misses the disk cache while a prefetch of its uri downloads
+	 * follows it and looks the disk cache up again once it has finished.
+	 * <p>
+	 * The task only holds the state shared by its stages; a cancelled task
+	 * delivers nothing.
+	 */
+	public class BitmapLoadTask<T extends View> {
+		private static final int STAGE_DISK_CACHE = 0;
+		private static final int STAGE_DOWNLOAD = 1;
+		private static final int STAGE_TRANSFORM = 2;
+
 		private final String uri;
 		private final WeakReference<T> containerReference;
 		private final BitmapLoadCallBack<T> callBack;
 		private final BitmapDisplayConfig displayConfig;
 
 		private BitmapLoadFrom from = BitmapLoadFrom.DISK_CACHE;
+		private volatile PriorityExecutor executor;
+		private volatile BitmapCache.BitmapMeta downloaded;
+		private boolean loadStarted = false;
+
+		private final PrefetchGroup prefetchGroup;
+		private final boolean prefetchToMemory;
+		private final List<BitmapLoadTask<?>> followers = new ArrayList<BitmapLoadTask<?>>();
+		private boolean prefetchFinished = false;
+		private volatile boolean prefetchDownloading = false;
+		private boolean prefetchPermit = false;
+		private long prefetchProgress = 0;
+
+		private Priority priority;
+		private final AtomicBoolean cancelled = new AtomicBoolean();
+		private Thread downloadThread;
 
 		public BitmapLoadTask(T container, String uri, BitmapDisplayConfig config, BitmapLoadCallBack<T> callBack) {
 			if (container == null || uri == null || config == null || callBack == null) {
@@ -411,49 +638,296 @@ public class BitmapLoader implements TaskHandler {
 			this.callBack = callBack;
 			this.uri = uri;
 			this.displayConfig = config;
+			this.prefetchGroup = null;
+			this.prefetchToMemory = false;
+		}
+
+		private BitmapLoadTask(String uri, BitmapDisplayConfig config, PrefetchGroup group, boolean toMemory) {
+			this.containerReference = new WeakReference<T>(null);
+			this.callBack = null;
+			this.uri = uri;
+			this.displayConfig = config;
+			this.prefetchGroup = group;
+			this.prefetchToMemory = toMemory;
 		}
 
-		@Override
-		protected Bitmap doInBackground(Object... params) {
+		private void start() {
+			submitStage(STAGE_DISK_CACHE, globalConfig.getDiskCacheExecutor());
+		}
+
+		public Priority getPriority() {
+			return priority;
+		}
 
+		public void setPriority(Priority priority) {
+			this.priority = priority;
+		}
+
+		/**
+		 * @param mayInterruptIfRunning
+		 *            true to interrupt the thread downloading for this task
+		 * @return false if the task was already cancelled
+		 */
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if (!cancelled.compareAndSet(false, true)) {
+				return false;
+			}
+			if (mayInterruptIfRunning) {
+				synchronized (this) {
+					if (downloadThread != null) {
+						downloadThread.interrupt();
+					}
+				}
+			}
 			synchronized (pauseTaskLock) {
-				while (pauseTask && !this.isCancelled()) {
-					try {
-						pauseTaskLock.wait();
-						if (cancelAllTask) {
-							return null;
+				pauseTaskLock.notifyAll();
+			}
+			return true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled.get();
+		}
+
+		/**
+		 * Sets the thread {@link #cancel(boolean)} interrupts; clearing it
+		 * also clears an interrupt left for the pooled thread.
+		 */
+		private void setDownloadThread(Thread thread) {
+			synchronized (this) {
+				downloadThread = thread;
+			}
+			if (thread == null) {
+				Thread.interrupted();
+			}
+		}
+
+		private void submitStage(final int stage, PriorityExecutor stageExecutor) {
+			executor = stageExecutor;
+			stageExecutor.execute(new PriorityRunnable(this.getPriority(), null) {
+				@Override
+				public void run() {
+					runStage(stage);
+				}
+
+				@Override
+				public boolean isStale() {
+					return BitmapLoadTask.this.isStale();
+				}
+
+				@Override
+				public boolean isVisible() {
+					return BitmapLoadTask.this.isVisible();
+				}
+
+				@Override
+				public void drop() {
+					BitmapLoadTask.this.cancel(false);
+					if (prefetchGroup != null) {
+						finishPrefetch();
+					}
+				}
+			});
+		}
+
+		private void runStage(int stage) {
+			if (stage != STAGE_TRANSFORM) {
+				synchronized (pauseTaskLock) {
+					while (pauseTask && !this.isCancelled()) {
+						try {
+							pauseTaskLock.wait();
+							if (cancelAllTask) {
+								deliver(null);
+								return;
+							}
+						} catch (Throwable e) {
 						}
-					} catch (Throwable e) {
 					}
 				}
 			}
 
-			Bitmap bitmap = null;
-
-			// get cache from disk cache
-			if (!this.isCancelled() && this.getTargetContainer() != null) {
-				this.publishProgress(PROGRESS_LOAD_STARTED);
-				bitmap = globalConfig.getBitmapCache().getBitmapFromDiskCache(uri, displayConfig);
+			if (!this.isWanted()) {
+				deliver(null);
+				return;
 			}
 
-			// download image
-			if (bitmap == null && !this.isCancelled() && this.getTargetContainer() != null) {
-				bitmap = globalConfig.getBitmapCache().downloadBitmap(uri, displayConfig, this);
+			BitmapCache cache = globalConfig.getBitmapCache();
+			switch (stage) {
+			case STAGE_DISK_CACHE:
+				if (prefetchGroup != null) {
+					boolean cached;
+					if (prefetchToMemory) {
+						cached = cache.getBitmapFromDiskCache(uri, displayConfig) != null;
+					} else {
+						cached = cache.getBitmapFileFromDiskCache(uri) != null;
+					}
+					if (cached) {
+						deliver(null);
+					} else {
+						startPrefetchDownload(this);
+					}
+					break;
+				}
+				if (!loadStarted) {
+					loadStarted = true;
+					this.publishProgress(PROGRESS_LOAD_STARTED);
+				}
+				Bitmap bitmap = cache.getBitmapFromDiskCache(uri, displayConfig);
+				if (bitmap != null) {
+					deliver(bitmap);
+				} else if (!followPrefetch()) {
+					submitStage(STAGE_DOWNLOAD, globalConfig.getBitmapLoadExecutor());
+				}
+				break;
+			case STAGE_DOWNLOAD:
 				from = BitmapLoadFrom.URI;
+				boolean toDiskOnly = prefetchGroup != null && !prefetchToMemory;
+				if (prefetchGroup != null) {
+					prefetchDownloading = true;
+				}
+				setDownloadThread(Thread.currentThread());
+				try {
+					if (toDiskOnly) {
+						cache.downloadToDiskCache(uri, this);
+					} else {
+						downloaded = cache.fetchBitmap(uri, displayConfig, this);
+					}
+				} finally {
+					setDownloadThread(null);
+				}
+				if (toDiskOnly) {
+					deliver(null);
+				} else if (downloaded != null) {
+					submitStage(STAGE_TRANSFORM, globalConfig.getDiskCacheExecutor());
+				} else {
+					deliver(null);
+				}
+				break;
+			case STAGE_TRANSFORM:
+				BitmapCache.BitmapMeta bitmapMeta = downloaded;
+				downloaded = null;
+				deliver(cache.transformBitmap(uri, displayConfig, bitmapMeta));
+				break;
+			default:
+				break;
 			}
+		}
 
-			return bitmap;
+		/**
+		 * Hands the result of the last stage to the UI thread.
+		 */
+		private void deliver(final Bitmap bitmap) {
+			if (prefetchGroup != null) {
+				finishPrefetch();
+				return;
+			}
+			MAIN_HANDLER.post(new Runnable() {
+				@Override
+				public void run() {
+					if (!BitmapLoadTask.this.isCancelled()) {
+						onPostExecute(bitmap);
+					}
+				}
+			});
+		}
+
+		/**
+		 * Waits for the prefetch of the same uri if it is downloading, or
+		 * cancels it if it has not started yet.
+		 * 
+		 * @return true if this task resumes when the prefetch finishes
+		 */
+		private boolean followPrefetch() {
+			BitmapLoadTask<View> prefetch = prefetchTasks.get(uri);
+			if (prefetch == null) {
+				return false;
+			}
+			synchronized (prefetch.followers) {
+				if (prefetch.prefetchFinished) {
+					return false;
+				}
+				if (prefetch.prefetchDownloading) {
+					prefetch.followers.add(this);
+					return true;
+				}
+			}
+			prefetch.cancelPrefetch();
+			return false;
+		}
+
+		void cancelPrefetch() {
+			this.cancel(false);
+			finishPrefetch();
+		}
+
+		private void finishPrefetch() {
+			List<BitmapLoadTask<?>> resumed;
+			synchronized (followers) {
+				if (prefetchFinished) {
+					return;
+				}
+				prefetchFinished = true;
+				resumed = new ArrayList<BitmapLoadTask<?>>(followers);
+				followers.clear();
+			}
+			prefetchTasks.remove(uri, this);
+
+			boolean release;
+			synchronized (prefetchLock) {
+				waitingPrefetches.remove(this);
+				release = prefetchPermit;
+				prefetchPermit = false;
+			}
+			if (release) {
+				finishPrefetchDownload();
+			}
+
+			for (BitmapLoadTask<?> follower : resumed) {
+				follower.start();
+			}
+		}
+
+		boolean isPrefetchFinished() {
+			synchronized (followers) {
+				return prefetchFinished;
+			}
+		}
+
+		/**
+		 * @return false once the task is cancelled or its container shows
+		 *         another uri; downloads stop reading then.
+		 */
+		public boolean isWanted() {
+			return !this.isCancelled() && (prefetchGroup != null || this.getTargetContainer() != null);
 		}
 
 		public void updateProgress(long total, long current) {
+			if (prefetchGroup != null) {
+				throttlePrefetch(current - prefetchProgress);
+				prefetchProgress = current;
+				return;
+			}
 			this.publishProgress(PROGRESS_LOADING, total, current);
 		}
 
 		private static final int PROGRESS_LOAD_STARTED = 0;
 		private static final int PROGRESS_LOADING = 1;
 
-		@Override
-		protected void onProgressUpdate(Object... values) {
+		private void publishProgress(final Object... values) {
+			if (this.isCancelled()) {
+				return;
+			}
+			MAIN_HANDLER.post(new Runnable() {
+				@Override
+				public void run() {
+					if (!BitmapLoadTask.this.isCancelled()) {
+						onProgressUpdate(values);
+					}
+				}
+			});
+		}
+
+		private void onProgressUpdate(Object... values) {
 			if (values == null || values.length == 0)
 				return;
 
@@ -475,8 +949,7 @@ public class BitmapLoader implements TaskHandler {
 			}
 		}
 
-		@Override
-		protected void onPostExecute(Bitmap bitmap) {
+		private void onPostExecute(Bitmap bitmap) {
 			final T container = this.getTargetContainer();
 			if (container != null) {
 				if (bitmap != null) {
@@ -484,14 +957,23 @@ public class BitmapLoader implements TaskHandler {
 				} else {
 					callBack.onLoadFailed(container, this.uri, displayConfig.getLoadFailedDrawable());
 				}
+			} else if (bitmap != null && executor != null) {
+				executor.recordWasted();
 			}
 		}
 
-		@Override
-		protected void onCancelled(Bitmap bitmap) {
-			synchronized (pauseTaskLock) {
-				pauseTaskLock.notifyAll();
-			}
+		private boolean isStale() {
+			return !this.isWanted();
+		}
+
+		/**
+		 * @return true if some part of the container is on screen; a row
+		 *         scrolled out of a list is still shown but has no visible
+		 *         rect
+		 */
+		private boolean isVisible() {
+			final T container = this.getTargetContainer();
+			return container != null && container.isShown() && container.getGlobalVisibleRect(new Rect());
 		}
 
 		public T getTargetContainer() {
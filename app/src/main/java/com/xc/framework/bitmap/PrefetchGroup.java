@@ -0,0 +1,56 @@
+package com.xc.framework.bitmap;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2015-9-25
+ * @package com.xc.framework.bitmap
+ * @description The tasks started by one {@link BitmapLoader#prefetch} call,
+ *              cancelled together.
+ */
+public class PrefetchGroup {
+
+	private final List<BitmapLoader.BitmapLoadTask<?>> tasks = new CopyOnWriteArrayList<BitmapLoader.BitmapLoadTask<?>>();
+	private volatile boolean cancelled = false;
+
+	PrefetchGroup() {
+	}
+
+	void add(BitmapLoader.BitmapLoadTask<?> task) {
+		tasks.add(task);
+	}
+
+	/**
+	 * Cancel every prefetch of this group that has not finished yet. Display
+	 * calls waiting on one of them load the bitmap themselves.
+	 */
+	public void cancel() {
+		cancelled = true;
+		for (BitmapLoader.BitmapLoadTask<?> task : tasks) {
+			task.cancelPrefetch();
+		}
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return the number of prefetches of this group still queued or running
+	 */
+	public int getPendingCount() {
+		int count = 0;
+		for (BitmapLoader.BitmapLoadTask<?> task : tasks) {
+			if (!task.isPrefetchFinished()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int size() {
+		return tasks.size();
+	}
+}
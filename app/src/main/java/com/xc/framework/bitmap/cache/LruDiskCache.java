@@ -7,9 +7,12 @@ import com.xc.framework.util.XCIOUtil;
 
 import org.apache.http.protocol.HTTP;
 
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
@@ -31,9 +34,13 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 /**
  * A cache that uses a bounded amount of space on a filesystem. Each cache entry
@@ -86,8 +93,13 @@ public final class LruDiskCache implements Closeable {
 	static final String JOURNAL_FILE = "journal";
 	static final String JOURNAL_FILE_TEMP = "journal.tmp";
 	static final String JOURNAL_FILE_BACKUP = "journal.bkp";
+	static final String JOURNAL_FILE_BINARY = "journal.bin";
+	static final String JOURNAL_FILE_BINARY_TEMP = "journal.bin.tmp";
+	static final String JOURNAL_FILE_BINARY_BACKUP = "journal.bin.bkp";
 	static final String MAGIC = "libcore.io.DiskLruCache";
 	static final String VERSION = "1";
+	static final int BINARY_MAGIC = 0x4C444A42;
+	static final int BINARY_VERSION = 1;
 	static final long ANY_SEQUENCE_NUMBER = -1;
 	private static final char CLEAN = 'C';
 	private static final char UPDATE = 'U';
@@ -126,20 +138,51 @@ public final class LruDiskCache implements Closeable {
 	 * may occasionally be compacted by dropping redundant lines. A temporary
 	 * file named "journal.tmp" will be used during compaction; that file should
 	 * be deleted if it exists when the cache is opened.
+	 *
+	 * When opened with binaryJournal the cache uses "journal.bin" instead. Its
+	 * header is four ints: BINARY_MAGIC, BINARY_VERSION, the application's
+	 * version and the value count. Each record is a one byte state (the same
+	 * 'C', 'U', 'D' and 'R' tags), an unsigned short key length followed by
+	 * the UTF-8 key, for CLEAN records the expiry timestamp and the value
+	 * lengths as longs, and finally the CRC32 of the record as an int. A
+	 * truncated or mismatching record marks the torn tail of a crash: reading
+	 * stops there and the journal is rebuilt from the records before it.
 	 */
 
 	private final File directory;
 	private final File journalFile;
 	private final File journalFileTmp;
 	private final File journalFileBackup;
+	private final boolean binaryJournal;
 	private final int appVersion;
 	private long maxSize;
 	private final int valueCount;
 	private long size = 0;
-	private Writer journalWriter;
+	private OutputStream journalWriter;
 	private final LinkedHashMap<String, Entry> lruEntries = new LinkedHashMap<String, Entry>(0, 0.75f, true);
 	private int redundantOpCount;
 
+	/**
+	 * True if the journal read on open ended in a torn record and has to be
+	 * rewritten before it is appended to.
+	 */
+	private boolean journalRebuildOnOpen;
+
+	/**
+	 * Pending background load of the journal when the cache was opened lazily.
+	 * Every public operation waits for it before touching the index.
+	 */
+	private volatile Future<Void> pendingLoad;
+
+	/**
+	 * CLEAN, DELETE and READ records are not flushed one by one; the first
+	 * one queues a flush on the background thread and every record written
+	 * before it runs goes out in the same write.
+	 */
+	private boolean journalFlushPending;
+	private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(128);
+	private final CRC32 recordChecksum = new CRC32();
+
 	/**
 	 * To differentiate between old and current snapshots, each entry is given a
 	 * sequence number each time an edit is committed. A snapshot is stale if
@@ -166,13 +209,25 @@ public final class LruDiskCache implements Closeable {
 			return null;
 		}
 	};
+	private final Callable<Void> flushCallable = new Callable<Void>() {
+		public Void call() throws Exception {
+			synchronized (LruDiskCache.this) {
+				journalFlushPending = false;
+				if (journalWriter != null) {
+					journalWriter.flush();
+				}
+			}
+			return null;
+		}
+	};
 
-	private LruDiskCache(File directory, int appVersion, int valueCount, long maxSize) {
+	private LruDiskCache(File directory, int appVersion, int valueCount, long maxSize, boolean binaryJournal) {
 		this.directory = directory;
 		this.appVersion = appVersion;
-		this.journalFile = new File(directory, JOURNAL_FILE);
-		this.journalFileTmp = new File(directory, JOURNAL_FILE_TEMP);
-		this.journalFileBackup = new File(directory, JOURNAL_FILE_BACKUP);
+		this.binaryJournal = binaryJournal;
+		this.journalFile = new File(directory, binaryJournal ? JOURNAL_FILE_BINARY : JOURNAL_FILE);
+		this.journalFileTmp = new File(directory, binaryJournal ? JOURNAL_FILE_BINARY_TEMP : JOURNAL_FILE_TEMP);
+		this.journalFileBackup = new File(directory, binaryJournal ? JOURNAL_FILE_BINARY_BACKUP : JOURNAL_FILE_BACKUP);
 		this.valueCount = valueCount;
 		this.maxSize = maxSize;
 	}
@@ -191,6 +246,29 @@ public final class LruDiskCache implements Closeable {
 	 *             if reading or writing the cache directory fails
 	 */
 	public static LruDiskCache open(File directory, int appVersion, int valueCount, long maxSize) throws IOException {
+		return open(directory, appVersion, valueCount, maxSize, false, false);
+	}
+
+	/**
+	 * Opens the cache in {@code directory}, creating a cache if none exists
+	 * there.
+	 * 
+	 * @param directory
+	 *            a writable directory
+	 * @param valueCount
+	 *            the number of values per cache entry. Must be positive.
+	 * @param maxSize
+	 *            the maximum number of bytes this cache should use to store
+	 * @param binaryJournal
+	 *            use the checksummed binary journal. A journal left in the
+	 *            other format is migrated on open.
+	 * @param lazyLoad
+	 *            return immediately and read the journal on the background
+	 *            thread; the first operation on the cache waits for it.
+	 * @throws IOException
+	 *             if reading or writing the cache directory fails
+	 */
+	public static LruDiskCache open(File directory, int appVersion, int valueCount, long maxSize, boolean binaryJournal, boolean lazyLoad) throws IOException {
 		if (maxSize <= 0) {
 			throw new IllegalArgumentException("maxSize <= 0");
 		}
@@ -198,44 +276,77 @@ public final class LruDiskCache implements Closeable {
 			throw new IllegalArgumentException("valueCount <= 0");
 		}
 
+		final LruDiskCache cache = new LruDiskCache(directory, appVersion, valueCount, maxSize, binaryJournal);
+		if (lazyLoad) {
+			cache.pendingLoad = cache.executorService.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					cache.load();
+					return null;
+				}
+			});
+		} else {
+			cache.load();
+		}
+		return cache;
+	}
+
+	/**
+	 * Reads the journal and opens it for appending. Runs before the cache is
+	 * handed out, or on the background thread ahead of any other task when
+	 * opened lazily, so it does not take the cache lock.
+	 */
+	private void load() throws IOException {
 		// If a bkp file exists, use it instead.
-		File backupFile = new File(directory, JOURNAL_FILE_BACKUP);
-		if (backupFile.exists()) {
-			File journalFile = new File(directory, JOURNAL_FILE);
+		if (journalFileBackup.exists()) {
 			// If journal file also exists just delete backup file.
 			if (journalFile.exists()) {
-				backupFile.delete();
+				journalFileBackup.delete();
 			} else {
-				renameTo(backupFile, journalFile, false);
+				renameTo(journalFileBackup, journalFile, false);
 			}
 		}
 
+		// A newer journal in the other format is read and rewritten in ours.
+		File otherJournal = new File(directory, binaryJournal ? JOURNAL_FILE : JOURNAL_FILE_BINARY);
+		boolean migrate = otherJournal.exists() && (!journalFile.exists() || otherJournal.lastModified() > journalFile.lastModified());
+
 		// Prefer to pick up where we left off.
-		LruDiskCache cache = new LruDiskCache(directory, appVersion, valueCount, maxSize);
-		if (cache.journalFile.exists()) {
+		if (journalFile.exists() || migrate) {
 			try {
-				cache.readJournal();
-				cache.processJournal();
-				cache.journalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(cache.journalFile, true), HTTP.US_ASCII));
-				return cache;
+				if (migrate ? !binaryJournal : binaryJournal) {
+					readBinaryJournal(migrate ? otherJournal : journalFile);
+				} else {
+					readJournal(migrate ? otherJournal : journalFile);
+				}
+				processJournal();
+				if (migrate || journalRebuildOnOpen) {
+					rebuildJournal();
+				} else {
+					journalWriter = new BufferedOutputStream(new FileOutputStream(journalFile, true));
+				}
+				otherJournal.delete();
+				return;
 			} catch (Throwable journalIsCorrupt) {
 				Log.e(TAG, "DiskLruCache " + directory + " is corrupt: " + journalIsCorrupt.getMessage() + ", removing", journalIsCorrupt);
-				cache.delete();
+				XCIOUtil.close(journalWriter);
+				journalWriter = null;
+				lruEntries.clear();
+				size = 0;
+				deleteContents(directory);
 			}
 		}
 
 		// Create a new empty cache.
 		if (directory.exists() || directory.mkdirs()) {
-			cache = new LruDiskCache(directory, appVersion, valueCount, maxSize);
-			cache.rebuildJournal();
+			redundantOpCount = 0;
+			rebuildJournal();
 		}
-		return cache;
 	}
 
-	private void readJournal() throws IOException {
+	private void readJournal(File file) throws IOException {
 		StrictLineReader reader = null;
 		try {
-			reader = new StrictLineReader(new FileInputStream(journalFile));
+			reader = new StrictLineReader(new FileInputStream(file));
 			String magic = reader.readLine();
 			String version = reader.readLine();
 			String appVersionString = reader.readLine();
@@ -260,6 +371,92 @@ public final class LruDiskCache implements Closeable {
 		}
 	}
 
+	private void readBinaryJournal(File file) throws IOException {
+		CRC32 checksum = new CRC32();
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(new FileInputStream(file), 8192), checksum));
+			int magic = in.readInt();
+			int version = in.readInt();
+			int appVersionValue = in.readInt();
+			int valueCountValue = in.readInt();
+			if (magic != BINARY_MAGIC || version != BINARY_VERSION || appVersionValue != appVersion || valueCountValue != valueCount) {
+				throw new IOException("unexpected journal header: [" + magic + ", " + version + ", " + appVersionValue + ", " + valueCountValue + "]");
+			}
+
+			int recordCount = 0;
+			while (true) {
+				checksum.reset();
+				int tag = in.read();
+				if (tag == -1) {
+					break;
+				}
+				try {
+					byte[] keyBytes = new byte[in.readUnsignedShort()];
+					in.readFully(keyBytes);
+					long expiryTimestamp = Long.MAX_VALUE;
+					long[] lengths = null;
+					if (tag == CLEAN) {
+						expiryTimestamp = in.readLong();
+						lengths = new long[valueCount];
+						for (int i = 0; i < valueCount; i++) {
+							lengths[i] = in.readLong();
+						}
+					}
+					int expected = (int) checksum.getValue();
+					if (in.readInt() != expected) {
+						Log.w(TAG, "journal record " + recordCount + " fails its checksum, dropping the tail");
+						journalRebuildOnOpen = true;
+						break;
+					}
+					readJournalRecord((char) tag, new String(keyBytes, HTTP.UTF_8), expiryTimestamp, lengths);
+					recordCount++;
+				} catch (EOFException tornRecord) {
+					Log.w(TAG, "journal record " + recordCount + " is truncated, dropping the tail");
+					journalRebuildOnOpen = true;
+					break;
+				}
+			}
+			redundantOpCount = recordCount - lruEntries.size();
+		} finally {
+			XCIOUtil.close(in);
+		}
+	}
+
+	private void readJournalRecord(char tag, String diskKey, long expiryTimestamp, long[] lengths) throws IOException {
+		if (tag == DELETE) {
+			lruEntries.remove(diskKey);
+			return;
+		}
+
+		Entry entry = lruEntries.get(diskKey);
+		if (entry == null) {
+			entry = new Entry(diskKey);
+			lruEntries.put(diskKey, entry);
+		}
+
+		switch (tag) {
+		case CLEAN: {
+			entry.readable = true;
+			entry.currentEditor = null;
+			entry.expiryTimestamp = expiryTimestamp;
+			System.arraycopy(lengths, 0, entry.lengths, 0, valueCount);
+			break;
+		}
+		case UPDATE: {
+			entry.currentEditor = new Editor(entry);
+			break;
+		}
+		case READ: {
+			// This work was already done by calling lruEntries.get().
+			break;
+		}
+		default: {
+			throw new IOException("unexpected journal record: " + tag + " " + diskKey);
+		}
+		}
+	}
+
 	private void readJournalLine(String line) throws IOException {
 		int firstSpace = line.indexOf(' ');
 		char lineTag = 0;
@@ -347,32 +544,29 @@ public final class LruDiskCache implements Closeable {
 
 	/**
 	 * Creates a new journal that omits redundant information. This replaces the
-	 * current journal if it exists.
+	 * current journal if it exists. Callers hold the cache lock or are still
+	 * loading it.
 	 */
-	private synchronized void rebuildJournal() throws IOException {
+	private void rebuildJournal() throws IOException {
 		if (journalWriter != null) {
 			XCIOUtil.close(journalWriter);
 		}
 
-		Writer writer = null;
+		OutputStream writer = null;
 		try {
-			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFileTmp), HTTP.US_ASCII));
-			writer.write(MAGIC);
-			writer.write("\n");
-			writer.write(VERSION);
-			writer.write("\n");
-			writer.write(Integer.toString(appVersion));
-			writer.write("\n");
-			writer.write(Integer.toString(valueCount));
-			writer.write("\n");
-			writer.write("\n");
+			writer = new BufferedOutputStream(new FileOutputStream(journalFileTmp), 8192);
+			if (binaryJournal) {
+				DataOutputStream header = new DataOutputStream(writer);
+				header.writeInt(BINARY_MAGIC);
+				header.writeInt(BINARY_VERSION);
+				header.writeInt(appVersion);
+				header.writeInt(valueCount);
+			} else {
+				writer.write((MAGIC + "\n" + VERSION + "\n" + appVersion + "\n" + valueCount + "\n\n").getBytes(HTTP.US_ASCII));
+			}
 
 			for (Entry entry : lruEntries.values()) {
-				if (entry.currentEditor != null) {
-					writer.write(UPDATE + " " + entry.diskKey + '\n');
-				} else {
-					writer.write(CLEAN + " " + entry.diskKey + " " + EXPIRY_PREFIX + entry.expiryTimestamp + entry.getLengths() + '\n');
-				}
+				writeJournalRecord(writer, entry.currentEditor != null ? UPDATE : CLEAN, entry);
 			}
 		} finally {
 			XCIOUtil.close(writer);
@@ -384,7 +578,83 @@ public final class LruDiskCache implements Closeable {
 		renameTo(journalFileTmp, journalFile, false);
 		journalFileBackup.delete();
 
-		journalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFile, true), HTTP.US_ASCII));
+		journalFlushPending = false;
+		journalRebuildOnOpen = false;
+		journalWriter = new BufferedOutputStream(new FileOutputStream(journalFile, true), 8192);
+	}
+
+	/**
+	 * Writes one record for {@code entry} in the journal's format.
+	 */
+	private void writeJournalRecord(OutputStream out, char tag, Entry entry) throws IOException {
+		if (!binaryJournal) {
+			String line;
+			if (tag == CLEAN) {
+				line = CLEAN + " " + entry.diskKey + " " + EXPIRY_PREFIX + entry.expiryTimestamp + entry.getLengths() + '\n';
+			} else {
+				line = tag + " " + entry.diskKey + '\n';
+			}
+			out.write(line.getBytes(HTTP.US_ASCII));
+			return;
+		}
+
+		recordBuffer.reset();
+		DataOutputStream record = new DataOutputStream(recordBuffer);
+		byte[] keyBytes = entry.diskKey.getBytes(HTTP.UTF_8);
+		record.writeByte(tag);
+		record.writeShort(keyBytes.length);
+		record.write(keyBytes);
+		if (tag == CLEAN) {
+			record.writeLong(entry.expiryTimestamp);
+			for (long length : entry.lengths) {
+				record.writeLong(length);
+			}
+		}
+		recordChecksum.reset();
+		recordChecksum.update(recordBuffer.toByteArray(), 0, recordBuffer.size());
+		record.writeInt((int) recordChecksum.getValue());
+		recordBuffer.writeTo(out);
+	}
+
+	/**
+	 * Appends a record to the journal and queues a group flush for it.
+	 */
+	private void appendJournalRecord(char tag, Entry entry) throws IOException {
+		writeJournalRecord(journalWriter, tag, entry);
+		if (!journalFlushPending) {
+			journalFlushPending = true;
+			executorService.submit(flushCallable);
+		}
+	}
+
+	/**
+	 * Blocks until a lazily started load of the journal has finished. The
+	 * wait ignores interrupts, since the index may not be touched while the
+	 * load still writes to it; the interrupt status is restored afterwards.
+	 */
+	private void awaitLoaded() {
+		Future<Void> load = pendingLoad;
+		if (load != null) {
+			boolean interrupted = false;
+			try {
+				while (true) {
+					try {
+						load.get();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					} catch (ExecutionException e) {
+						Log.e(TAG, "load disk cache " + directory + " error", e.getCause());
+						break;
+					}
+				}
+			} finally {
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			pendingLoad = null;
+		}
 	}
 
 	private static void deleteIfExists(File file) throws IOException {
@@ -459,7 +729,7 @@ public final class LruDiskCache implements Closeable {
 				entry.lengths[i] = 0;
 			}
 			redundantOpCount++;
-			journalWriter.append(DELETE + " " + diskKey + '\n');
+			appendJournalRecord(DELETE, entry);
 			lruEntries.remove(diskKey);
 			if (journalRebuildRequired()) {
 				executorService.submit(cleanupCallable);
@@ -488,7 +758,7 @@ public final class LruDiskCache implements Closeable {
 		}
 
 		redundantOpCount++;
-		journalWriter.append(READ + " " + diskKey + '\n');
+		appendJournalRecord(READ, entry);
 		if (journalRebuildRequired()) {
 			executorService.submit(cleanupCallable);
 		}
@@ -522,7 +792,7 @@ public final class LruDiskCache implements Closeable {
 		entry.currentEditor = editor;
 
 		// Flush the journal before creating files to prevent file leaks.
-		journalWriter.write(UPDATE + " " + diskKey + '\n');
+		writeJournalRecord(journalWriter, UPDATE, entry);
 		journalWriter.flush();
 		return editor;
 	}
@@ -547,6 +817,7 @@ public final class LruDiskCache implements Closeable {
 	 * to trim the existing store, if necessary.
 	 */
 	public synchronized void setMaxSize(long maxSize) {
+		awaitLoaded();
 		this.maxSize = maxSize;
 		executorService.submit(cleanupCallable);
 	}
@@ -557,6 +828,7 @@ public final class LruDiskCache implements Closeable {
 	 * deletion is pending.
 	 */
 	public synchronized long size() {
+		awaitLoaded();
 		return size;
 	}
 
@@ -601,15 +873,14 @@ public final class LruDiskCache implements Closeable {
 		entry.currentEditor = null;
 		if (entry.readable | success) {
 			entry.readable = true;
-			journalWriter.write(CLEAN + " " + entry.diskKey + " " + EXPIRY_PREFIX + entry.expiryTimestamp + entry.getLengths() + '\n');
+			appendJournalRecord(CLEAN, entry);
 			if (success) {
 				entry.sequenceNumber = nextSequenceNumber++;
 			}
 		} else {
 			lruEntries.remove(entry.diskKey);
-			journalWriter.write(DELETE + " " + entry.diskKey + '\n');
+			appendJournalRecord(DELETE, entry);
 		}
-		journalWriter.flush();
 
 		if (size > maxSize || journalRebuildRequired()) {
 			executorService.submit(cleanupCallable);
@@ -654,7 +925,7 @@ public final class LruDiskCache implements Closeable {
 		}
 
 		redundantOpCount++;
-		journalWriter.append(DELETE + " " + diskKey + '\n');
+		appendJournalRecord(DELETE, entry);
 		lruEntries.remove(diskKey);
 
 		if (journalRebuildRequired()) {
@@ -668,10 +939,12 @@ public final class LruDiskCache implements Closeable {
 	 * Returns true if this cache has been closed.
 	 */
 	public synchronized boolean isClosed() {
+		awaitLoaded();
 		return journalWriter == null;
 	}
 
 	private void checkNotClosed() {
+		awaitLoaded();
 		if (journalWriter == null) {
 			throw new IllegalStateException("cache is closed");
 		}
@@ -691,6 +964,7 @@ public final class LruDiskCache implements Closeable {
 	 */
 	@Override
 	public synchronized void close() throws IOException {
+		awaitLoaded();
 		if (journalWriter == null) {
 			return; // Already closed.
 		}
@@ -13,13 +13,16 @@ import com.xc.framework.bitmap.BitmapOtherUtil;
 import com.xc.framework.bitmap.cache.FileNameGenerator;
 import com.xc.framework.bitmap.cache.LruDiskCache;
 import com.xc.framework.bitmap.cache.LruMemoryCache;
+import com.xc.framework.bitmap.download.DownloadStream;
 import com.xc.framework.bitmap.factory.BitmapFactory;
 import com.xc.framework.util.XCIOUtil;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 /**
  * @author ZhangXuanChen
@@ -96,7 +99,7 @@ public class BitmapCache {
 					long diskCacheSize = globalConfig.getDiskCacheSize();
 					diskCacheSize = availableSpace > diskCacheSize ? diskCacheSize : availableSpace;
 					try {
-						mDiskLruCache = LruDiskCache.open(diskCacheDir, 1, 1, diskCacheSize);
+						mDiskLruCache = LruDiskCache.open(diskCacheDir, 1, 1, diskCacheSize, globalConfig.isDiskCacheBinaryJournal(), globalConfig.isDiskCacheLazyLoad());
 						mDiskLruCache.setFileNameGenerator(globalConfig.getFileNameGenerator());
 						Log.d(TAG, "create disk cache success");
 					} catch (Throwable e) {
@@ -131,29 +134,54 @@ public class BitmapCache {
 	}
 
 	public Bitmap downloadBitmap(String uri, BitmapDisplayConfig config, final BitmapLoader.BitmapLoadTask<?> task) {
+		return transformBitmap(uri, config, fetchBitmap(uri, config, task));
+	}
+
+	/**
+	 * Download and decode the bitmap, without rotating, transforming or
+	 * caching it in memory; see {@link #transformBitmap}.
+	 * 
+	 * @return The decoded bitmap and its expiry, or null if it failed.
+	 */
+	public BitmapMeta fetchBitmap(String uri, BitmapDisplayConfig config, final BitmapLoader.BitmapLoadTask<?> task) {
 
 		BitmapMeta bitmapMeta = new BitmapMeta();
 
 		OutputStream outputStream = null;
 		LruDiskCache.Snapshot snapshot = null;
+		DownloadStream downloadStream = null;
 
 		try {
 			Bitmap bitmap = null;
 
-			// try download to disk
+			// try download to disk, decoding while the bytes are written
 			if (globalConfig.isDiskCacheEnabled()) {
 				if (mDiskLruCache == null) {
 					initDiskCache();
 				}
 
 				if (mDiskLruCache != null) {
+					LruDiskCache.Editor editor = null;
 					try {
 						snapshot = mDiskLruCache.get(uri);
 						if (snapshot == null) {
-							LruDiskCache.Editor editor = mDiskLruCache.edit(uri);
+							editor = mDiskLruCache.edit(uri);
 							if (editor != null) {
 								outputStream = editor.newOutputStream(DISK_CACHE_INDEX);
-								bitmapMeta.expiryTimestamp = globalConfig.getDownloader().downloadToStream(uri, outputStream, task);
+								downloadStream = globalConfig.getDownloader().openStream(uri, task);
+								if (downloadStream != null) {
+									bitmapMeta.expiryTimestamp = downloadStream.getExpiryTimestamp();
+									TeeInputStream teeStream = new TeeInputStream(downloadStream, outputStream);
+									try {
+										bitmap = decodeStream(teeStream, config);
+									} catch (IOException e) {
+										// header too large to rewind, decode the cached file below
+										Log.w(TAG, e.getMessage());
+									}
+									teeStream.drain();
+								} else {
+									bitmapMeta.expiryTimestamp = globalConfig.getDownloader().downloadToStream(uri, outputStream, task);
+								}
 								if (bitmapMeta.expiryTimestamp < 0) {
 									editor.abort();
 									return null;
@@ -161,10 +189,12 @@ public class BitmapCache {
 									editor.setEntryExpiryTimestamp(bitmapMeta.expiryTimestamp);
 									editor.commit();
 								}
-								snapshot = mDiskLruCache.get(uri);
+								if (bitmap == null) {
+									snapshot = mDiskLruCache.get(uri);
+								}
 							}
 						}
-						if (snapshot != null) {
+						if (bitmap == null && snapshot != null) {
 							bitmapMeta.inputStream = snapshot.getInputStream(DISK_CACHE_INDEX);
 							bitmap = decodeBitmapMeta(bitmapMeta, config);
 							if (bitmap == null) {
@@ -174,12 +204,42 @@ public class BitmapCache {
 						}
 					} catch (Throwable e) {
 						Log.e(TAG, e.getMessage(), e);
+						bitmap = null;
+					} finally {
+						if (editor != null) {
+							editor.abortUnlessCommitted();
+						}
+						XCIOUtil.close(downloadStream);
+						downloadStream = null;
 					}
 				}
 			}
 
-			// try download to memory stream
+			if (task != null && task.isCancelled()) {
+				return null;
+			}
+
+			// try decode straight from the download stream
+			boolean streamDecoded = false;
 			if (bitmap == null) {
+				downloadStream = globalConfig.getDownloader().openStream(uri, task);
+				if (downloadStream != null) {
+					bitmapMeta.expiryTimestamp = downloadStream.getExpiryTimestamp();
+					try {
+						bitmap = decodeStream(downloadStream, config);
+						streamDecoded = true;
+					} catch (IOException e) {
+						Log.e(TAG, e.getMessage(), e);
+					}
+					XCIOUtil.close(downloadStream);
+					if (task != null && task.isCancelled()) {
+						return null;
+					}
+				}
+			}
+
+			// try download to memory stream
+			if (bitmap == null && !streamDecoded) {
 				outputStream = new ByteArrayOutputStream();
 				bitmapMeta.expiryTimestamp = globalConfig.getDownloader().downloadToStream(uri, outputStream, task);
 				if (bitmapMeta.expiryTimestamp < 0) {
@@ -190,21 +250,91 @@ public class BitmapCache {
 				}
 			}
 
-			if (bitmap != null) {
-				bitmap = rotateBitmapIfNeeded(uri, config, bitmap);
-				bitmap = addBitmapToMemoryCache(uri, config, bitmap, bitmapMeta.expiryTimestamp);
+			if (bitmap == null) {
+				return null;
 			}
-			return bitmap;
+			bitmapMeta.inputStream = null;
+			bitmapMeta.data = null;
+			bitmapMeta.bitmap = bitmap;
+			return bitmapMeta;
 		} catch (Throwable e) {
 			Log.e(TAG, e.getMessage(), e);
 		} finally {
 			XCIOUtil.close(outputStream);
 			XCIOUtil.close(snapshot);
+			XCIOUtil.close(downloadStream);
 		}
 
 		return null;
 	}
 
+	/**
+	 * Download the bitmap into the disk cache without decoding it.
+	 *
+	 * @return true if the bitmap is in the disk cache afterwards.
+	 */
+	public boolean downloadToDiskCache(String uri, final BitmapLoader.BitmapLoadTask<?> task) {
+		if (!globalConfig.isDiskCacheEnabled()) {
+			return false;
+		}
+		if (mDiskLruCache == null) {
+			initDiskCache();
+		}
+		if (mDiskLruCache == null) {
+			return false;
+		}
+
+		OutputStream outputStream = null;
+		LruDiskCache.Editor editor = null;
+		try {
+			LruDiskCache.Snapshot snapshot = mDiskLruCache.get(uri);
+			if (snapshot != null) {
+				XCIOUtil.close(snapshot);
+				return true;
+			}
+			editor = mDiskLruCache.edit(uri);
+			if (editor == null) {
+				return false;
+			}
+			outputStream = editor.newOutputStream(DISK_CACHE_INDEX);
+			long expiryTimestamp = globalConfig.getDownloader().downloadToStream(uri, outputStream, task);
+			if (expiryTimestamp < 0) {
+				return false;
+			}
+			editor.setEntryExpiryTimestamp(expiryTimestamp);
+			editor.commit();
+			return true;
+		} catch (Throwable e) {
+			Log.e(TAG, e.getMessage(), e);
+		} finally {
+			XCIOUtil.close(outputStream);
+			if (editor != null) {
+				editor.abortUnlessCommitted();
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Rotate and transform a fetched bitmap, then add it to the memory cache.
+	 * 
+	 * @param bitmapMeta
+	 *            The result of {@link #fetchBitmap}, may be null.
+	 * @return The bitmap to display, or null.
+	 */
+	public Bitmap transformBitmap(String uri, BitmapDisplayConfig config, BitmapMeta bitmapMeta) {
+		if (bitmapMeta == null || bitmapMeta.bitmap == null) {
+			return null;
+		}
+		try {
+			Bitmap bitmap = rotateBitmapIfNeeded(uri, config, bitmapMeta.bitmap);
+			return addBitmapToMemoryCache(uri, config, bitmap, bitmapMeta.expiryTimestamp);
+		} catch (Throwable e) {
+			Log.e(TAG, e.getMessage(), e);
+		}
+		return null;
+	}
+
 	private Bitmap addBitmapToMemoryCache(String uri, BitmapDisplayConfig config, Bitmap bitmap, long expiryTimestamp) throws IOException {
 		if (config != null) {
 			BitmapFactory bitmapFactory = config.getBitmapFactory();
@@ -384,10 +514,19 @@ public class BitmapCache {
 		}
 	}
 
-	private class BitmapMeta {
-		public FileInputStream inputStream;
-		public byte[] data;
-		public long expiryTimestamp;
+	public static class BitmapMeta {
+		private FileInputStream inputStream;
+		private byte[] data;
+		private Bitmap bitmap;
+		private long expiryTimestamp;
+
+		public Bitmap getBitmap() {
+			return bitmap;
+		}
+
+		public long getExpiryTimestamp() {
+			return expiryTimestamp;
+		}
 	}
 
 	private Bitmap decodeBitmapMeta(BitmapMeta bitmapMeta, BitmapDisplayConfig config) throws IOException {
@@ -410,6 +549,76 @@ public class BitmapCache {
 		return bitmap;
 	}
 
+	/**
+	 * Decode while reading, bounds first and then sampled pixels.
+	 */
+	private Bitmap decodeStream(InputStream inputStream, BitmapDisplayConfig config) throws IOException {
+		if (config == null || config.isShowOriginal()) {
+			return BitmapDecoder.decodeStream(inputStream);
+		} else {
+			return BitmapDecoder.decodeSampledBitmapFromStream(inputStream, config.getBitmapMaxSize(), config.getBitmapConfig());
+		}
+	}
+
+	/**
+	 * Copies every byte read from the download into the disk cache editor, so
+	 * the bitmap is decoded and persisted in one pass.
+	 */
+	private static class TeeInputStream extends FilterInputStream {
+		private final OutputStream branch;
+
+		private TeeInputStream(InputStream in, OutputStream branch) {
+			super(in);
+			this.branch = branch;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			if (b != -1) {
+				branch.write(b);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int count) throws IOException {
+			int len = in.read(buffer, offset, count);
+			if (len > 0) {
+				branch.write(buffer, offset, len);
+			}
+			return len;
+		}
+
+		@Override
+		public long skip(long count) throws IOException {
+			byte[] buffer = new byte[(int) Math.min(count, 4096)];
+			long skipped = 0;
+			while (skipped < count) {
+				int len = read(buffer, 0, (int) Math.min(count - skipped, buffer.length));
+				if (len == -1) {
+					break;
+				}
+				skipped += len;
+			}
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		/**
+		 * Reads what the decoder left behind so the cached copy is complete.
+		 */
+		private void drain() throws IOException {
+			byte[] buffer = new byte[4096];
+			while (read(buffer, 0, buffer.length) != -1) {
+			}
+		}
+	}
+
 	private synchronized Bitmap rotateBitmapIfNeeded(String uri, BitmapDisplayConfig config, Bitmap bitmap) {
 		Bitmap result = bitmap;
 		if (config != null && config.isAutoRotation()) {
@@ -5,7 +5,10 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.util.Log;
 
+import java.io.BufferedInputStream;
 import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
 /**
  * @author ZhangXuanChen
  * @date 2015-9-25
@@ -16,6 +19,7 @@ public class BitmapDecoder {
 
 	private static final Object lock = new Object();
 	private static final String TAG = "BitmapDecoder";
+	private static final int STREAM_MARK_LIMIT = 1024 * 128; // 128K
 
 	private BitmapDecoder() {
 	}
@@ -104,6 +108,39 @@ public class BitmapDecoder {
 		}
 	}
 
+	/**
+	 * Decode bounds and then sampled pixels from a stream that is still being
+	 * read, e.g. from the network. Only the header is buffered between the
+	 * two passes. Not run under the decode lock since it waits on the source.
+	 * 
+	 * @throws IOException
+	 *             if the header was larger than the mark limit and the stream
+	 *             could not be rewound for the pixel pass.
+	 */
+	public static Bitmap decodeSampledBitmapFromStream(InputStream in, BitmapSize maxSize, Bitmap.Config config) throws IOException {
+		if (!in.markSupported()) {
+			in = new BufferedInputStream(in, 8192);
+		}
+		final BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		options.inPurgeable = true;
+		options.inInputShareable = true;
+		in.mark(STREAM_MARK_LIMIT);
+		BitmapFactory.decodeStream(in, null, options);
+		in.reset();
+		options.inSampleSize = calculateInSampleSize(options, maxSize.getWidth(), maxSize.getHeight());
+		options.inJustDecodeBounds = false;
+		if (config != null) {
+			options.inPreferredConfig = config;
+		}
+		try {
+			return BitmapFactory.decodeStream(in, null, options);
+		} catch (Throwable e) {
+			Log.e(TAG, e.getMessage(), e);
+			return null;
+		}
+	}
+
 	public static Bitmap decodeResource(Resources res, int resId) {
 		synchronized (lock) {
 			final BitmapFactory.Options options = new BitmapFactory.Options();
@@ -146,6 +183,18 @@ public class BitmapDecoder {
 		}
 	}
 
+	public static Bitmap decodeStream(InputStream in) {
+		final BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inPurgeable = true;
+		options.inInputShareable = true;
+		try {
+			return BitmapFactory.decodeStream(in, null, options);
+		} catch (Throwable e) {
+			Log.e(TAG, e.getMessage(), e);
+			return null;
+		}
+	}
+
 	public static Bitmap decodeByteArray(byte[] data) {
 		synchronized (lock) {
 			final BitmapFactory.Options options = new BitmapFactory.Options();
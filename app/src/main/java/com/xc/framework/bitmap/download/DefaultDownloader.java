@@ -10,6 +10,7 @@ import com.xc.framework.util.XCIOUtil;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
@@ -35,60 +36,70 @@ public class DefaultDownloader extends Downloader {
 	 */
 	@Override
 	public long downloadToStream(String uri, OutputStream outputStream, final BitmapLoader.BitmapLoadTask<?> task) {
-
-		if (task == null || task.isCancelled() || task.getTargetContainer() == null)
-			return -1;
-
-		URLConnection urlConnection = null;
-		BufferedInputStream bis = null;
-
-		BitmapOtherUtil.trustAllHttpsURLConnection();
-
-		long result = -1;
-		long fileLen = 0;
-		long currCount = 0;
+		DownloadStream in = null;
 		try {
-			if (uri.startsWith("/")) {
-				FileInputStream fileInputStream = new FileInputStream(uri);
-				fileLen = fileInputStream.available();
-				bis = new BufferedInputStream(fileInputStream);
-				result = System.currentTimeMillis() + this.getDefaultExpiry();
-			} else if (uri.startsWith("assets/")) {
-				InputStream inputStream = this.getContext().getAssets().open(uri.substring(7, uri.length()));
-				fileLen = inputStream.available();
-				bis = new BufferedInputStream(inputStream);
-				result = Long.MAX_VALUE;
-			} else {
-				final URL url = new URL(uri);
-				urlConnection = url.openConnection();
-				urlConnection.setConnectTimeout(this.getDefaultConnectTimeout());
-				urlConnection.setReadTimeout(this.getDefaultReadTimeout());
-				bis = new BufferedInputStream(urlConnection.getInputStream());
-				result = urlConnection.getExpiration();
-				result = result < System.currentTimeMillis() ? System.currentTimeMillis() + this.getDefaultExpiry() : result;
-				fileLen = urlConnection.getContentLength();
-			}
-
-			if (task.isCancelled() || task.getTargetContainer() == null)
+			in = openStream(uri, task);
+			if (in == null)
 				return -1;
 
 			byte[] buffer = new byte[4096];
 			int len = 0;
 			BufferedOutputStream out = new BufferedOutputStream(outputStream);
-			while ((len = bis.read(buffer)) != -1) {
+			while ((len = in.read(buffer)) != -1) {
 				out.write(buffer, 0, len);
-				currCount += len;
-				if (task.isCancelled() || task.getTargetContainer() == null)
-					return -1;
-				task.updateProgress(fileLen, currCount);
 			}
 			out.flush();
+			return in.getExpiryTimestamp();
 		} catch (Throwable e) {
-			result = -1;
 			Log.e(TAG, e.getMessage(), e);
+			return -1;
 		} finally {
-			XCIOUtil.close(bis);
+			XCIOUtil.close(in);
+		}
+	}
+
+	/**
+	 * Open the bitmap source by uri.
+	 * 
+	 * @param uri
+	 *            file path, assets path(assets/xxx) or http url.
+	 * @param task
+	 * @return The opened stream, or null if the task is no longer wanted.
+	 */
+	@Override
+	public DownloadStream openStream(String uri, final BitmapLoader.BitmapLoadTask<?> task) throws IOException {
+
+		if (task == null || !task.isWanted())
+			return null;
+
+		BitmapOtherUtil.trustAllHttpsURLConnection();
+
+		InputStream inputStream;
+		long expiryTimestamp;
+		long fileLen;
+		if (uri.startsWith("/")) {
+			inputStream = new FileInputStream(uri);
+			fileLen = inputStream.available();
+			expiryTimestamp = System.currentTimeMillis() + this.getDefaultExpiry();
+		} else if (uri.startsWith("assets/")) {
+			inputStream = this.getContext().getAssets().open(uri.substring(7, uri.length()));
+			fileLen = inputStream.available();
+			expiryTimestamp = Long.MAX_VALUE;
+		} else {
+			final URL url = new URL(uri);
+			URLConnection urlConnection = url.openConnection();
+			urlConnection.setConnectTimeout(this.getDefaultConnectTimeout());
+			urlConnection.setReadTimeout(this.getDefaultReadTimeout());
+			inputStream = urlConnection.getInputStream();
+			expiryTimestamp = urlConnection.getExpiration();
+			expiryTimestamp = expiryTimestamp < System.currentTimeMillis() ? System.currentTimeMillis() + this.getDefaultExpiry() : expiryTimestamp;
+			fileLen = urlConnection.getContentLength();
+		}
+
+		if (!task.isWanted()) {
+			XCIOUtil.close(inputStream);
+			return null;
 		}
-		return result;
+		return new DownloadStream(new BufferedInputStream(inputStream), task, expiryTimestamp, fileLen);
 	}
 }
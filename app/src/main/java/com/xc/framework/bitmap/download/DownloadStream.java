@@ -0,0 +1,92 @@
+package com.xc.framework.bitmap.download;
+
+import com.xc.framework.bitmap.BitmapLoader;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2015-9-25
+ * @package com.xc.framework.bitmap.download
+ * @description An opened download source. Reports progress to the task as it
+ *              is read and fails with an IOException once the task is
+ *              cancelled or its container is gone.
+ */
+public class DownloadStream extends FilterInputStream {
+
+	private final BitmapLoader.BitmapLoadTask<?> task;
+	private final long expiryTimestamp;
+	private final long contentLength;
+	private long readCount;
+
+	public DownloadStream(InputStream in, BitmapLoader.BitmapLoadTask<?> task, long expiryTimestamp, long contentLength) {
+		super(in);
+		this.task = task;
+		this.expiryTimestamp = expiryTimestamp;
+		this.contentLength = contentLength;
+	}
+
+	/**
+	 * @return The expiry time stamp of the downloaded content.
+	 */
+	public long getExpiryTimestamp() {
+		return expiryTimestamp;
+	}
+
+	/**
+	 * @return The content length, or a value <= 0 if unknown.
+	 */
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	@Override
+	public int read() throws IOException {
+		checkTask();
+		int b = in.read();
+		if (b != -1) {
+			onRead(1);
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int count) throws IOException {
+		checkTask();
+		int len = in.read(buffer, offset, count);
+		if (len > 0) {
+			onRead(len);
+		}
+		return len;
+	}
+
+	@Override
+	public long skip(long count) throws IOException {
+		checkTask();
+		long len = in.skip(count);
+		if (len > 0) {
+			onRead(len);
+		}
+		return len;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	private void checkTask() throws IOException {
+		if (task != null && !task.isWanted()) {
+			throw new IOException("download cancelled");
+		}
+	}
+
+	private void onRead(long len) {
+		readCount += len;
+		if (task != null) {
+			task.updateProgress(contentLength, readCount);
+		}
+	}
+}
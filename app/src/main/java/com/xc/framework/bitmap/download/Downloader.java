@@ -1,6 +1,7 @@
 
 package com.xc.framework.bitmap.download;
 
+import java.io.IOException;
 import java.io.OutputStream;
 
 import android.content.Context;
@@ -23,6 +24,19 @@ public abstract class Downloader {
      */
     public abstract long downloadToStream(String uri, OutputStream outputStream, final BitmapLoader.BitmapLoadTask<?> task);
 
+    /**
+     * Open the bitmap source by uri so the cache can decode it while it is
+     * being downloaded.
+     *
+     * @param uri
+     * @param task
+     * @return The opened stream, or null if this downloader only supports
+     * {@link #downloadToStream}.
+     */
+    public DownloadStream openStream(String uri, final BitmapLoader.BitmapLoadTask<?> task) throws IOException {
+        return null;
+    }
+
     private Context context;
     private long defaultExpiry;
     private int defaultConnectTimeout;
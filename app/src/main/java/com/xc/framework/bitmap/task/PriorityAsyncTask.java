@@ -224,6 +224,23 @@ public abstract class PriorityAsyncTask<Params, Progress, Result> implements Tas
 		return mFuture.cancel(mayInterruptIfRunning);
 	}
 
+	/**
+	 * Returns <tt>true</tt> if the result of this task is no longer wanted,
+	 * so a {@link PriorityExecutor} drops it before it starts.
+	 */
+	protected boolean isStale() {
+		return isCancelled();
+	}
+
+	/**
+	 * Returns <tt>false</tt> if the target of this task is off screen, so a
+	 * {@link PriorityExecutor} runs it after the visible ones. Called on the
+	 * UI thread.
+	 */
+	protected boolean isVisible() {
+		return true;
+	}
+
 	@Override
 	public boolean supportPause() {
 		return false;
@@ -328,7 +345,22 @@ public abstract class PriorityAsyncTask<Params, Progress, Result> implements Tas
 		onPreExecute();
 
 		mWorker.mParams = params;
-		exec.execute(new PriorityRunnable(priority, mFuture));
+		exec.execute(new PriorityRunnable(priority, mFuture) {
+			@Override
+			public boolean isStale() {
+				return PriorityAsyncTask.this.isStale();
+			}
+
+			@Override
+			public boolean isVisible() {
+				return PriorityAsyncTask.this.isVisible();
+			}
+
+			@Override
+			public void drop() {
+				PriorityAsyncTask.this.cancel(false);
+			}
+		});
 
 		return this;
 	}
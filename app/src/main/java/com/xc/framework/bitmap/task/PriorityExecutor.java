@@ -1,7 +1,9 @@
 package com.xc.framework.bitmap.task;
 
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author ZhangXuanChen
@@ -24,21 +26,61 @@ public class PriorityExecutor implements Executor {
         }
     };
 
-    private final BlockingQueue<Runnable> mPoolWorkQueue = new PriorityObjectBlockingQueue<Runnable>();
+    /**
+     * Queued work whose target is off screen runs after everything visible.
+     */
+    private static final PriorityObjectBlockingQueue.Prioritizer<Runnable> sVisibilityPrioritizer = new PriorityObjectBlockingQueue.Prioritizer<Runnable>() {
+        @Override
+        public Priority prioritize(Runnable r, Priority originalPriority) {
+            if (r instanceof PriorityRunnable) {
+                PriorityRunnable runnable = (PriorityRunnable) r;
+                if (runnable.isStale()) {
+                    return null;
+                }
+                if (!runnable.isVisible()) {
+                    return Priority.BG_LOW;
+                }
+            }
+            return originalPriority;
+        }
+    };
+
+    private final PriorityObjectBlockingQueue<Runnable> mPoolWorkQueue;
     private final ThreadPoolExecutor mThreadPoolExecutor;
 
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final AtomicLong mWastedCount = new AtomicLong();
+
     public PriorityExecutor() {
         this(CORE_POOL_SIZE);
     }
 
     public PriorityExecutor(int poolSize) {
+        this(poolSize, false);
+    }
+
+    /**
+     * @param poolSize
+     * @param lifo     run the newest of equally prioritized tasks first, e.g. the rows that just scrolled into view
+     */
+    public PriorityExecutor(int poolSize, boolean lifo) {
+        mPoolWorkQueue = new PriorityObjectBlockingQueue<Runnable>(lifo);
         mThreadPoolExecutor = new ThreadPoolExecutor(
                 poolSize,
                 MAXIMUM_POOL_SIZE,
                 KEEP_ALIVE,
                 TimeUnit.SECONDS,
                 mPoolWorkQueue,
-                sThreadFactory);
+                sThreadFactory) {
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                super.beforeExecute(t, r);
+                if (r instanceof PriorityRunnable && ((PriorityRunnable) r).isStale()) {
+                    ((PriorityRunnable) r).drop();
+                    mDroppedCount.incrementAndGet();
+                }
+            }
+        };
     }
 
     public int getPoolSize() {
@@ -55,6 +97,50 @@ public class PriorityExecutor implements Executor {
         return mThreadPoolExecutor.getActiveCount() >= mThreadPoolExecutor.getCorePoolSize();
     }
 
+    /**
+     * Drops stale queued tasks and moves the ones whose target is off screen
+     * behind the visible ones. Visibility is checked on the calling thread,
+     * so call it on the UI thread.
+     *
+     * @return the number of dropped tasks
+     */
+    public int reprioritize() {
+        List<Runnable> dropped = mPoolWorkQueue.reprioritize(sVisibilityPrioritizer);
+        for (Runnable r : dropped) {
+            ((PriorityRunnable) r).drop();
+        }
+        mDroppedCount.addAndGet(dropped.size());
+        return dropped.size();
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread
+     */
+    public int getQueueSize() {
+        return mPoolWorkQueue.size();
+    }
+
+    /**
+     * @return the number of tasks dropped before they started because their target was gone
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * @return the number of tasks that ran but whose result was thrown away
+     */
+    public long getWastedCount() {
+        return mWastedCount.get();
+    }
+
+    /**
+     * Records a task that ran but whose result was thrown away.
+     */
+    public void recordWasted() {
+        mWastedCount.incrementAndGet();
+    }
+
     @Override
     public void execute(final Runnable r) {
         mThreadPoolExecutor.execute(r);
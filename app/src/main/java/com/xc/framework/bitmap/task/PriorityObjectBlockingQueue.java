@@ -2,8 +2,10 @@
 package com.xc.framework.bitmap.task;
 
 import java.util.AbstractQueue;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -25,6 +27,11 @@ public class PriorityObjectBlockingQueue<E> extends AbstractQueue<E>
      */
     private final int capacity;
 
+    /**
+     * True to take the newest of equally prioritized elements first
+     */
+    private final boolean lifo;
+
     /**
      * Current number of elements
      */
@@ -100,6 +107,11 @@ public class PriorityObjectBlockingQueue<E> extends AbstractQueue<E>
 
     // only invoke in opQueue
     private void _enqueue(Node<E> node) {
+        _enqueue(node, lifo);
+    }
+
+    // only invoke in opQueue or fully locked
+    private void _enqueue(Node<E> node, boolean lifo) {
         boolean added = false;
 
         Node<E> curr = head;
@@ -107,7 +119,8 @@ public class PriorityObjectBlockingQueue<E> extends AbstractQueue<E>
 
         while (curr.next != null) {
             temp = curr.next;
-            if (temp.getPriority().ordinal() > node.getPriority().ordinal()) {
+            int order = temp.getPriority().ordinal() - node.getPriority().ordinal();
+            if (order > 0 || (lifo && order == 0)) {
                 curr.next = node;
                 node.next = temp;
                 added = true;
@@ -154,9 +167,18 @@ public class PriorityObjectBlockingQueue<E> extends AbstractQueue<E>
         this(Integer.MAX_VALUE);
     }
 
+    public PriorityObjectBlockingQueue(boolean lifo) {
+        this(Integer.MAX_VALUE, lifo);
+    }
+
     public PriorityObjectBlockingQueue(int capacity) {
+        this(capacity, false);
+    }
+
+    public PriorityObjectBlockingQueue(int capacity, boolean lifo) {
         if (capacity <= 0) throw new IllegalArgumentException();
         this.capacity = capacity;
+        this.lifo = lifo;
         last = head = new Node<E>(null);
     }
 
@@ -489,6 +511,58 @@ public class PriorityObjectBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 
+    /**
+     * Ranks queued elements again, e.g. after their targets scrolled in or
+     * out of view. Elements that end up with the same priority keep their
+     * current order.
+     *
+     * @param prioritizer gives each element its new priority, or null to drop it
+     * @return the dropped elements
+     */
+    public List<E> reprioritize(Prioritizer<? super E> prioritizer) {
+        if (prioritizer == null)
+            throw new NullPointerException();
+        List<E> dropped = new ArrayList<E>();
+        fullyLock();
+        try {
+            Node<E> p = head.next;
+            head.next = null;
+            last = head;
+            while (p != null) {
+                Node<E> next = p.next;
+                p.next = null;
+                E value = p.getValue();
+                Priority priority = value == null ? null : prioritizer.prioritize(value, p.getOriginalPriority());
+                if (priority == null) {
+                    if (value != null)
+                        dropped.add(value);
+                    p.setValue(null);
+                } else {
+                    p.setPriority(priority);
+                    _enqueue(p, false);
+                }
+                p = next;
+            }
+            if (!dropped.isEmpty() && count.getAndAdd(-dropped.size()) == capacity)
+                notFull.signal();
+        } finally {
+            fullyUnlock();
+        }
+        return dropped;
+    }
+
+    /**
+     * Gives a queued element its current priority.
+     */
+    public interface Prioritizer<E> {
+        /**
+         * @param e                the queued element
+         * @param originalPriority the priority it was queued with
+         * @return the new priority, or null to drop the element
+         */
+        Priority prioritize(E e, Priority originalPriority);
+    }
+
     public Iterator<E> iterator() {
         return new Itr();
     }
@@ -608,6 +682,7 @@ public class PriorityObjectBlockingQueue<E> extends AbstractQueue<E>
 class Node<T> {
     private boolean valueAsT = false;
     private PriorityObject<?> value;
+    private Priority priority;
     Node<T> next;
 
     Node(T value) {
@@ -615,6 +690,14 @@ class Node<T> {
     }
 
     public Priority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+
+    public Priority getOriginalPriority() {
         return value.priority;
     }
 
@@ -638,5 +721,8 @@ class Node<T> {
         } else {
             this.value = new PriorityObject<T>(Priority.DEFAULT, value);
         }
+        if (this.value != null) {
+            this.priority = this.value.priority;
+        }
     }
 }
@@ -16,4 +16,24 @@ public class PriorityRunnable extends PriorityObject<Runnable> implements Runnab
     public void run() {
         this.obj.run();
     }
+
+    /**
+     * @return true if the work is no longer wanted and can be dropped before it starts.
+     */
+    public boolean isStale() {
+        return false;
+    }
+
+    /**
+     * @return false if the target of the work is off screen, which demotes it while it is queued.
+     */
+    public boolean isVisible() {
+        return true;
+    }
+
+    /**
+     * Called instead of {@link #run()} when the work is dropped.
+     */
+    public void drop() {
+    }
 }
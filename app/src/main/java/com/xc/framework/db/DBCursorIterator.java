@@ -0,0 +1,98 @@
+package com.xc.framework.db;
+
+import android.database.Cursor;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Date：2021/4/14
+ * Author：ZhangXuanChen
+ * Description：逐行读取查询结果,调用next时才映射对象,读完或调用close后关闭Cursor;
+ * 未关闭时DBManager.close/initDB/deleteDB会等待其关闭,超时后强制关闭(之后hasNext返回false)
+ */
+public class DBCursorIterator<T> implements Iterator<T>, Closeable {
+    private final DBManager manager;
+    private final Cursor cursor;
+    private final DBRowMapper<T> mapper;
+    private final int[] columnIndexes;
+    private final Thread owner;//打开迭代器的线程
+    private boolean isChecked = false;
+    private boolean isNext = false;
+    private boolean isClosed = false;
+
+    DBCursorIterator(DBManager manager, Cursor cursor, DBRowMapper<T> mapper) {
+        this.manager = manager;
+        this.cursor = cursor;
+        this.mapper = mapper;
+        this.owner = Thread.currentThread();
+        manager.onIteratorOpen(this);
+        int[] indexes = null;
+        try {
+            indexes = cursor != null ? mapper.getColumnIndexes(cursor, false) : null;
+        } finally {
+            this.columnIndexes = indexes;
+            if (indexes == null) {
+                close();
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!isChecked) {
+            isNext = columnIndexes != null && !cursor.isClosed() && cursor.moveToNext();
+            isChecked = true;
+            if (!isNext) {
+                close();
+            }
+        }
+        return isNext;
+    }
+
+    /**
+     * @return 当前行对象, 映射失败时为null
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        isChecked = false;
+        return mapper.map(cursor, columnIndexes);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return 结果总条数
+     */
+    public int getCount() {
+        return cursor != null && !cursor.isClosed() ? cursor.getCount() : 0;
+    }
+
+    Thread getOwner() {
+        return owner;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+        }
+        try {
+            if (cursor != null && !cursor.isClosed()) {
+                cursor.close();
+            }
+        } finally {
+            manager.onIteratorClose(this);
+        }
+    }
+}
@@ -0,0 +1,582 @@
+package com.xc.framework.db;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Date：2021/4/15
+ * Author：ZhangXuanChen
+ * Description：数据库异步执行器,写操作排队由单独写线程合并为一个事务提交(组提交),读操作在读线程池执行,结果通过Future或主线程回调返回;
+ * 单例与进程同生命周期:写线程为守护线程,空闲时阻塞等待,不提供关闭,读线程空闲30s后回收
+ */
+public class DBExecutor {
+    public static final String TAG = "DBExecutor";
+    private static DBExecutor mDBExecutor;
+    private final DBManager dbManager;
+    private final LinkedBlockingQueue<Task<?>> writeQueue = new LinkedBlockingQueue<Task<?>>();
+    private final ExecutorService readExecutor;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private volatile int maxBatchSize = 64;//每个事务最多合并写操作数
+    private volatile long batchDelay = 0;//等待更多写操作合并的时间(毫秒)
+    //统计
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong writeQueueNanos = new AtomicLong();
+    private final AtomicLong maxWriteQueueNanos = new AtomicLong();
+    private final AtomicLong readCount = new AtomicLong();
+    private final AtomicLong readQueueNanos = new AtomicLong();
+    private final AtomicLong maxReadQueueNanos = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong batchTaskCount = new AtomicLong();
+    private final AtomicInteger largestBatchSize = new AtomicInteger();
+    private final AtomicLong fallbackCount = new AtomicLong();
+
+    public static synchronized DBExecutor getInstance(Context context) {
+        if (mDBExecutor == null) {
+            mDBExecutor = new DBExecutor(DBManager.getInstance(context));
+        }
+        return mDBExecutor;
+    }
+
+    private DBExecutor(DBManager dbManager) {
+        this.dbManager = dbManager;
+        int readThreads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        this.readExecutor = new ThreadPoolExecutor(readThreads, readThreads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG + "-read-" + count.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        ((ThreadPoolExecutor) readExecutor).allowCoreThreadTimeOut(true);
+        //写线程随进程结束,不单独关闭
+        Thread writeThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, TAG + "-write");
+        writeThread.setDaemon(true);
+        writeThread.setPriority(Thread.NORM_PRIORITY - 1);
+        writeThread.start();
+    }
+
+    /**
+     * 配置每个事务最多合并写操作数,默认64
+     */
+    public void configMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * 配置等待更多写操作合并的时间(毫秒),默认0只合并已排队的写操作
+     */
+    public void configBatchDelay(long batchDelay) {
+        this.batchDelay = Math.max(0, batchDelay);
+    }
+
+    /**
+     * 异步插入
+     *
+     * @param classObject 类对象
+     * @param listener    结果监听,可为null
+     * @return 是否成功
+     */
+    public <T> Future<Boolean> insert(final T classObject, OnDBResultListener<Boolean> listener) {
+        return write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dbManager.insert(classObject);
+            }
+        }, listener);
+    }
+
+    /**
+     * 异步条件插入
+     *
+     * @param classObject     类对象
+     * @param conditionObject 条件对象
+     * @param listener        结果监听,可为null
+     * @return 是否成功
+     */
+    public <T> Future<Boolean> insert(final T classObject, final T conditionObject, OnDBResultListener<Boolean> listener) {
+        return write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dbManager.insert(classObject, conditionObject);
+            }
+        }, listener);
+    }
+
+    /**
+     * 异步插入集合
+     *
+     * @param classObjectList 类对象集合
+     * @param listener        结果监听,可为null
+     * @return 是否成功
+     */
+    public <T> Future<Boolean> insert(final List<T> classObjectList, OnDBResultListener<Boolean> listener) {
+        return write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dbManager.insert(classObjectList);
+            }
+        }, listener);
+    }
+
+    /**
+     * 异步删除
+     *
+     * @param classObject 类对象
+     * @param listener    结果监听,可为null
+     * @return 是否成功
+     */
+    public <T> Future<Boolean> delete(final T classObject, OnDBResultListener<Boolean> listener) {
+        return write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dbManager.delete(classObject);
+            }
+        }, listener);
+    }
+
+    /**
+     * 异步按字段批量删除
+     *
+     * @param field           字段名
+     * @param classObjectList 类对象集合
+     * @param listener        结果监听,可为null
+     * @return 是否成功
+     */
+    public <T> Future<Boolean> delete(final String field, final List<T> classObjectList, OnDBResultListener<Boolean> listener) {
+        return write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dbManager.delete(field, classObjectList);
+            }
+        }, listener);
+    }
+
+    /**
+     * 异步更新
+     *
+     * @param updateObject    更新对象
+     * @param conditionObject 条件对象
+     * @param listener        结果监听,可为null
+     * @return 是否成功
+     */
+    public <T> Future<Boolean> update(final T updateObject, final T conditionObject, OnDBResultListener<Boolean> listener) {
+        return write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dbManager.update(updateObject, conditionObject);
+            }
+        }, listener);
+    }
+
+    /**
+     * 异步查询
+     *
+     * @param classObject 类对象
+     * @param listener    结果监听,可为null
+     * @return 查询结果
+     */
+    public <T> Future<List<T>> query(final T classObject, OnDBResultListener<List<T>> listener) {
+        return read(new Callable<List<T>>() {
+            @Override
+            public List<T> call() {
+                return dbManager.query(classObject);
+            }
+        }, listener);
+    }
+
+    /**
+     * 异步分页查询
+     *
+     * @param classObject 类对象
+     * @param limit       获取数量
+     * @param offset      起始索引(从0开始)
+     * @param listener    结果监听,可为null
+     * @return 查询结果
+     */
+    public <T> Future<List<T>> query(final T classObject, final int limit, final int offset, OnDBResultListener<List<T>> listener) {
+        return read(new Callable<List<T>>() {
+            @Override
+            public List<T> call() {
+                return dbManager.query(classObject, limit, offset);
+            }
+        }, listener);
+    }
+
+    /**
+     * 异步自定义sql查询
+     *
+     * @param classObject 类
+     * @param sqlStr      查询sql
+     * @param listener    结果监听,可为null
+     * @return 查询结果
+     */
+    public <T> Future<List<T>> query(final Class<T> classObject, final String sqlStr, OnDBResultListener<List<T>> listener) {
+        return read(new Callable<List<T>>() {
+            @Override
+            public List<T> call() {
+                return dbManager.query(classObject, sqlStr);
+            }
+        }, listener);
+    }
+
+    /**
+     * 异步查询总数
+     *
+     * @param classObject 类对象
+     * @param listener    结果监听,可为null
+     * @return 总数
+     */
+    public <T> Future<Integer> queryTotalCount(final T classObject, OnDBResultListener<Integer> listener) {
+        return read(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return dbManager.queryTotalCount(classObject);
+            }
+        }, listener);
+    }
+
+    /**
+     * 提交写操作,与其他已排队写操作合并在一个事务中提交;返回false或抛出异常时该事务回滚,各写操作再逐个单独执行,
+     * 因此callable只应操作数据库
+     *
+     * @param callable 写操作,调用DBManager增删改方法
+     * @param listener 结果监听,可为null
+     * @return 写操作结果, 在事务提交后返回
+     */
+    public <R> Future<R> write(Callable<R> callable, OnDBResultListener<R> listener) {
+        Task<R> task = new Task<R>(callable, listener);
+        writeQueue.offer(task);
+        return task;
+    }
+
+    /**
+     * 提交读操作,在读线程池执行(WAL模式下不被写操作阻塞)
+     *
+     * @param callable 读操作,调用DBManager查询方法
+     * @param listener 结果监听,可为null
+     * @return 读操作结果
+     */
+    public <R> Future<R> read(Callable<R> callable, OnDBResultListener<R> listener) {
+        final Task<R> task = new Task<R>(callable, listener);
+        readExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (task.isCancelled()) {
+                    return;
+                }
+                long queueNanos = System.nanoTime() - task.queueTime;
+                readCount.incrementAndGet();
+                readQueueNanos.addAndGet(queueNanos);
+                updateMax(maxReadQueueNanos, queueNanos);
+                task.execute();
+                finish(task);
+            }
+        });
+        return task;
+    }
+
+    /**
+     * 写线程:取出第一个写操作后合并已排队的写操作,在一个事务中提交
+     */
+    private void writeLoop() {
+        List<Task<?>> batch = new ArrayList<Task<?>>();
+        while (true) {
+            try {
+                batch.add(writeQueue.take());
+                long delay = batchDelay;
+                if (delay > 0) {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+                    while (batch.size() < maxBatchSize) {
+                        long remain = deadline - System.nanoTime();
+                        Task<?> task = remain > 0 ? writeQueue.poll(remain, TimeUnit.NANOSECONDS) : null;
+                        if (task == null) {
+                            break;
+                        }
+                        batch.add(task);
+                    }
+                }
+                writeQueue.drainTo(batch, maxBatchSize - batch.size());
+                executeBatch(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable e) {
+                e.printStackTrace();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 执行一批写操作
+     */
+    private void executeBatch(List<Task<?>> batch) {
+        final List<Task<?>> taskList = new ArrayList<Task<?>>(batch.size());
+        long now = System.nanoTime();
+        for (Task<?> task : batch) {
+            if (!task.isCancelled()) {
+                long queueNanos = now - task.queueTime;
+                writeCount.incrementAndGet();
+                writeQueueNanos.addAndGet(queueNanos);
+                updateMax(maxWriteQueueNanos, queueNanos);
+                taskList.add(task);
+            }
+        }
+        if (taskList.isEmpty()) {
+            return;
+        }
+        batchCount.incrementAndGet();
+        batchTaskCount.addAndGet(taskList.size());
+        int max;
+        while ((max = largestBatchSize.get()) < taskList.size() && !largestBatchSize.compareAndSet(max, taskList.size())) {
+        }
+        if (taskList.size() > 1) {
+            boolean committed = dbManager.runInTransaction(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    for (Task<?> task : taskList) {
+                        if (!task.execute()) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            });
+            if (committed) {
+                for (Task<?> task : taskList) {
+                    finish(task);
+                }
+                return;
+            }
+            //有写操作失败,整个事务已回滚,逐个单独执行
+            fallbackCount.incrementAndGet();
+        }
+        for (Task<?> task : taskList) {
+            task.execute();
+            finish(task);
+        }
+    }
+
+    /**
+     * 完成Future并在主线程回调
+     */
+    private <R> void finish(final Task<R> task) {
+        if (!task.complete()) {
+            return;
+        }
+        final OnDBResultListener<R> listener = task.listener;
+        if (listener != null) {
+            final R result = task.result;
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onResult(result);
+                }
+            });
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while ((current = max.get()) < value && !max.compareAndSet(current, value)) {
+        }
+    }
+
+    /**
+     * 待执行写操作数
+     */
+    public int getPendingWriteCount() {
+        return writeQueue.size();
+    }
+
+    /**
+     * 写操作平均排队时间(毫秒)
+     */
+    public double getAverageWriteQueueMillis() {
+        long count = writeCount.get();
+        return count > 0 ? writeQueueNanos.get() / 1000000d / count : 0;
+    }
+
+    /**
+     * 写操作最长排队时间(毫秒)
+     */
+    public double getMaxWriteQueueMillis() {
+        return maxWriteQueueNanos.get() / 1000000d;
+    }
+
+    /**
+     * 读操作平均排队时间(毫秒)
+     */
+    public double getAverageReadQueueMillis() {
+        long count = readCount.get();
+        return count > 0 ? readQueueNanos.get() / 1000000d / count : 0;
+    }
+
+    /**
+     * 读操作最长排队时间(毫秒)
+     */
+    public double getMaxReadQueueMillis() {
+        return maxReadQueueNanos.get() / 1000000d;
+    }
+
+    /**
+     * 提交事务数
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * 每个事务平均写操作数
+     */
+    public double getAverageBatchSize() {
+        long count = batchCount.get();
+        return count > 0 ? batchTaskCount.get() / (double) count : 0;
+    }
+
+    /**
+     * 已提交事务中最多的写操作数(统计值,合并上限见configMaxBatchSize)
+     */
+    public int getLargestBatchSize() {
+        return largestBatchSize.get();
+    }
+
+    /**
+     * 因写操作失败回滚后逐个重新执行的事务数
+     */
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    /**
+     * 重置统计
+     */
+    public void resetStats() {
+        writeCount.set(0);
+        writeQueueNanos.set(0);
+        maxWriteQueueNanos.set(0);
+        readCount.set(0);
+        readQueueNanos.set(0);
+        maxReadQueueNanos.set(0);
+        batchCount.set(0);
+        batchTaskCount.set(0);
+        largestBatchSize.set(0);
+        fallbackCount.set(0);
+    }
+
+    /**
+     * 异步操作,执行结果在complete后对Future可见
+     */
+    private static class Task<R> implements Future<R> {
+        final Callable<R> callable;
+        final OnDBResultListener<R> listener;
+        final long queueTime = System.nanoTime();
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private boolean done;
+        private boolean cancelled;
+        R result;
+        Exception exception;
+
+        Task(Callable<R> callable, OnDBResultListener<R> listener) {
+            this.callable = callable;
+            this.listener = listener;
+        }
+
+        /**
+         * 执行,可重复执行(事务回滚后)
+         *
+         * @return 是否成功(未抛出异常且结果不为false)
+         */
+        boolean execute() {
+            try {
+                result = callable.call();
+                exception = null;
+            } catch (Exception e) {
+                e.printStackTrace();
+                result = null;
+                exception = e;
+            }
+            return exception == null && !Boolean.FALSE.equals(result);
+        }
+
+        synchronized boolean complete() {
+            if (done) {
+                return false;
+            }
+            done = true;
+            latch.countDown();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            cancelled = true;
+            latch.countDown();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return done;
+        }
+
+        @Override
+        public R get() throws InterruptedException, ExecutionException {
+            latch.await();
+            return getResult();
+        }
+
+        @Override
+        public R get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!latch.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return getResult();
+        }
+
+        private synchronized R getResult() throws ExecutionException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            if (exception != null) {
+                throw new ExecutionException(exception);
+            }
+            return result;
+        }
+    }
+}
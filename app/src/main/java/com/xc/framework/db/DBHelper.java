@@ -35,6 +35,8 @@ public class DBHelper extends SQLiteOpenHelper {
 
     public DBHelper(Context context, String dbName, int dbVersion) {
         super(context, dbName, null, dbVersion);
+        //预写日志,读操作不被写操作阻塞
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
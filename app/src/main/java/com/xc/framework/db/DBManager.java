@@ -3,6 +3,7 @@ package com.xc.framework.db;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 import com.xc.framework.bean.FieldBean;
 import com.xc.framework.util.XCArrayUtil;
@@ -10,9 +11,16 @@ import com.xc.framework.util.XCBeanUtil;
 import com.xc.framework.util.XCStringUtil;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * @author ZhangXuanChen
@@ -22,14 +30,53 @@ import java.util.Map;
  */
 public class DBManager {
     public static final String TAG = "DBManager";
+    public static final int DEFAULT_CHUNK_SIZE = 1000;//分段迁移默认每段条数
+    private static final long ITERATOR_CLOSE_TIMEOUT = 2000;//关闭连接时等待迭代器关闭的最长时间(毫秒),超时后强制关闭
     private Context context;
+    private DBHelper dbHelper;//为null时使用DBHelper单例
     public static DBManager mDBManager;
+    //长连接,只在删除/切换数据库时关闭
+    private volatile SQLiteDatabase mDatabase;
+    //读写操作持读锁,关闭连接持写锁
+    private final ReentrantReadWriteLock handleLock = new ReentrantReadWriteLock();
+    //写操作串行执行(WAL模式下与读操作并发)
+    private final ReentrantLock writeLock = new ReentrantLock();
+    //各表预编译插入语句,持写锁访问
+    private final Map<Class<?>, InsertStatement> insertStatementMap = new HashMap<Class<?>, InsertStatement>();
+    //已存在的表名,首次判断表是否存在时加载,由建表/删表同步
+    private volatile Set<String> tableSet;
+    //表名集合的版本,持tableLock修改,加载期间有建表/删表时不发布加载结果
+    private final Object tableLock = new Object();
+    private long tableVersion;
+    //批量插入统计
+    private volatile long insertRowCount;
+    private volatile long insertNanos;
+    //查询结果缓存,默认不开启
+    private volatile DBQueryCache queryCache;
+    //未关闭的迭代器,关闭连接前等待其关闭,超时后强制关闭(Cursor按需读取,需连接保持打开)
+    private final Object iteratorLock = new Object();
+    private final Set<DBCursorIterator<?>> openIterators = new HashSet<DBCursorIterator<?>>();
 
 
     public DBManager(Context context) {
         this.context = context;
     }
 
+    /**
+     * 使用指定的数据库(如测试用的独立数据库文件)
+     *
+     * @param context
+     * @param dbHelper 数据库助手
+     */
+    public DBManager(Context context, DBHelper dbHelper) {
+        this.context = context;
+        this.dbHelper = dbHelper;
+    }
+
+    private DBHelper getHelper() {
+        return dbHelper != null ? dbHelper : DBHelper.getInstance(context);
+    }
+
     public static synchronized DBManager getInstance(Context context) {
         if (mDBManager == null) {
             mDBManager = new DBManager(context);
@@ -37,26 +84,181 @@ public class DBManager {
         return mDBManager;
     }
 
+    /**
+     * 获取数据库连接,首次调用时打开,之后复用
+     */
+    private SQLiteDatabase getDatabase() {
+        SQLiteDatabase database = mDatabase;
+        if (database == null || !database.isOpen()) {
+            synchronized (this) {
+                database = mDatabase;
+                if (database == null || !database.isOpen()) {
+                    database = getHelper().getWritableDatabase();
+                    mDatabase = database;
+                    clearTables();
+                }
+            }
+        }
+        return database;
+    }
+
+    /**
+     * 开始读操作,可与其它读操作及写操作并发
+     */
+    private SQLiteDatabase beginRead() {
+        handleLock.readLock().lock();
+        try {
+            return getDatabase();
+        } catch (RuntimeException e) {
+            handleLock.readLock().unlock();
+            throw e;
+        }
+    }
+
+    private void endRead() {
+        handleLock.readLock().unlock();
+    }
+
+    /**
+     * 开始写操作,同一时间只有一个写操作
+     */
+    private SQLiteDatabase beginWrite() {
+        handleLock.readLock().lock();
+        writeLock.lock();
+        try {
+            return getDatabase();
+        } catch (RuntimeException e) {
+            endWrite();
+            throw e;
+        }
+    }
+
+    private void endWrite() {
+        writeLock.unlock();
+        handleLock.readLock().unlock();
+    }
+
+    /**
+     * 关闭数据库连接,下次操作时重新打开
+     */
+    public void close() {
+        handleLock.writeLock().lock();
+        try {
+            closeDatabase();
+        } finally {
+            handleLock.writeLock().unlock();
+        }
+    }
+
+    private void closeDatabase() {
+        closeIterators();
+        clearInsertStatements();
+        clearTables();
+        invalidateCache(null);
+        SQLiteDatabase database = mDatabase;
+        mDatabase = null;
+        if (database != null && database.isOpen()) {
+            database.close();
+        }
+    }
+
+    /**
+     * 迭代器打开,持读锁时调用
+     *
+     * @param iterator
+     */
+    void onIteratorOpen(DBCursorIterator<?> iterator) {
+        synchronized (iteratorLock) {
+            openIterators.add(iterator);
+        }
+    }
+
+    /**
+     * 迭代器关闭
+     *
+     * @param iterator
+     */
+    void onIteratorClose(DBCursorIterator<?> iterator) {
+        synchronized (iteratorLock) {
+            openIterators.remove(iterator);
+            iteratorLock.notifyAll();
+        }
+    }
+
+    /**
+     * 关闭未关闭的迭代器(持写锁时调用,不会再有新迭代器打开):
+     * 等待其它线程读完或close,最长ITERATOR_CLOSE_TIMEOUT,之后强制关闭;
+     * 当前线程打开的迭代器不等待(当前线程无法在等待时关闭),持有迭代器的线程阻塞在其它数据库操作时超时后继续
+     */
+    private void closeIterators() {
+        List<DBCursorIterator<?>> iterators;
+        synchronized (iteratorLock) {
+            long deadline = System.currentTimeMillis() + ITERATOR_CLOSE_TIMEOUT;
+            long remaining;
+            while (isWaitIterators() && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    iteratorLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            iterators = new ArrayList<DBCursorIterator<?>>(openIterators);
+        }
+        for (DBCursorIterator<?> iterator : iterators) {
+            iterator.close();
+        }
+    }
+
+    /**
+     * 是否有其它线程打开的迭代器,持iteratorLock调用
+     */
+    private boolean isWaitIterators() {
+        for (DBCursorIterator<?> iterator : openIterators) {
+            if (iterator.getOwner() != Thread.currentThread()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 创建数据库表
      *
-     * @param tableClass 以实体类名创建表名,成员变量创建字段(只支持String类型变量,相同类名不会重复创建表)
+     * @param tableClass 以实体类名创建表名,成员变量创建字段(FieldType注释列类型,默认text;FieldIndex注释创建索引;相同类名不会重复创建表)
      * @return
      */
-    public synchronized boolean createTable(Class<?> tableClass) {
-        SQLiteDatabase db = DBHelper.getInstance(context).getReadableDatabase();
-        if (db != null && tableClass != null) {
+    public boolean createTable(Class<?> tableClass) {
+        if (tableClass == null) {
+            return false;
+        }
+        SQLiteDatabase db = beginWrite();
+        try {
+            db.beginTransactionNonExclusive();
             try {
                 db.execSQL(DBUtil.getCreateTableSql(tableClass));
-            } catch (Exception e) {
-                return false;
-            } finally {
-                if (db != null) {
-                    db.close();
+                for (String indexSql : DBUtil.getCreateIndexSqlMap(tableClass).values()) {
+                    db.execSQL(indexSql);
                 }
+                List<String> searchSqlList = DBUtil.getCreateSearchSqlList(tableClass);
+                if (!searchSqlList.isEmpty()) {
+                    boolean isSearchExist = DBUtil.getSearchTableField(db, tableClass) != null;
+                    for (String searchSql : searchSqlList) {
+                        db.execSQL(searchSql);
+                    }
+                    if (!isSearchExist) {
+                        db.execSQL(DBUtil.getRebuildSearchSql(tableClass));
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
             }
-        } else {
+            updateTables(tableClass.getSimpleName(), true);
+        } catch (Exception e) {
             return false;
+        } finally {
+            endWrite();
         }
         return true;
     }
@@ -67,63 +269,136 @@ public class DBManager {
      * @param tableClass 以实体类名创建的表
      * @return
      */
-    public synchronized boolean isTableExist(Class<?> tableClass) {
+    public boolean isTableExist(Class<?> tableClass) {
         if (tableClass == null) {
             return false;
         }
-        SQLiteDatabase db = DBHelper.getInstance(context).getReadableDatabase();
-        String sql = "select count(*) as c from sqlite_master where type = 'table' and name = '" + tableClass.getSimpleName() + "'";
-        if (db == null || XCStringUtil.isEmpty(sql)) {
-            return false;
+        Set<String> tables = tableSet;
+        if (tables == null) {
+            tables = loadTables();
         }
+        return tables != null && tables.contains(tableClass.getSimpleName());
+    }
+
+    /**
+     * 从sqlite_master加载所有表名,与写操作并发执行
+     */
+    private Set<String> loadTables() {
+        SQLiteDatabase db = beginRead();
         Cursor cursor = null;
         try {
-            cursor = db.rawQuery(sql, null);
+            long version;
+            synchronized (tableLock) {
+                Set<String> tables = tableSet;
+                if (tables != null) {
+                    return tables;
+                }
+                version = tableVersion;
+            }
+            cursor = db.rawQuery("select name from sqlite_master where type = 'table'", null);
             if (cursor == null) {
-                return false;
+                return null;
             }
-            if (cursor.moveToNext()) {
-                if (cursor.getInt(0) > 0) {
-                    return true;
+            Set<String> tables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            while (cursor.moveToNext()) {
+                tables.add(cursor.getString(0));
+            }
+            synchronized (tableLock) {
+                if (version == tableVersion) {//加载期间无建表/删表
+                    tableSet = tables;
                 }
             }
+            return tables;
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (db != null) {
-                db.close();
-            }
             if (cursor != null) {
                 cursor.close();
             }
+            endRead();
+        }
+        return null;
+    }
+
+    /**
+     * 建表/删表后同步表名集合
+     *
+     * @param table   表名
+     * @param isExist 是否存在
+     */
+    private void updateTables(String table, boolean isExist) {
+        synchronized (tableLock) {
+            tableVersion++;
+            Set<String> tables = tableSet;
+            if (tables != null) {
+                if (isExist) {
+                    tables.add(table);
+                } else {
+                    tables.remove(table);
+                }
+            }
+        }
+    }
+
+    /**
+     * 清除表名集合,下次判断时重新加载
+     */
+    private void clearTables() {
+        synchronized (tableLock) {
+            tableVersion++;
+            tableSet = null;
         }
-        return false;
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/14
+     * Description：重新加载表名(通过OnDBListener或自定义sql建表/删表后调用)
+     */
+    public void refreshTables() {
+        clearTables();
     }
 
     /**
      * Author：ZhangXuanChen
      * Time：2021/4/9 15:33
-     * Description：变更表结果-并复制表数据
+     * Description：变更表结果-并复制表数据(字段增减或列类型变更时重建表,索引按FieldIndex注释同步)
      */
-    public synchronized boolean alterTable(Class<?> tableClass) {
+    public boolean alterTable(Class<?> tableClass) {
         if (tableClass == null) {
             return false;
         }
         if (!isTableExist(tableClass)) {
             return false;
         }
-        SQLiteDatabase db = null;
+        boolean isMigrating;
+        SQLiteDatabase db = beginRead();
+        try {
+            isMigrating = DBUtil.isTableExist(db, tableClass.getSimpleName() + DBUtil.MIGRATE_SUFFIX);
+        } finally {
+            endRead();
+        }
+        if (isMigrating) {//继续未完成的分段迁移
+            return alterTable(tableClass, DEFAULT_CHUNK_SIZE, null);
+        }
+        db = beginWrite();
         try {
-            db = DBHelper.getInstance(context).getReadableDatabase();
             List<String> oldList = DBUtil.getAlterTableField(db, tableClass);
             List<FieldBean> newList = XCBeanUtil.getFieldList(tableClass);
             if (oldList == null || oldList.isEmpty() || newList == null || newList.isEmpty()) {
                 return false;
             }
             List<String> equalList = DBUtil.getAlterEqualField(oldList, newList);
-            if (equalList.size() == oldList.size() && equalList.size() == newList.size()) {//未变更表结构
+            if (equalList.size() == oldList.size() && equalList.size() == newList.size()
+                    && !DBUtil.isFieldTypeChanged(DBUtil.getTableFieldTypeMap(db, tableClass), newList)) {//未变更表结构
+                alterIndex(db, tableClass);
+                alterSearch(db, tableClass);
                 return true;
             }
+            //删除全文检索表及触发器,重建表后再创建
+            for (String dropSql : DBUtil.getDropSearchSqlList(tableClass)) {
+                db.execSQL(dropSql);
+            }
             //将表改为临时表
             String oldTable = tableClass.getSimpleName() + "_" + System.currentTimeMillis();
             String renameSql = "alter table " + tableClass.getSimpleName() + " rename to " + oldTable;
@@ -136,47 +411,243 @@ public class DBManager {
             if (!XCStringUtil.isEmpty(importSql)) {
                 db.execSQL(importSql);
             }
-            //删除临时表
+            //删除临时表(索引随临时表删除)
             String deleteSql = "drop table " + oldTable;
             db.execSQL(deleteSql);
+            //创建索引
+            alterIndex(db, tableClass);
+            alterSearch(db, tableClass);
+            removeInsertStatement(tableClass);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (db != null) {
-                db.close();
-            }
+            invalidateCache(tableClass);
+            endWrite();
         }
         return false;
     }
 
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/15
+     * Description：分段变更表结构:创建新表后按_id分段复制旧表数据,每段一个短事务,段间不阻塞其他读写(旧表的更新/删除通过触发器同步到已复制数据),
+     * 最后在一个事务中复制剩余数据并替换旧表;中断(如进程被杀)后再次调用从已复制位置继续
+     *
+     * @param tableClass 以实体类名创建的表
+     * @param chunkSize  每段复制条数,如1000
+     * @param listener   进度监听(调用线程回调),可为null
+     * @return 是否成功
+     */
+    public boolean alterTable(Class<?> tableClass, int chunkSize, OnDBMigrateListener listener) {
+        if (tableClass == null) {
+            return false;
+        }
+        if (!isTableExist(tableClass)) {
+            return false;
+        }
+        chunkSize = Math.max(1, chunkSize);
+        String table = tableClass.getSimpleName();
+        String migrateTable = table + DBUtil.MIGRATE_SUFFIX;
+        List<String> equalList;
+        long lastId;
+        long copied;
+        long total;
+        //创建新表及同步触发器
+        SQLiteDatabase db = beginWrite();
+        try {
+            List<String> oldList = DBUtil.getTableField(db, table);
+            List<FieldBean> newList = XCBeanUtil.getFieldList(tableClass);
+            if (oldList.isEmpty() || newList == null || newList.isEmpty()) {
+                return false;
+            }
+            equalList = DBUtil.getAlterEqualField(oldList, newList);
+            boolean isMigrateExist = DBUtil.isTableExist(db, migrateTable);
+            if (!isMigrateExist && equalList.size() == oldList.size() && equalList.size() == newList.size()
+                    && !DBUtil.isFieldTypeChanged(DBUtil.getTableFieldTypeMap(db, tableClass), newList)) {//未变更表结构
+                alterIndex(db, tableClass);
+                alterSearch(db, tableClass);
+                return true;
+            }
+            if (isMigrateExist && !DBUtil.getTableField(db, migrateTable).equals(DBUtil.getFieldNameList(tableClass))) {//迁移中断后表结构又变更,重新迁移
+                for (String dropSql : DBUtil.getDropMigrateSqlList(tableClass)) {
+                    db.execSQL(dropSql);
+                }
+                isMigrateExist = false;
+            }
+            if (!isMigrateExist) {//索引名不随表名变化,替换旧表后再创建,迁移期间旧表索引保持可用
+                db.execSQL(DBUtil.getCreateTableSql(tableClass, migrateTable));
+            }
+            if (!equalList.isEmpty()) {
+                for (String triggerSql : DBUtil.getMigrateTriggerSqlList(tableClass, equalList)) {
+                    db.execSQL(triggerSql);
+                }
+            }
+            lastId = queryLong(db, "select ifnull(max(" + DBUtil.KEY_ID + "), 0) from " + migrateTable, 0);
+            copied = queryLong(db, "select count(*) from " + migrateTable, 0);
+            total = equalList.isEmpty() ? 0 : copied + queryLong(db, "select count(*) from " + table + " where " + DBUtil.KEY_ID + " > " + lastId, 0);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            endWrite();
+        }
+        //分段复制
+        while (!equalList.isEmpty()) {
+            db = beginWrite();
+            try {
+                long toId = queryLong(db, "select " + DBUtil.KEY_ID + " from " + table + " where " + DBUtil.KEY_ID + " > " + lastId
+                        + " order by " + DBUtil.KEY_ID + " limit 1 offset " + (chunkSize - 1), -1);
+                if (toId < 0) {//剩余不足一段,替换旧表时复制
+                    break;
+                }
+                db.beginTransactionNonExclusive();
+                try {
+                    copied += executeForChanges(db, DBUtil.getMigrateCopySql(tableClass, equalList, lastId, toId));
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                lastId = toId;
+            } catch (Exception e) {
+                e.printStackTrace();
+                return false;
+            } finally {
+                endWrite();
+            }
+            if (listener != null) {
+                listener.onProgress(copied, Math.max(copied, total));
+            }
+        }
+        //复制剩余数据并替换旧表
+        db = beginWrite();
+        try {
+            db.beginTransactionNonExclusive();
+            try {
+                if (!equalList.isEmpty()) {
+                    copied += executeForChanges(db, DBUtil.getMigrateCopySql(tableClass, equalList, lastId, -1));
+                }
+                for (String dropSql : DBUtil.getDropSearchSqlList(tableClass)) {
+                    db.execSQL(dropSql);
+                }
+                db.execSQL("drop table " + table);//同步触发器及索引随旧表删除
+                db.execSQL("alter table " + migrateTable + " rename to " + table);
+                alterIndex(db, tableClass);
+                alterSearch(db, tableClass);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            removeInsertStatement(tableClass);
+            updateTables(migrateTable, false);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            invalidateCache(tableClass);
+            endWrite();
+        }
+        if (listener != null) {
+            listener.onProgress(copied, copied);
+        }
+        return true;
+    }
+
+    /**
+     * 执行sql并返回变更行数(不含触发器中的变更),需持锁调用
+     */
+    private static int executeForChanges(SQLiteDatabase db, String sql) {
+        SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * 查询单个整数结果,需持锁调用
+     */
+    private long queryLong(SQLiteDatabase db, String sql, long defaultValue) {
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(sql, null);
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 同步索引:删除未注释的索引,创建新增的索引
+     */
+    private void alterIndex(SQLiteDatabase db, Class<?> tableClass) {
+        Map<String, String> indexSqlMap = DBUtil.getCreateIndexSqlMap(tableClass);
+        for (String indexName : DBUtil.getTableIndexList(db, tableClass)) {
+            if (!indexSqlMap.containsKey(indexName)) {
+                db.execSQL("drop index if exists " + indexName);
+            }
+        }
+        for (String indexSql : indexSqlMap.values()) {
+            db.execSQL(indexSql);
+        }
+    }
+
+    /**
+     * 同步全文检索表:FieldSearch字段变更时删除重建
+     */
+    private void alterSearch(SQLiteDatabase db, Class<?> tableClass) {
+        List<String> searchList = DBUtil.getSearchFieldList(tableClass);
+        List<String> oldList = DBUtil.getSearchTableField(db, tableClass);
+        if (oldList != null && oldList.equals(searchList)) {
+            return;
+        }
+        if (oldList != null) {
+            for (String dropSql : DBUtil.getDropSearchSqlList(tableClass)) {
+                db.execSQL(dropSql);
+            }
+        }
+        if (!searchList.isEmpty()) {
+            for (String searchSql : DBUtil.getCreateSearchSqlList(tableClass)) {
+                db.execSQL(searchSql);
+            }
+            db.execSQL(DBUtil.getRebuildSearchSql(tableClass));
+        }
+    }
+
     /**
      * 删除数据库表
      *
      * @param tableClass 以实体类名创建的表
      * @return
      */
-    public synchronized boolean deleteTable(Class<?> tableClass) {
+    public boolean deleteTable(Class<?> tableClass) {
         if (tableClass == null) {
             return false;
         }
         if (!isTableExist(tableClass)) {
             return false;
         }
-        SQLiteDatabase db = DBHelper.getInstance(context).getReadableDatabase();
         String sql = "drop table " + tableClass.getSimpleName();
-        if (db == null || XCStringUtil.isEmpty(sql)) {
-            return false;
-        }
+        SQLiteDatabase db = beginWrite();
         try {
+            removeInsertStatement(tableClass);
+            for (String dropSql : DBUtil.getDropSearchSqlList(tableClass)) {
+                db.execSQL(dropSql);
+            }
             db.execSQL(sql);
+            updateTables(tableClass.getSimpleName(), false);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (db != null) {
-                db.close();
-            }
+            invalidateCache(tableClass);
+            endWrite();
         }
         return false;
     }
@@ -188,27 +659,23 @@ public class DBManager {
      *
      * @param tableClass 以实体类名创建的表
      */
-    public synchronized boolean clearTable(Class<?> tableClass) {
+    public boolean clearTable(Class<?> tableClass) {
         if (tableClass == null) {
             return false;
         }
         if (!isTableExist(tableClass)) {
             return false;
         }
-        SQLiteDatabase db = DBHelper.getInstance(context).getReadableDatabase();
         String sql = "delete from " + tableClass.getSimpleName();
-        if (db == null || XCStringUtil.isEmpty(sql)) {
-            return false;
-        }
+        SQLiteDatabase db = beginWrite();
         try {
             db.execSQL(sql);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (db != null) {
-                db.close();
-            }
+            invalidateCache(tableClass);
+            endWrite();
         }
         return false;
     }
@@ -220,9 +687,15 @@ public class DBManager {
      * @date 2020/2/4
      * @description 初始化数据库（非必需调用）
      */
-    public synchronized void initDB(String dbName, int dbVersion) {
+    public void initDB(String dbName, int dbVersion) {
         if (!XCStringUtil.isEmpty(dbName) && dbVersion > 0) {
-            DBHelper.initDB(context, dbName, dbVersion);
+            handleLock.writeLock().lock();
+            try {
+                closeDatabase();
+                DBHelper.initDB(context, dbName, dbVersion);
+            } finally {
+                handleLock.writeLock().unlock();
+            }
         }
     }
 
@@ -231,7 +704,7 @@ public class DBManager {
      *
      * @return
      */
-    public synchronized boolean deleteDB() {
+    public boolean deleteDB() {
         return deleteDB(null);
     }
 
@@ -240,16 +713,22 @@ public class DBManager {
      *
      * @return
      */
-    public synchronized boolean deleteDB(String dbName) {
-        DBHelper dbHelper = DBHelper.getInstance(context);
+    public boolean deleteDB(String dbName) {
+        handleLock.writeLock().lock();
         try {
+            closeDatabase();
+            DBHelper helper = getHelper();
             if (!XCStringUtil.isEmpty(dbName)) {
-                return dbHelper.deleteDB(context, dbName);
+                return helper.deleteDB(context, dbName);
+            } else if (dbHelper != null) {
+                return helper.deleteDB(context, dbHelper.getDatabaseName());
             } else {
-                return dbHelper.deleteDB(context);
+                return helper.deleteDB(context);
             }
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            handleLock.writeLock().unlock();
         }
         return false;
     }
@@ -260,7 +739,7 @@ public class DBManager {
      * @param classObject 类对象,操作以该对象类名创建的表,反射get方法获取插入数据,只支持String变量(完全相同的数据不会重复插入)
      * @return
      */
-    public synchronized <T> boolean insert(T classObject) {
+    public <T> boolean insert(T classObject) {
         List<T> classObjectList = new ArrayList<T>();
         classObjectList.add(classObject);
         return insert(classObjectList, null);
@@ -273,7 +752,7 @@ public class DBManager {
      * @param conditionObject 条件对象，存在不插入
      * @return
      */
-    public synchronized <T> boolean insert(T classObject, T conditionObject) {
+    public <T> boolean insert(T classObject, T conditionObject) {
         List<T> classObjectList = new ArrayList<T>();
         classObjectList.add(classObject);
         return insert(classObjectList, conditionObject);
@@ -285,7 +764,7 @@ public class DBManager {
      * @param classObjectList 类对象集合,操作以该对象类名创建的表,反射get方法获取插入数据,只支持String变量(完全相同的数据不会重复插入)
      * @return
      */
-    public synchronized <T> boolean insert(List<T> classObjectList) {
+    public <T> boolean insert(List<T> classObjectList) {
         return insert(classObjectList, null);
     }
 
@@ -296,38 +775,242 @@ public class DBManager {
      * @param conditionObject 条件对象，存在不插入
      * @return
      */
-    private synchronized <T> boolean insert(List<T> classObjectList, T conditionObject) {
+    private <T> boolean insert(List<T> classObjectList, T conditionObject) {
         if (classObjectList == null || classObjectList.isEmpty()) {
             return false;
         }
         if (!isTableExist(classObjectList.get(0).getClass())) {
             createTable(classObjectList.get(0).getClass());
         }
-        SQLiteDatabase db = DBHelper.getInstance(context).getReadableDatabase();
+        if (conditionObject == null) {
+            return insertBatch(classObjectList.get(0).getClass(), classObjectList);
+        }
         List<List<T>> splitObjectList = new ArrayList<List<T>>();
         if (classObjectList.size() > 500) {//sqlite每次插入上限500
             splitObjectList.addAll(XCArrayUtil.split(classObjectList, 500));
         } else {
             splitObjectList.add(classObjectList);
         }
+        SQLiteDatabase db = beginWrite();
+        boolean isRecursive = false;
+        try {
+            isRecursive = beginRecursiveTriggers(db, classObjectList.get(0).getClass());
+            for (int i = 0; i < splitObjectList.size(); i++) {
+                String insertSql = DBUtil.getInsertSql(splitObjectList.get(i), conditionObject);
+                if (!XCStringUtil.isEmpty(insertSql)) {
+                    db.execSQL(insertSql);
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            endRecursiveTriggers(db, isRecursive);
+            invalidateCache(classObjectList.get(0).getClass());
+            endWrite();
+        }
+        return false;
+    }
+
+    /**
+     * 批量插入,每张表复用一条预编译语句,所有数据在同一事务中插入
+     *
+     * @param tableClass      表类
+     * @param classObjectList 类对象集合
+     * @return
+     */
+    private <T> boolean insertBatch(Class<?> tableClass, List<T> classObjectList) {
+        long start = System.nanoTime();
+        SQLiteDatabase db = beginWrite();
+        boolean isRecursive = false;
+        try {
+            InsertStatement insertStatement = getInsertStatement(db, tableClass);
+            if (insertStatement == null) {
+                return false;
+            }
+            isRecursive = beginRecursiveTriggers(db, tableClass);
+            db.beginTransactionNonExclusive();
+            try {
+                for (T classObject : classObjectList) {
+                    insertStatement.mapper.bindInsert(insertStatement.statement, classObject);
+                    insertStatement.statement.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            insertRowCount += classObjectList.size();
+            insertNanos += System.nanoTime() - start;
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            endRecursiveTriggers(db, isRecursive);
+            invalidateCache(tableClass);
+            endWrite();
+        }
+        return false;
+    }
+
+    /**
+     * 有全文检索表或分段迁移中时开启recursive_triggers,insert or replace删除冲突行时触发删除触发器,同步删除检索表/迁移表旧行;
+     * 只在本次插入期间开启,不影响其他写操作,需持写锁调用
+     *
+     * @return 是否已开启,结束时传给endRecursiveTriggers
+     */
+    private boolean beginRecursiveTriggers(SQLiteDatabase db, Class<?> tableClass) {
+        if (DBUtil.getSearchFieldList(tableClass).isEmpty() && !DBUtil.isTableExist(db, tableClass.getSimpleName() + DBUtil.MIGRATE_SUFFIX)) {
+            return false;
+        }
+        db.execSQL("PRAGMA recursive_triggers = ON");
+        return true;
+    }
+
+    /**
+     * 关闭beginRecursiveTriggers开启的recursive_triggers,需持写锁调用
+     */
+    private void endRecursiveTriggers(SQLiteDatabase db, boolean isRecursive) {
+        if (!isRecursive) {
+            return;
+        }
+        try {
+            db.execSQL("PRAGMA recursive_triggers = OFF");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 获取表的预编译插入语句,需持写锁调用
+     */
+    private InsertStatement getInsertStatement(SQLiteDatabase db, Class<?> tableClass) {
+        InsertStatement insertStatement = insertStatementMap.get(tableClass);
+        if (insertStatement == null) {
+            DBRowMapper<?> mapper = DBRowMapper.get(tableClass);
+            String sql = DBUtil.getInsertStatementSql(tableClass, mapper.getInsertFieldList());
+            if (XCStringUtil.isEmpty(sql)) {
+                return null;
+            }
+            insertStatement = new InsertStatement(db.compileStatement(sql), mapper);
+            insertStatementMap.put(tableClass, insertStatement);
+        }
+        return insertStatement;
+    }
+
+    /**
+     * 清除所有预编译插入语句,需持写锁调用
+     */
+    private void clearInsertStatements() {
+        for (InsertStatement insertStatement : insertStatementMap.values()) {
+            insertStatement.statement.close();
+        }
+        insertStatementMap.clear();
+    }
+
+    /**
+     * 表结构变更后移除预编译插入语句,需持写锁调用
+     */
+    private void removeInsertStatement(Class<?> tableClass) {
+        InsertStatement insertStatement = insertStatementMap.remove(tableClass);
+        if (insertStatement != null) {
+            insertStatement.statement.close();
+        }
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/14
+     * Description：在同一事务中执行多个操作(组提交),body返回false或抛出异常时全部回滚
+     *
+     * @param body 事务内操作,可调用本类的增删改方法
+     * @return 是否提交
+     */
+    public boolean runInTransaction(Callable<Boolean> body) {
+        if (body == null) {
+            return false;
+        }
+        SQLiteDatabase db = beginWrite();
+        boolean committed = false;
         try {
-            for (int i = 0; i < splitObjectList.size(); i++) {
-                String insertSql = DBUtil.getInsertSql(splitObjectList.get(i), conditionObject);
-                if (db != null && !XCStringUtil.isEmpty(insertSql)) {
-                    db.execSQL(insertSql);
+            boolean successful = false;
+            db.beginTransactionNonExclusive();
+            try {
+                successful = Boolean.TRUE.equals(body.call());
+                if (successful) {
+                    db.setTransactionSuccessful();
                 }
+            } finally {
+                db.endTransaction();
             }
-            return true;
+            committed = successful;
+            return successful;
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (db != null) {
-                db.close();
+            if (!committed) {//事务内的建表/删表及预编译语句随回滚失效,重新加载
+                clearTables();
+                clearInsertStatements();
             }
+            invalidateCache(null);//事务提交后再次失效,避免提交前并发查询缓存了旧数据
+            endWrite();
         }
         return false;
     }
 
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/15
+     * Description：开启查询结果缓存,条件/分页/模糊/日期查询按生成的sql缓存,增删改、清空表后该表缓存失效(自定义sql查询不缓存);
+     * 命中时返回新映射的对象,可随意修改
+     *
+     * @param maxRows 最多缓存行数,小于等于0关闭缓存
+     */
+    public void configQueryCache(int maxRows) {
+        queryCache = maxRows > 0 ? new DBQueryCache(maxRows) : null;
+    }
+
+    /**
+     * 获取查询结果缓存(命中率等统计),未开启返回null
+     */
+    public DBQueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * 表缓存失效,需在写操作提交后调用
+     *
+     * @param tableClass 表类,null全部失效
+     */
+    private void invalidateCache(Class<?> tableClass) {
+        DBQueryCache cache = queryCache;
+        if (cache != null) {
+            if (tableClass != null) {
+                cache.invalidate(tableClass.getSimpleName());
+            } else {
+                cache.invalidateAll();
+            }
+        }
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/14
+     * Description：批量插入总条数
+     */
+    public long getInsertRowCount() {
+        return insertRowCount;
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/14
+     * Description：批量插入平均每秒条数
+     */
+    public double getInsertRowsPerSecond() {
+        long nanos = insertNanos;
+        return nanos > 0 ? insertRowCount * 1000000000d / nanos : 0;
+    }
+
     /**
      * 删除
      *
@@ -335,25 +1018,20 @@ public class DBManager {
      *                    new空对象删除该表所有数据 )
      * @return
      */
-    public synchronized <T> boolean delete(T classObject) {
-        SQLiteDatabase db = DBHelper.getInstance(context).getReadableDatabase();
+    public <T> boolean delete(T classObject) {
         String condition = DBUtil.getKeyEqualValueSql(classObject, "and", false);
         String deleteSql = "delete from " + classObject.getClass().getSimpleName();
         if (!XCStringUtil.isEmpty(condition)) {
             deleteSql += " where " + condition;
         }
-        if (db != null && !XCStringUtil.isEmpty(deleteSql)) {
-            try {
-                db.execSQL(deleteSql);
-            } catch (Exception e) {
-                return false;
-            } finally {
-                if (db != null) {
-                    db.close();
-                }
-            }
-        } else {
+        SQLiteDatabase db = beginWrite();
+        try {
+            db.execSQL(deleteSql);
+        } catch (Exception e) {
             return false;
+        } finally {
+            invalidateCache(classObject.getClass());
+            endWrite();
         }
         return true;
     }
@@ -365,27 +1043,26 @@ public class DBManager {
      *                        new空对象删除该表所有数据 )
      * @return
      */
-    public synchronized <T> boolean delete(String field, List<T> classObjectList) {
+    public <T> boolean delete(String field, List<T> classObjectList) {
         if (XCStringUtil.isEmpty(field) || classObjectList == null || classObjectList.isEmpty()) {
             return false;
         }
         if (!isTableExist(classObjectList.get(0).getClass())) {
             return false;
         }
-        SQLiteDatabase db = DBHelper.getInstance(context).getReadableDatabase();
         String deleteSql = DBUtil.getDeleteSql(field, classObjectList);
-        if (db == null || XCStringUtil.isEmpty(deleteSql)) {
+        if (XCStringUtil.isEmpty(deleteSql)) {
             return false;
         }
+        SQLiteDatabase db = beginWrite();
         try {
             db.execSQL(deleteSql);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (db != null) {
-                db.close();
-            }
+            invalidateCache(classObjectList.get(0).getClass());
+            endWrite();
         }
         return false;
     }
@@ -398,27 +1075,26 @@ public class DBManager {
      *                        条件不唯一更新符合条件的所有数据, new空对象更新该表所有数据)
      * @return
      */
-    public synchronized <T> boolean update(T updateObject, T conditionObject) {
+    public <T> boolean update(T updateObject, T conditionObject) {
         if (updateObject == null || conditionObject == null) {
             return false;
         }
         if (!isTableExist(updateObject.getClass())) {
             return false;
         }
-        SQLiteDatabase db = DBHelper.getInstance(context).getReadableDatabase();
         String updateSql = DBUtil.getUpdateSql(updateObject, conditionObject);
-        if (db == null || XCStringUtil.isEmpty(updateSql)) {
+        if (XCStringUtil.isEmpty(updateSql)) {
             return false;
         }
+        SQLiteDatabase db = beginWrite();
         try {
             db.execSQL(updateSql);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (db != null) {
-                db.close();
-            }
+            invalidateCache(conditionObject.getClass());
+            endWrite();
         }
         return false;
     }
@@ -428,18 +1104,15 @@ public class DBManager {
      * Time：2020/5/22 16:28
      * Description：查询总条数
      */
-    public synchronized <T> int queryTotalCount(T classObject) {
+    public <T> int queryTotalCount(T classObject) {
         if (classObject == null) {
             return -1;
         }
         if (!isTableExist(classObject.getClass())) {
             return -1;
         }
-        SQLiteDatabase db = DBHelper.getInstance(context).getReadableDatabase();
         String sql = "select count(*) from " + classObject.getClass().getSimpleName();
-        if (db == null || XCStringUtil.isEmpty(sql)) {
-            return -1;
-        }
+        SQLiteDatabase db = beginRead();
         Cursor cursor = null;
         try {
             cursor = db.rawQuery(sql, null);
@@ -452,12 +1125,10 @@ public class DBManager {
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (db != null) {
-                db.close();
-            }
             if (cursor != null) {
                 cursor.close();
             }
+            endRead();
         }
         return -1;
     }
@@ -467,18 +1138,18 @@ public class DBManager {
      * @date 2020/2/25
      * @description 查询主键id
      */
-    public synchronized <T> String queryKeyId(T classObject) {
+    public <T> String queryKeyId(T classObject) {
         if (classObject == null) {
             return null;
         }
         if (!isTableExist(classObject.getClass())) {
             return null;
         }
-        SQLiteDatabase db = DBHelper.getInstance(context).getReadableDatabase();
         String querySql = DBUtil.getQuerySql(classObject, -1, -1, null, null, null, null);
-        if (db == null || XCStringUtil.isEmpty(querySql)) {
+        if (XCStringUtil.isEmpty(querySql)) {
             return null;
         }
+        SQLiteDatabase db = beginRead();
         Cursor cursor = null;
         try {
             cursor = db.rawQuery(querySql, null);
@@ -491,12 +1162,10 @@ public class DBManager {
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (db != null) {
-                db.close();
-            }
             if (cursor != null) {
                 cursor.close();
             }
+            endRead();
         }
         return null;
     }
@@ -507,7 +1176,7 @@ public class DBManager {
      * @param classObject 类对象,操作以该对象类名创建的表,反射get方法获取查询条件(条件唯一返回唯一一条数据,条件不唯一返回符合条件的所有数据,
      * @return 结果集                 new空对象查询该表所有数据 )
      */
-    public synchronized <T> List<T> query(T classObject) {
+    public <T> List<T> query(T classObject) {
         return query(classObject, -1, -1, null, null, null, null, null);
     }
 
@@ -519,7 +1188,7 @@ public class DBManager {
      * @param sqlStr      自定义sql语句
      * @return 结果集
      */
-    public synchronized <T> List<T> query(Class<T> classObject, String sqlStr) {
+    public <T> List<T> query(Class<T> classObject, String sqlStr) {
         try {
             return query(classObject.newInstance(), -1, -1, null, null, null, null, sqlStr);
         } catch (Exception e) {
@@ -537,7 +1206,7 @@ public class DBManager {
      * @param offset      分页查询-起始索引(从0开始)
      * @return 结果集
      */
-    public synchronized <T> List<T> query(T classObject, int limit, int offset) {
+    public <T> List<T> query(T classObject, int limit, int offset) {
         return query(classObject, limit, offset, null, null, null, null, null);
     }
 
@@ -552,7 +1221,7 @@ public class DBManager {
      * @param like        模糊查询-包含字符串
      * @return 结果集
      */
-    public synchronized <T> List<T> query(T classObject, int limit, int offset, String field, String like) {
+    public <T> List<T> query(T classObject, int limit, int offset, String field, String like) {
         return query(classObject, limit, offset, field, like, null, null, null);
     }
 
@@ -568,7 +1237,7 @@ public class DBManager {
      * @param endDate     日期查询-结束日期(日期格式)
      * @return 结果集
      */
-    public synchronized <T> List<T> query(T classObject, int limit, int offset, String field, String startDate, String endDate) {
+    public <T> List<T> query(T classObject, int limit, int offset, String field, String startDate, String endDate) {
         return query(classObject, limit, offset, field, null, startDate, endDate, null);
     }
 
@@ -585,20 +1254,33 @@ public class DBManager {
      * @param endDate     日期查询-结束日期(日期格式)
      * @param sqlStr      自定义sql语句
      */
-    private synchronized <T> List<T> query(T classObject, int limit, int offset, String field, String like, String startDate, String endDate, String sqlStr) {
+    @SuppressWarnings("unchecked")
+    private <T> List<T> query(T classObject, int limit, int offset, String field, String like, String startDate, String endDate, String sqlStr) {
         if (classObject == null) {
             return null;
         }
         if (!isTableExist(classObject.getClass())) {
             return null;
         }
+        //只缓存生成的sql,自定义sql可能涉及其他表
+        DBQueryCache cache = XCStringUtil.isEmpty(sqlStr) ? queryCache : null;
         if (XCStringUtil.isEmpty(sqlStr)) {
             sqlStr = DBUtil.getQuerySql(classObject, limit, offset, field, like, startDate, endDate);
         }
-        SQLiteDatabase db = DBHelper.getInstance(context).getReadableDatabase();
-        if (db == null || XCStringUtil.isEmpty(sqlStr)) {
+        if (XCStringUtil.isEmpty(sqlStr)) {
             return null;
         }
+        String table = classObject.getClass().getSimpleName();
+        DBRowMapper<T> mapper = DBRowMapper.get((Class<T>) classObject.getClass());
+        long version = 0;
+        if (cache != null) {
+            List<T> cacheList = cache.get(table, sqlStr, mapper);
+            if (cacheList != null) {
+                return cacheList;
+            }
+            version = cache.getVersion(table);
+        }
+        SQLiteDatabase db = beginRead();
         Cursor cursor = null;
         try {
             cursor = db.rawQuery(sqlStr, null);
@@ -606,24 +1288,269 @@ public class DBManager {
                 return null;
             }
             List<T> mList = new ArrayList<T>();
-            if (cursor.moveToFirst()) {
+            //开启缓存时保存各行字段值,返回的对象与缓存不共用
+            List<Object[]> rowList = cache != null ? new ArrayList<Object[]>() : null;
+            int[] columnIndexes = mapper.getColumnIndexes(cursor, false);
+            if (columnIndexes != null && cursor.moveToFirst()) {
                 do {
-                    T newClassObject = DBUtil.parseClassObject(cursor, classObject, false);
+                    T newClassObject;
+                    if (rowList != null) {
+                        Object[] row = mapper.read(cursor, columnIndexes);
+                        newClassObject = mapper.map(row);
+                        if (newClassObject != null) {
+                            rowList.add(row);
+                        }
+                    } else {
+                        newClassObject = mapper.map(cursor, columnIndexes);
+                    }
                     if (newClassObject != null) {
                         mList.add(newClassObject);
                     }
                 } while (cursor.moveToNext());
             }
+            if (cache != null) {
+                cache.put(table, sqlStr, rowList, version);
+            }
             return mList;
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (db != null) {
-                db.close();
+            if (cursor != null) {
+                cursor.close();
+            }
+            endRead();
+        }
+        return null;
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/15
+     * Description：游标分页查询,按_id正序,每页耗时与页码无关
+     *
+     * @param classObject 类对象,反射get方法获取查询条件
+     * @param limit       每页数量
+     * @param lastPage    上一页,第一页为null
+     * @return 本页
+     */
+    public <T> DBPage<T> queryPage(T classObject, int limit, DBPage<T> lastPage) {
+        return queryPage(classObject, limit, null, false, lastPage);
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/15
+     * Description：游标分页查询,按排序字段+_id排序,排序字段有FieldIndex索引时每页耗时与页码无关
+     *
+     * @param classObject 类对象,反射get方法获取查询条件
+     * @param limit       每页数量
+     * @param field       排序字段名,为空按_id排序;该字段为null的行不参与分页
+     * @param isDesc      是否倒序
+     * @param lastPage    上一页,第一页为null
+     * @return 本页
+     */
+    public <T> DBPage<T> queryPage(T classObject, int limit, String field, boolean isDesc, DBPage<T> lastPage) {
+        if (classObject == null || limit <= 0) {
+            return null;
+        }
+        String column = !XCStringUtil.isEmpty(field) ? DBUtil.getColumnName(classObject.getClass(), field) : DBUtil.KEY_ID;
+        return queryPage(classObject, DBUtil.getPageQuerySql(classObject, limit, field, isDesc, lastPage), column, limit, lastPage);
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/15
+     * Description：全文检索,检索FieldSearch注释字段,按_id分页
+     *
+     * @param classObject 类对象,反射get方法获取查询条件
+     * @param field       检索字段名,为空检索所有FieldSearch字段
+     * @param keyword     关键词,空格分隔多个词同时匹配,每个词按前缀匹配
+     * @param limit       每页数量
+     * @param lastPage    上一页,第一页为null
+     * @return 本页
+     */
+    public <T> DBPage<T> searchPage(T classObject, String field, String keyword, int limit, DBPage<T> lastPage) {
+        if (classObject == null || limit <= 0) {
+            return null;
+        }
+        return queryPage(classObject, DBUtil.getSearchQuerySql(classObject, field, keyword, limit, lastPage), DBUtil.KEY_ID, limit, lastPage);
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/15
+     * Description：全文检索,检索FieldSearch注释字段
+     *
+     * @param classObject 类对象,反射get方法获取查询条件
+     * @param field       检索字段名,为空检索所有FieldSearch字段
+     * @param keyword     关键词,空格分隔多个词同时匹配,每个词按前缀匹配
+     * @return 结果集
+     */
+    public <T> List<T> search(T classObject, String field, String keyword) {
+        if (classObject == null) {
+            return null;
+        }
+        String sqlStr = DBUtil.getSearchQuerySql(classObject, field, keyword, -1, null);
+        if (XCStringUtil.isEmpty(sqlStr)) {
+            return null;
+        }
+        return query(classObject, -1, -1, null, null, null, null, sqlStr);
+    }
+
+    /**
+     * 分页查询,记录最后一行排序值及_id
+     *
+     * @param column   排序列名
+     * @param lastPage 上一页,本页无数据时沿用其位置
+     */
+    @SuppressWarnings("unchecked")
+    private <T> DBPage<T> queryPage(T classObject, String sqlStr, String column, int limit, DBPage<T> lastPage) {
+        if (XCStringUtil.isEmpty(sqlStr) || !isTableExist(classObject.getClass())) {
+            return null;
+        }
+        SQLiteDatabase db = beginRead();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(sqlStr, null);
+            if (cursor == null) {
+                return null;
+            }
+            List<T> mList = new ArrayList<T>();
+            DBRowMapper<T> mapper = DBRowMapper.get((Class<T>) classObject.getClass());
+            int[] columnIndexes = mapper.getColumnIndexes(cursor, false);
+            int idIndex = cursor.getColumnIndex(DBUtil.KEY_ID);
+            int valueIndex = cursor.getColumnIndex(column);
+            String lastValue = lastPage != null ? lastPage.getLastValue() : null;
+            long lastId = lastPage != null ? lastPage.getLastId() : 0;
+            if (columnIndexes != null && idIndex >= 0) {
+                while (cursor.moveToNext()) {
+                    T newClassObject = mapper.map(cursor, columnIndexes);
+                    if (newClassObject != null) {
+                        mList.add(newClassObject);
+                    }
+                    lastId = cursor.getLong(idIndex);
+                    lastValue = valueIndex >= 0 ? cursor.getString(valueIndex) : null;
+                }
+            }
+            return new DBPage<T>(mList, lastValue, lastId, cursor.getCount() >= limit);
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            endRead();
+        }
+        return null;
+    }
+
+    /**
+     * 逐行条件查询,不缓存结果集
+     *
+     * @param classObject 类对象,操作以该对象类名创建的表,反射get方法获取查询条件(new空对象查询该表所有数据)
+     * @param listener    每行回调一次,返回false结束查询
+     * @return 回调行数, -1失败
+     */
+    public <T> int query(T classObject, OnDBQueryListener<T> listener) {
+        if (classObject == null) {
+            return -1;
+        }
+        return query(classObject, DBUtil.getQuerySql(classObject, -1, -1, null, null, null, null), listener);
+    }
+
+    /**
+     * 逐行语句查询,不缓存结果集
+     *
+     * @param classObject 类对象,操作以该对象类名创建的表
+     * @param sqlStr      自定义sql语句
+     * @param listener    每行回调一次,返回false结束查询
+     * @return 回调行数, -1失败
+     */
+    @SuppressWarnings("unchecked")
+    public <T> int query(T classObject, String sqlStr, OnDBQueryListener<T> listener) {
+        if (classObject == null || listener == null || XCStringUtil.isEmpty(sqlStr)) {
+            return -1;
+        }
+        if (!isTableExist(classObject.getClass())) {
+            return -1;
+        }
+        SQLiteDatabase db = beginRead();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(sqlStr, null);
+            if (cursor == null) {
+                return -1;
             }
+            DBRowMapper<T> mapper = DBRowMapper.get((Class<T>) classObject.getClass());
+            int[] columnIndexes = mapper.getColumnIndexes(cursor, false);
+            int count = 0;
+            while (columnIndexes != null && cursor.moveToNext()) {
+                T newClassObject = mapper.map(cursor, columnIndexes);
+                if (newClassObject != null) {
+                    count++;
+                    if (!listener.onQuery(newClassObject)) {
+                        break;
+                    }
+                }
+            }
+            return count;
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
             if (cursor != null) {
                 cursor.close();
             }
+            endRead();
+        }
+        return -1;
+    }
+
+    /**
+     * 迭代器条件查询,调用next时才读取下一行(使用完需close,读完自动关闭)
+     *
+     * @param classObject 类对象,操作以该对象类名创建的表,反射get方法获取查询条件(new空对象查询该表所有数据)
+     * @return 迭代器, 失败返回null
+     */
+    public <T> DBCursorIterator<T> queryIterator(T classObject) {
+        if (classObject == null) {
+            return null;
+        }
+        return queryIterator(classObject, DBUtil.getQuerySql(classObject, -1, -1, null, null, null, null));
+    }
+
+    /**
+     * 迭代器语句查询,调用next时才读取下一行(使用完需close,读完自动关闭;未关闭时关闭/删除数据库会等待,超时后强制关闭)
+     *
+     * @param classObject 类对象,操作以该对象类名创建的表
+     * @param sqlStr      自定义sql语句
+     * @return 迭代器, 失败返回null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> DBCursorIterator<T> queryIterator(T classObject, String sqlStr) {
+        if (classObject == null || XCStringUtil.isEmpty(sqlStr)) {
+            return null;
+        }
+        if (!isTableExist(classObject.getClass())) {
+            return null;
+        }
+        SQLiteDatabase db = beginRead();
+        try {
+            Cursor cursor = db.rawQuery(sqlStr, null);
+            if (cursor == null) {
+                return null;
+            }
+            try {
+                return new DBCursorIterator<T>(this, cursor, DBRowMapper.get((Class<T>) classObject.getClass()));
+            } catch (RuntimeException e) {
+                if (!cursor.isClosed()) {
+                    cursor.close();
+                }
+                throw e;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            endRead();
         }
         return null;
     }
@@ -637,7 +1564,7 @@ public class DBManager {
      * Param：slaveMap 从表类与从表条件字段
      * Return：java.lang.Object 第一条为主表类数据，之后为从表类数据
      */
-    public synchronized <T> Map<T, List<Object>> queryLeftJoin(Class<T> masterClass, String masterField, Map<Class<?>, String> slaveMap) {
+    public <T> Map<T, List<Object>> queryLeftJoin(Class<T> masterClass, String masterField, Map<Class<?>, String> slaveMap) {
         return queryJoin("left", masterClass, masterField, slaveMap);
     }
 
@@ -650,7 +1577,7 @@ public class DBManager {
      * Param：slaveMap 从表类与从表条件字段
      * Return：java.lang.Object 第一条为主表类数据，之后为从表类数据
      */
-    public synchronized <T> Map<T, List<Object>> queryInnerJoin(Class<T> masterClass, String masterField, Map<Class<?>, String> slaveMap) {
+    public <T> Map<T, List<Object>> queryInnerJoin(Class<T> masterClass, String masterField, Map<Class<?>, String> slaveMap) {
         return queryJoin("inner", masterClass, masterField, slaveMap);
     }
 
@@ -664,7 +1591,7 @@ public class DBManager {
      * Param：slaveMap 从表类与从表条件字段
      * Return：java.lang.Object 第一条为主表类数据，之后为从表类数据
      */
-    private synchronized <T> Map<T, List<Object>> queryJoin(String joinType, Class<T> masterClass, String masterField, Map<Class<?>, String> slaveMap) {
+    private <T> Map<T, List<Object>> queryJoin(String joinType, Class<T> masterClass, String masterField, Map<Class<?>, String> slaveMap) {
         if (masterClass == null || XCStringUtil.isEmpty(masterField) || slaveMap == null || slaveMap.isEmpty()) {
             return null;
         }
@@ -676,11 +1603,11 @@ public class DBManager {
                 return null;
             }
         }
-        SQLiteDatabase db = DBHelper.getInstance(context).getReadableDatabase();
         String queryJoinSql = DBUtil.getQueryJoinSql(joinType, masterClass, masterField, slaveMap);
-        if (db == null || XCStringUtil.isEmpty(queryJoinSql)) {
+        if (XCStringUtil.isEmpty(queryJoinSql)) {
             return null;
         }
+        SQLiteDatabase db = beginRead();
         Cursor cursor = null;
         try {
             cursor = db.rawQuery(queryJoinSql, null);
@@ -690,17 +1617,31 @@ public class DBManager {
             Map<T, List<Object>> mAllMap = new HashMap<T, List<Object>>();
             Map<String, T> masterTempMap = new HashMap<String, T>();
             Map<String, Object> slaveTempMap = new HashMap<String, Object>();
+            //列索引只解析一次
+            DBRowMapper<T> masterMapper = DBRowMapper.get(masterClass);
+            int[] masterIndexes = masterMapper.getColumnIndexes(cursor, true);
+            int masterIdIndex = cursor.getColumnIndex(masterClass.getSimpleName() + DBUtil.KEY_ID);
+            List<Class<?>> slaveList = new ArrayList<Class<?>>(slaveMap.keySet());
+            List<DBRowMapper<?>> slaveMapperList = new ArrayList<DBRowMapper<?>>();
+            List<int[]> slaveIndexList = new ArrayList<int[]>();
+            int[] slaveIdIndexes = new int[slaveList.size()];
+            for (int i = 0; i < slaveList.size(); i++) {
+                DBRowMapper<?> slaveMapper = DBRowMapper.get(slaveList.get(i));
+                slaveMapperList.add(slaveMapper);
+                slaveIndexList.add(slaveMapper.getColumnIndexes(cursor, true));
+                slaveIdIndexes[i] = cursor.getColumnIndex(slaveList.get(i).getSimpleName() + DBUtil.KEY_ID);
+            }
             if (cursor.moveToFirst()) {
                 do {
-                    String masterId = cursor.getString(cursor.getColumnIndex(masterClass.getSimpleName() + DBUtil.KEY_ID));
-                    T masterObject = DBUtil.parseClassObject(cursor, masterClass.newInstance(), true);
+                    String masterId = cursor.getString(masterIdIndex);
+                    T masterObject = masterMapper.map(cursor, masterIndexes);
                     masterTempMap.put(masterId, masterObject);
                     //
-                    for (Class<?> key : slaveMap.keySet()) {
-                        String salveId = cursor.getString(cursor.getColumnIndex(key.getSimpleName() + DBUtil.KEY_ID));
+                    for (int i = 0; i < slaveList.size(); i++) {
+                        String salveId = cursor.getString(slaveIdIndexes[i]);
                         if (!XCStringUtil.isEmpty(salveId)) {
-                            Object slaveObject = DBUtil.parseClassObject(cursor, key.newInstance(), true);
-                            slaveTempMap.put(masterId + "/" + slaveObject.getClass().getSimpleName() + salveId, slaveObject);
+                            Object slaveObject = slaveMapperList.get(i).map(cursor, slaveIndexList.get(i));
+                            slaveTempMap.put(masterId + "/" + slaveList.get(i).getSimpleName() + salveId, slaveObject);
                         }
                     }
                 } while (cursor.moveToNext());
@@ -720,23 +1661,133 @@ public class DBManager {
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (db != null) {
-                db.close();
-            }
             if (cursor != null) {
                 cursor.close();
             }
+            endRead();
         }
         return null;
     }
 
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/14
+     * Description：逐条左联查询,按主表_id排序,每条主表数据回调一次,不缓存结果集
+     * Param：masterClass 主表类
+     * Param：masterField 主表条件字段
+     * Param：slaveMap 从表类与从表条件字段
+     * Param：listener 返回false结束查询
+     * Return：回调条数,-1失败
+     */
+    public <T> int queryLeftJoin(Class<T> masterClass, String masterField, Map<Class<?>, String> slaveMap, OnDBJoinListener<T> listener) {
+        return queryJoin("left", masterClass, masterField, slaveMap, listener);
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/14
+     * Description：逐条内联查询,按主表_id排序,每条主表数据回调一次,不缓存结果集
+     * Param：masterClass 主表类
+     * Param：masterField 主表条件字段
+     * Param：slaveMap 从表类与从表条件字段
+     * Param：listener 返回false结束查询
+     * Return：回调条数,-1失败
+     */
+    public <T> int queryInnerJoin(Class<T> masterClass, String masterField, Map<Class<?>, String> slaveMap, OnDBJoinListener<T> listener) {
+        return queryJoin("inner", masterClass, masterField, slaveMap, listener);
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/14
+     * Description：逐条连表查询,同一主表数据的行相邻,遇到下一条主表数据时回调上一条
+     */
+    private <T> int queryJoin(String joinType, Class<T> masterClass, String masterField, Map<Class<?>, String> slaveMap, OnDBJoinListener<T> listener) {
+        if (masterClass == null || XCStringUtil.isEmpty(masterField) || slaveMap == null || slaveMap.isEmpty() || listener == null) {
+            return -1;
+        }
+        if (!isTableExist(masterClass)) {
+            return -1;
+        }
+        for (Class<?> key : slaveMap.keySet()) {
+            if (!isTableExist(key)) {
+                return -1;
+            }
+        }
+        String queryJoinSql = DBUtil.getQueryJoinSql(joinType, masterClass, masterField, slaveMap);
+        if (XCStringUtil.isEmpty(queryJoinSql)) {
+            return -1;
+        }
+        queryJoinSql += " order by " + masterClass.getSimpleName() + "." + DBUtil.KEY_ID;
+        SQLiteDatabase db = beginRead();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(queryJoinSql, null);
+            if (cursor == null) {
+                return -1;
+            }
+            DBRowMapper<T> masterMapper = DBRowMapper.get(masterClass);
+            int[] masterIndexes = masterMapper.getColumnIndexes(cursor, true);
+            int masterIdIndex = cursor.getColumnIndex(masterClass.getSimpleName() + DBUtil.KEY_ID);
+            List<Class<?>> slaveList = new ArrayList<Class<?>>(slaveMap.keySet());
+            List<DBRowMapper<?>> slaveMapperList = new ArrayList<DBRowMapper<?>>();
+            List<int[]> slaveIndexList = new ArrayList<int[]>();
+            int[] slaveIdIndexes = new int[slaveList.size()];
+            for (int i = 0; i < slaveList.size(); i++) {
+                DBRowMapper<?> slaveMapper = DBRowMapper.get(slaveList.get(i));
+                slaveMapperList.add(slaveMapper);
+                slaveIndexList.add(slaveMapper.getColumnIndexes(cursor, true));
+                slaveIdIndexes[i] = cursor.getColumnIndex(slaveList.get(i).getSimpleName() + DBUtil.KEY_ID);
+            }
+            int count = 0;
+            String currentId = null;
+            T masterObject = null;
+            List<Object> mList = null;
+            HashSet<String> slaveIdSet = new HashSet<String>();
+            while (cursor.moveToNext()) {
+                String masterId = cursor.getString(masterIdIndex);
+                if (mList == null || !masterId.equals(currentId)) {
+                    if (mList != null) {
+                        count++;
+                        if (!listener.onJoin(masterObject, mList)) {
+                            return count;
+                        }
+                    }
+                    currentId = masterId;
+                    masterObject = masterMapper.map(cursor, masterIndexes);
+                    mList = new ArrayList<Object>();
+                    slaveIdSet.clear();
+                }
+                for (int i = 0; i < slaveList.size(); i++) {
+                    String salveId = cursor.getString(slaveIdIndexes[i]);
+                    if (!XCStringUtil.isEmpty(salveId) && slaveIdSet.add(slaveList.get(i).getSimpleName() + salveId)) {
+                        mList.add(slaveMapperList.get(i).map(cursor, slaveIndexList.get(i)));
+                    }
+                }
+            }
+            if (mList != null) {
+                count++;
+                listener.onJoin(masterObject, mList);
+            }
+            return count;
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            endRead();
+        }
+        return -1;
+    }
+
     /**
      * 是否存在
      *
      * @param conditionObject 类对象,操作以该对象类名创建的表,反射get方法获取查询条件(有符合条件的就返回true)
      * @return
      */
-    public synchronized <T> boolean isExist(T conditionObject) {
+    public <T> boolean isExist(T conditionObject) {
         List<T> queryList = query(conditionObject);
         if (queryList != null && !queryList.isEmpty()) {
             if (queryList.size() > 0) {
@@ -746,4 +1797,16 @@ public class DBManager {
         return false;
     }
 
+    /**
+     * 预编译插入语句及其行映射器
+     */
+    private static class InsertStatement {
+        final SQLiteStatement statement;
+        final DBRowMapper<?> mapper;
+
+        InsertStatement(SQLiteStatement statement, DBRowMapper<?> mapper) {
+            this.statement = statement;
+            this.mapper = mapper;
+        }
+    }
 }
@@ -0,0 +1,48 @@
+package com.xc.framework.db;
+
+import java.util.List;
+
+/**
+ * Date：2021/4/15
+ * Author：ZhangXuanChen
+ * Description：游标分页结果,记录本页最后一行的排序值及_id,下一页从该位置继续查询(不使用offset)
+ */
+public class DBPage<T> {
+    private final List<T> list;//本页数据
+    private final String lastValue;//本页最后一行排序字段值
+    private final long lastId;//本页最后一行_id
+    private final boolean hasMore;//是否可能有下一页
+
+    DBPage(List<T> list, String lastValue, long lastId, boolean hasMore) {
+        this.list = list;
+        this.lastValue = lastValue;
+        this.lastId = lastId;
+        this.hasMore = hasMore;
+    }
+
+    public List<T> getList() {
+        return list;
+    }
+
+    public String getLastValue() {
+        return lastValue;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    @Override
+    public String toString() {
+        return "DBPage{" +
+                "size=" + (list != null ? list.size() : 0) +
+                ", lastValue='" + lastValue + '\'' +
+                ", lastId=" + lastId +
+                ", hasMore=" + hasMore +
+                '}';
+    }
+}
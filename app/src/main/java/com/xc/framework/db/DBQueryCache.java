@@ -0,0 +1,164 @@
+package com.xc.framework.db;
+
+import com.xc.framework.bitmap.cache.LruMemoryCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Date：2021/4/15
+ * Author：ZhangXuanChen
+ * Description：查询结果缓存,以生成的sql为key,按缓存行数LRU淘汰;表被增删改后该表缓存失效(表版本号变化);
+ * 缓存的是各行字段值(DBRowMapper.read),命中时映射为新对象,调用方修改返回的对象不影响缓存
+ */
+public class DBQueryCache {
+    private final LruMemoryCache<String, Entry> cache;
+    //各表版本号,写操作提交后递增
+    private final ConcurrentHashMap<String, AtomicLong> versionMap = new ConcurrentHashMap<String, AtomicLong>();
+    //全部失效版本号,自定义事务、关闭/切换数据库后递增
+    private final AtomicLong globalVersion = new AtomicLong();
+    //统计
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong invalidateCount = new AtomicLong();
+
+    /**
+     * @param maxRows 最多缓存行数
+     */
+    public DBQueryCache(int maxRows) {
+        this.cache = new LruMemoryCache<String, Entry>(Math.max(1, maxRows)) {
+            @Override
+            protected int sizeOf(String key, Entry value) {
+                return value.rowList.size() + 1;
+            }
+        };
+    }
+
+    /**
+     * 获取表当前版本,查询前获取,查询后随结果一起缓存
+     */
+    public long getVersion(String table) {
+        AtomicLong version = versionMap.get(table);
+        return globalVersion.get() + (version != null ? version.get() : 0);
+    }
+
+    /**
+     * 获取缓存
+     *
+     * @param table  表名
+     * @param sql    查询sql
+     * @param mapper 表类的行映射器
+     * @return 新映射的对象集合, 未缓存或已失效返回null
+     */
+    public <T> List<T> get(String table, String sql, DBRowMapper<T> mapper) {
+        Entry entry = cache.get(sql);
+        if (entry != null && entry.table.equals(table) && entry.version == getVersion(table)) {
+            hitCount.incrementAndGet();
+            List<T> list = new ArrayList<T>(entry.rowList.size());
+            for (Object[] row : entry.rowList) {
+                T classObject = mapper.map(row);
+                if (classObject != null) {
+                    list.add(classObject);
+                }
+            }
+            return list;
+        }
+        if (entry != null) {
+            cache.remove(sql);
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 缓存查询结果
+     *
+     * @param rowList 各行字段值(DBRowMapper.read),缓存后不可再修改
+     * @param version 查询前getVersion获取的版本,查询期间表被修改时结果不会命中
+     */
+    public void put(String table, String sql, List<Object[]> rowList, long version) {
+        if (rowList != null) {
+            cache.put(sql, new Entry(table, rowList, version));
+        }
+    }
+
+    /**
+     * 表缓存失效,写操作提交后调用
+     */
+    public void invalidate(String table) {
+        AtomicLong version = versionMap.get(table);
+        if (version == null) {
+            versionMap.putIfAbsent(table, new AtomicLong());
+            version = versionMap.get(table);
+        }
+        version.incrementAndGet();
+        invalidateCount.incrementAndGet();
+    }
+
+    /**
+     * 全部缓存失效
+     */
+    public void invalidateAll() {
+        globalVersion.incrementAndGet();
+        invalidateCount.incrementAndGet();
+        cache.evictAll();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 命中率
+     */
+    public double getHitRate() {
+        long hit = hitCount.get();
+        long total = hit + missCount.get();
+        return total > 0 ? hit / (double) total : 0;
+    }
+
+    public long getInvalidateCount() {
+        return invalidateCount.get();
+    }
+
+    public int getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+    /**
+     * 已缓存行数
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    @Override
+    public String toString() {
+        return "DBQueryCache{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", hitRate=" + getHitRate() +
+                ", invalidateCount=" + invalidateCount +
+                ", evictionCount=" + getEvictionCount() +
+                ", size=" + size() +
+                '}';
+    }
+
+    private static class Entry {
+        final String table;
+        final List<Object[]> rowList;
+        final long version;
+
+        Entry(String table, List<Object[]> rowList, long version) {
+            this.table = table;
+            this.rowList = rowList;
+            this.version = version;
+        }
+    }
+}
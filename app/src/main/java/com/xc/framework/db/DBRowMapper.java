@@ -0,0 +1,338 @@
+package com.xc.framework.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import com.xc.framework.annotation.FieldType;
+import com.xc.framework.bean.FieldBean;
+import com.xc.framework.util.XCBeanUtil;
+import com.xc.framework.util.XCStringUtil;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Date：2021/4/14
+ * Author：ZhangXuanChen
+ * Description：行映射器,每个类只反射一次字段、构造方法及get/set方法,列索引每个Cursor只解析一次
+ */
+public class DBRowMapper<T> {
+    private static final Map<Class<?>, DBRowMapper<?>> MAPPER_MAP = new ConcurrentHashMap<Class<?>, DBRowMapper<?>>();
+
+    private final Class<T> tableClass;
+    private final Constructor<T> constructor;
+    private final Column[] columns;
+    private final Column[] insertColumns;
+
+    /**
+     * 获取类的行映射器
+     *
+     * @param tableClass 实体类
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> DBRowMapper<T> get(Class<T> tableClass) {
+        DBRowMapper<T> mapper = (DBRowMapper<T>) MAPPER_MAP.get(tableClass);
+        if (mapper == null) {
+            mapper = new DBRowMapper<T>(tableClass);
+            MAPPER_MAP.put(tableClass, mapper);
+        }
+        return mapper;
+    }
+
+    private DBRowMapper(Class<T> tableClass) {
+        this.tableClass = tableClass;
+        Constructor<T> tempConstructor = null;
+        try {
+            tempConstructor = tableClass.getDeclaredConstructor();
+            tempConstructor.setAccessible(true);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        this.constructor = tempConstructor;
+        List<Column> columnList = new ArrayList<Column>();
+        List<Column> insertList = new ArrayList<Column>();
+        List<FieldBean> fieldList = XCBeanUtil.getFieldList(tableClass);
+        if (fieldList != null) {
+            for (FieldBean entity : fieldList) {
+                Column column = new Column(tableClass, entity);
+                columnList.add(column);
+                if (!column.name.equals(DBUtil.KEY_ID)) {
+                    insertList.add(column);
+                }
+            }
+        }
+        this.columns = columnList.toArray(new Column[columnList.size()]);
+        this.insertColumns = insertList.toArray(new Column[insertList.size()]);
+    }
+
+    /**
+     * 解析列索引,每个Cursor调用一次
+     *
+     * @param cursor  查询结果
+     * @param isAlias 是否连表查询(列名为类名+字段名)
+     * @return 各字段列索引(不在结果中为-1,如分段迁移中的旧表), 所有字段都不在结果中时返回null
+     */
+    public int[] getColumnIndexes(Cursor cursor, boolean isAlias) {
+        int[] columnIndexes = new int[columns.length];
+        boolean isFound = false;
+        for (int i = 0; i < columns.length; i++) {
+            String key;
+            if (isAlias) {
+                key = tableClass.getSimpleName() + columns[i].name;
+            } else if (columns[i].isKeyId) {
+                key = DBUtil.KEY_ID;
+            } else {
+                key = columns[i].name;
+            }
+            columnIndexes[i] = cursor.getColumnIndex(key);
+            if (columnIndexes[i] >= 0) {
+                isFound = true;
+            }
+        }
+        return isFound ? columnIndexes : null;
+    }
+
+    /**
+     * 将Cursor当前行映射为对象
+     *
+     * @param cursor        查询结果
+     * @param columnIndexes getColumnIndexes返回的列索引
+     * @return
+     */
+    public T map(Cursor cursor, int[] columnIndexes) {
+        if (constructor == null || columnIndexes == null) {
+            return null;
+        }
+        try {
+            T classObject = constructor.newInstance();
+            for (int i = 0; i < columns.length; i++) {
+                if (columnIndexes[i] >= 0) {
+                    columns[i].set(classObject, columns[i].read(cursor, columnIndexes[i]));
+                }
+            }
+            return classObject;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * 读取Cursor当前行各字段的值(已按set方法类型转换),用于缓存后再由map(Object[])映射为新对象
+     *
+     * @param cursor        查询结果
+     * @param columnIndexes getColumnIndexes返回的列索引
+     * @return 各字段的值,不在结果中或为空的字段为null
+     */
+    public Object[] read(Cursor cursor, int[] columnIndexes) {
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (columnIndexes[i] >= 0) {
+                values[i] = columns[i].read(cursor, columnIndexes[i]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 将read读取的值映射为新对象,byte[]复制后设置,不修改values
+     *
+     * @param values read返回的各字段值
+     * @return
+     */
+    public T map(Object[] values) {
+        if (constructor == null || values == null) {
+            return null;
+        }
+        try {
+            T classObject = constructor.newInstance();
+            for (int i = 0; i < columns.length; i++) {
+                Object value = values[i];
+                if (value instanceof byte[]) {
+                    value = ((byte[]) value).clone();
+                }
+                columns[i].set(classObject, value);
+            }
+            return classObject;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * 获取插入字段(不含主键),与bindInsert绑定顺序一致
+     */
+    public List<FieldBean> getInsertFieldList() {
+        List<FieldBean> fieldList = new ArrayList<FieldBean>();
+        for (Column column : insertColumns) {
+            fieldList.add(column.entity);
+        }
+        return fieldList;
+    }
+
+    /**
+     * 绑定预编译插入语句参数
+     *
+     * @param statement   预编译插入语句
+     * @param classObject 类对象
+     */
+    public void bindInsert(SQLiteStatement statement, Object classObject) {
+        statement.clearBindings();
+        for (int i = 0; i < insertColumns.length; i++) {
+            insertColumns[i].bind(statement, i + 1, classObject);
+        }
+    }
+
+    /**
+     * 字段及其get/set方法
+     */
+    private static class Column {
+        final FieldBean entity;
+        final String name;
+        final boolean isKeyId;
+        final String type;
+        final Method getter;
+        final Method setter;
+        final Class<?> setterType;
+
+        Column(Class<?> tableClass, FieldBean entity) {
+            this.entity = entity;
+            String original = !XCStringUtil.isEmpty(entity.getOriginal()) ? entity.getOriginal() : "";
+            String alias = !XCStringUtil.isEmpty(entity.getAlias()) ? entity.getAlias() : "";
+            //优先采用别名，无别名再采用原名
+            this.name = !XCStringUtil.isEmpty(alias) ? alias : original;
+            this.isKeyId = entity.isKeyId();
+            this.type = !XCStringUtil.isEmpty(entity.getType()) ? entity.getType() : FieldType.TEXT;
+            this.getter = XCBeanUtil.getGetMethod(tableClass, original);
+            this.setter = findSetter(tableClass, original);
+            this.setterType = setter != null ? setter.getParameterTypes()[0] : null;
+        }
+
+        /**
+         * 查找声明该字段的类的set方法,支持String、基本类型及其包装类、byte[]
+         */
+        private static Method findSetter(Class<?> tableClass, String fieldName) {
+            for (Class<?> tempClass = tableClass; tempClass != null; tempClass = tempClass.getSuperclass()) {
+                try {
+                    Field field = tempClass.getDeclaredField(fieldName);
+                    if (!isSupportType(field.getType())) {
+                        return null;
+                    }
+                    String setName = "set" + fieldName.substring(0, 1).toUpperCase(Locale.ENGLISH) + fieldName.substring(1);
+                    if (fieldName.length() >= 2 && Character.isUpperCase(fieldName.charAt(1))) {
+                        setName = "set" + fieldName;
+                    }
+                    Method method = tempClass.getMethod(setName, field.getType());
+                    method.setAccessible(true);
+                    return method;
+                } catch (Exception e) {
+                }
+            }
+            return null;
+        }
+
+        Object get(Object classObject) {
+            if (getter == null) {
+                return null;
+            }
+            try {
+                return getter.invoke(classObject);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        private static boolean isSupportType(Class<?> fieldType) {
+            return fieldType.isAssignableFrom(String.class) || fieldType == byte[].class
+                    || fieldType == int.class || fieldType == Integer.class
+                    || fieldType == long.class || fieldType == Long.class
+                    || fieldType == short.class || fieldType == Short.class
+                    || fieldType == byte.class || fieldType == Byte.class
+                    || fieldType == float.class || fieldType == Float.class
+                    || fieldType == double.class || fieldType == Double.class
+                    || fieldType == boolean.class || fieldType == Boolean.class;
+        }
+
+        /**
+         * 绑定插入参数,text列与原来一致按字符串绑定(空值绑定"")
+         */
+        void bind(SQLiteStatement statement, int index, Object classObject) {
+            Object value = get(classObject);
+            if (FieldType.TEXT.equals(type)) {
+                String tempValue = "" + value;
+                statement.bindString(index, !XCStringUtil.isEmpty(tempValue) ? tempValue : "");
+            } else if (value == null) {
+                statement.bindNull(index);
+            } else if (value instanceof byte[]) {
+                statement.bindBlob(index, (byte[]) value);
+            } else if (value instanceof Boolean) {
+                statement.bindLong(index, (Boolean) value ? 1 : 0);
+            } else if (value instanceof Float || value instanceof Double) {
+                statement.bindDouble(index, ((Number) value).doubleValue());
+            } else if (value instanceof Number) {
+                statement.bindLong(index, ((Number) value).longValue());
+            } else {
+                statement.bindString(index, value.toString());
+            }
+        }
+
+        /**
+         * 按字段类型读取列值
+         *
+         * @return 无set方法、列值为空或读取失败返回null
+         */
+        Object read(Cursor cursor, int index) {
+            if (setter == null || cursor.isNull(index)) {
+                return null;
+            }
+            try {
+                Object value;
+                if (setterType.isAssignableFrom(String.class)) {
+                    value = cursor.getString(index);
+                } else if (setterType == byte[].class) {
+                    value = cursor.getBlob(index);
+                } else if (setterType == int.class || setterType == Integer.class) {
+                    value = cursor.getInt(index);
+                } else if (setterType == long.class || setterType == Long.class) {
+                    value = cursor.getLong(index);
+                } else if (setterType == short.class || setterType == Short.class) {
+                    value = (short) cursor.getInt(index);
+                } else if (setterType == byte.class || setterType == Byte.class) {
+                    value = (byte) cursor.getInt(index);
+                } else if (setterType == float.class || setterType == Float.class) {
+                    value = (float) cursor.getDouble(index);
+                } else if (setterType == double.class || setterType == Double.class) {
+                    value = cursor.getDouble(index);
+                } else {
+                    //text列存"true",integer列存1
+                    String tempValue = cursor.getString(index);
+                    value = "1".equals(tempValue) || "true".equalsIgnoreCase(tempValue);
+                }
+                return value;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        /**
+         * 设置字段值,null不设置(保留默认值)
+         */
+        void set(Object classObject, Object value) {
+            if (setter == null || value == null) {
+                return;
+            }
+            try {
+                setter.invoke(classObject, value);
+            } catch (Exception e) {
+            }
+        }
+    }
+}
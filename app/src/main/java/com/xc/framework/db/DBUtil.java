@@ -3,12 +3,16 @@ package com.xc.framework.db;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
+import com.xc.framework.annotation.FieldType;
 import com.xc.framework.bean.FieldBean;
 import com.xc.framework.util.XCBeanUtil;
 import com.xc.framework.util.XCStringUtil;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -18,6 +22,8 @@ import java.util.Map;
  */
 public class DBUtil {
     public static final String KEY_ID = "_id";
+    public static final String SEARCH_SUFFIX = "_fts";//全文检索表后缀
+    public static final String MIGRATE_SUFFIX = "_migrate";//分段迁移新表后缀
 
     /**
      * 根据实体类生成创建数据库表sql语句
@@ -26,6 +32,17 @@ public class DBUtil {
      * @return
      */
     public static String getCreateTableSql(Class<?> tableClass) {
+        return getCreateTableSql(tableClass, tableClass.getSimpleName());
+    }
+
+    /**
+     * 根据实体类生成创建数据库表sql语句
+     *
+     * @param tableClass
+     * @param tableName  表名
+     * @return
+     */
+    public static String getCreateTableSql(Class<?> tableClass, String tableName) {
         String sql = "";
         List<FieldBean> fieldList = XCBeanUtil.getFieldList(tableClass);
         if (fieldList != null && !fieldList.isEmpty()) {
@@ -36,14 +53,144 @@ public class DBUtil {
                 String name = !XCStringUtil.isEmpty(alias) ? alias : original;
                 if (!name.equals(DBUtil.KEY_ID)) {
                     if (entity.isUnique()) {
-                        sql += "," + name + " text unique";
+                        sql += "," + name + " " + getFieldType(entity) + " unique";
                     } else {
-                        sql += "," + name + " text";
+                        sql += "," + name + " " + getFieldType(entity);
                     }
                 }
             }
         }
-        return "create table if not exists " + tableClass.getSimpleName() + "(" + DBUtil.KEY_ID + " integer not null primary key autoincrement" + sql + ")";
+        return "create table if not exists " + tableName + "(" + DBUtil.KEY_ID + " integer not null primary key autoincrement" + sql + ")";
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/14
+     * Description：根据FieldIndex注释生成创建索引sql语句,同名索引的字段组成联合索引
+     *
+     * @return 索引名, 创建索引sql
+     */
+    public static Map<String, String> getCreateIndexSqlMap(Class<?> tableClass) {
+        Map<String, String> columnMap = new LinkedHashMap<String, String>();
+        Map<String, Boolean> uniqueMap = new HashMap<String, Boolean>();
+        List<FieldBean> fieldList = XCBeanUtil.getFieldList(tableClass);
+        if (fieldList != null && !fieldList.isEmpty()) {
+            for (FieldBean entity : fieldList) {
+                String name = getFieldName(entity);
+                if (entity.getIndex() == null || name.equals(DBUtil.KEY_ID)) {
+                    continue;
+                }
+                String indexName = !XCStringUtil.isEmpty(entity.getIndex()) ? entity.getIndex() : "idx_" + tableClass.getSimpleName() + "_" + name;
+                String columns = columnMap.get(indexName);
+                columnMap.put(indexName, columns != null ? columns + "," + name : name);
+                Boolean unique = uniqueMap.get(indexName);
+                uniqueMap.put(indexName, (unique == null || unique) && entity.isIndexUnique());
+            }
+        }
+        Map<String, String> sqlMap = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, String> entry : columnMap.entrySet()) {
+            String unique = uniqueMap.get(entry.getKey()) ? "unique " : "";
+            sqlMap.put(entry.getKey(), "create " + unique + "index if not exists " + entry.getKey() + " on " + tableClass.getSimpleName() + "(" + entry.getValue() + ")");
+        }
+        return sqlMap;
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/14
+     * Description：获取表已有索引名(不含unique约束自动创建的索引)
+     */
+    public static List<String> getTableIndexList(SQLiteDatabase db, Class<?> tableClass) {
+        Cursor c = null;
+        List<String> indexList = new ArrayList<String>();
+        try {
+            c = db.rawQuery("select name from sqlite_master where type = 'index' and sql is not null and tbl_name = ?", new String[]{tableClass.getSimpleName()});
+            while (c.moveToNext()) {
+                indexList.add(c.getString(0));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+        return indexList;
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/14
+     * Description：获取表已有字段类型
+     *
+     * @return 字段名, 小写列类型
+     */
+    public static Map<String, String> getTableFieldTypeMap(SQLiteDatabase db, Class<?> tableClass) {
+        Cursor c = null;
+        Map<String, String> typeMap = new HashMap<String, String>();
+        try {
+            c = db.rawQuery("pragma table_info(" + tableClass.getSimpleName() + ")", null);
+            int nameIndex = c.getColumnIndex("name");
+            int typeIndex = c.getColumnIndex("type");
+            while (c.moveToNext()) {
+                String type = c.getString(typeIndex);
+                typeMap.put(c.getString(nameIndex), type != null ? type.toLowerCase(Locale.ENGLISH) : "");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+        return typeMap;
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/14
+     * Description：字段类型是否变更
+     */
+    public static boolean isFieldTypeChanged(Map<String, String> oldTypeMap, List<FieldBean> newList) {
+        if (oldTypeMap != null && newList != null) {
+            for (FieldBean entity : newList) {
+                String name = getFieldName(entity);
+                String oldType = oldTypeMap.get(name);
+                if (!name.equals(DBUtil.KEY_ID) && oldType != null && !oldType.equals(getFieldType(entity))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取列类型,未注释为text
+     */
+    public static String getFieldType(FieldBean entity) {
+        return !XCStringUtil.isEmpty(entity.getType()) ? entity.getType() : FieldType.TEXT;
+    }
+
+    /**
+     * 获取sql值,text列与原来一致加引号(空值为''),非text列空值为null、布尔值为1/0,blob为X'..'
+     */
+    private static String getSqlValue(FieldBean entity, Object value) {
+        if (value instanceof byte[]) {
+            StringBuilder builder = new StringBuilder("X'");
+            for (byte b : (byte[]) value) {
+                builder.append(String.format(Locale.ENGLISH, "%02x", b & 0xff));
+            }
+            return builder.append("'").toString();
+        }
+        if (!FieldType.TEXT.equals(getFieldType(entity))) {
+            if (value == null) {
+                return "null";
+            } else if (value instanceof Boolean) {
+                return (Boolean) value ? "1" : "0";
+            }
+        }
+        String tempValue = "" + value;
+        return "'" + (!XCStringUtil.isEmpty(tempValue) ? tempValue : "") + "'";
     }
 
     /**
@@ -80,6 +227,47 @@ public class DBUtil {
         return "";
     }
 
+    /**
+     * 获取插入字段(不含主键)
+     *
+     * @param tableClass 实体类
+     * @return
+     */
+    public static List<FieldBean> getInsertFieldList(Class<?> tableClass) {
+        return DBRowMapper.get(tableClass).getInsertFieldList();
+    }
+
+    /**
+     * 获取预编译插入sql语句
+     *
+     * @param tableClass 实体类
+     * @param fieldList  插入字段
+     * @return insert or replace into table (key,key) values (?,?)
+     */
+    public static String getInsertStatementSql(Class<?> tableClass, List<FieldBean> fieldList) {
+        if (fieldList == null || fieldList.isEmpty()) {
+            return "";
+        }
+        String key = "";
+        String value = "";
+        for (FieldBean entity : fieldList) {
+            key += getFieldName(entity) + ",";
+            value += "?,";
+        }
+        key = key.substring(0, key.length() - 1);
+        value = value.substring(0, value.length() - 1);
+        return "insert or replace into " + tableClass.getSimpleName() + " (" + key + ") values (" + value + ")";
+    }
+
+    /**
+     * 获取字段名,优先采用别名,无别名再采用原名
+     */
+    private static String getFieldName(FieldBean entity) {
+        String original = !XCStringUtil.isEmpty(entity.getOriginal()) ? entity.getOriginal() : "";
+        String alias = !XCStringUtil.isEmpty(entity.getAlias()) ? entity.getAlias() : "";
+        return !XCStringUtil.isEmpty(alias) ? alias : original;
+    }
+
     /**
      * 获取key与value的sql语句
      *
@@ -100,9 +288,7 @@ public class DBUtil {
                     // key
                     key += name + ",";
                     // value
-                    String tempValue = "" + XCBeanUtil.invokeGetMethod(classObject, original);
-                    String getValue = !XCStringUtil.isEmpty(tempValue) ? tempValue : "";
-                    value += "'" + getValue + "',";
+                    value += getSqlValue(entity, XCBeanUtil.invokeGetMethod(classObject, original)) + ",";
                 }
             }
             key = key.substring(0, key.length() - 1);
@@ -121,7 +307,7 @@ public class DBUtil {
      * @param like        模糊查询-包含字符串
      * @param startDate   日期查询-起始日期(日期格式)
      * @param endDate     日期查询-结束日期(日期格式)
-     * @return
+     * @return 深分页用getPageQuerySql, 按词检索用getSearchQuerySql
      */
     public static String getQuerySql(Object classObject, int limit, int offset, String field, String like, String startDate, String endDate) {
         String pageSql = "";
@@ -142,6 +328,208 @@ public class DBUtil {
         }
     }
 
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/15
+     * Description：游标分页查询sql语句,从上一页最后一行的(排序字段值,_id)之后继续查询,排序字段有索引时每页耗时与页码无关
+     *
+     * @param classObject 类对象,反射get方法获取查询条件
+     * @param limit       每页数量
+     * @param field       排序字段名(原名或别名),为空按_id排序;排序字段为null的行不参与分页
+     * @param isDesc      是否倒序
+     * @param lastPage    上一页,第一页为null
+     * @return
+     */
+    public static String getPageQuerySql(Object classObject, int limit, String field, boolean isDesc, DBPage<?> lastPage) {
+        String column = !XCStringUtil.isEmpty(field) ? getColumnName(classObject.getClass(), field) : KEY_ID;
+        String desc = isDesc ? " desc" : "";
+        String condition = getKeyEqualValueSql(classObject, "and", false);
+        String seek;
+        String order;
+        if (KEY_ID.equals(column)) {
+            seek = lastPage != null ? KEY_ID + (isDesc ? " < " : " > ") + lastPage.getLastId() : "";
+            order = " order by " + KEY_ID + desc;
+        } else {
+            if (lastPage != null && lastPage.getLastValue() != null) {
+                String value = "'" + lastPage.getLastValue().replace("'", "''") + "'";
+                seek = column + (isDesc ? " <= " : " >= ") + value + " and (" + column + (isDesc ? " < " : " > ") + value
+                        + " or " + KEY_ID + (isDesc ? " < " : " > ") + lastPage.getLastId() + ")";
+            } else {
+                seek = column + " is not null";
+            }
+            order = " order by " + column + desc + "," + KEY_ID + desc;
+        }
+        String where = andCondition(condition, seek);
+        return "select * from " + classObject.getClass().getSimpleName() + (!XCStringUtil.isEmpty(where) ? " where " + where : "") + order + " limit " + limit;
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/15
+     * Description：全文检索sql语句,通过表名_fts检索FieldSearch注释字段,按_id排序
+     *
+     * @param classObject 类对象,反射get方法获取查询条件
+     * @param field       检索字段名(原名或别名),为空检索所有FieldSearch字段
+     * @param keyword     关键词,空格分隔多个词同时匹配,每个词按前缀匹配
+     * @param limit       每页数量,小于等于0不分页
+     * @param lastPage    上一页,第一页为null
+     * @return 无检索字段或关键词时返回""
+     */
+    public static String getSearchQuerySql(Object classObject, String field, String keyword, int limit, DBPage<?> lastPage) {
+        Class<?> tableClass = classObject.getClass();
+        List<String> searchList = getSearchFieldList(tableClass);
+        if (searchList.isEmpty() || XCStringUtil.isEmpty(keyword)) {
+            return "";
+        }
+        String column = !XCStringUtil.isEmpty(field) ? getColumnName(tableClass, field) : null;
+        if (column != null && !searchList.contains(column)) {
+            return "";
+        }
+        String match = "";
+        for (String word : keyword.split("[^\\p{L}\\p{N}_]+")) {
+            if (!XCStringUtil.isEmpty(word)) {
+                match += (column != null ? column + ":" : "") + word + "* ";
+            }
+        }
+        if (XCStringUtil.isEmpty(match)) {
+            return "";
+        }
+        String searchTable = tableClass.getSimpleName() + SEARCH_SUFFIX;
+        String search = KEY_ID + " in (select docid from " + searchTable + " where " + searchTable + " match '" + match.trim() + "')";
+        String seek = lastPage != null ? KEY_ID + " > " + lastPage.getLastId() : "";
+        String where = andCondition(andCondition(search, getKeyEqualValueSql(classObject, "and", false)), seek);
+        return "select * from " + tableClass.getSimpleName() + " where " + where + " order by " + KEY_ID + (limit > 0 ? " limit " + limit : "");
+    }
+
+    /**
+     * 用and连接条件
+     */
+    private static String andCondition(String condition, String other) {
+        if (XCStringUtil.isEmpty(condition)) {
+            return !XCStringUtil.isEmpty(other) ? other : "";
+        }
+        return !XCStringUtil.isEmpty(other) ? condition + " and " + other : condition;
+    }
+
+    /**
+     * 获取字段列名
+     *
+     * @param field 原名或别名
+     * @return 优先别名, 未找到字段返回field
+     */
+    public static String getColumnName(Class<?> tableClass, String field) {
+        List<FieldBean> fieldList = XCBeanUtil.getFieldList(tableClass);
+        if (fieldList != null) {
+            for (FieldBean entity : fieldList) {
+                if (field.equals(entity.getOriginal()) || field.equals(entity.getAlias())) {
+                    return getFieldName(entity);
+                }
+            }
+        }
+        return field;
+    }
+
+    /**
+     * 获取FieldSearch注释字段列名
+     */
+    public static List<String> getSearchFieldList(Class<?> tableClass) {
+        List<String> searchList = new ArrayList<String>();
+        List<FieldBean> fieldList = XCBeanUtil.getFieldList(tableClass);
+        if (fieldList != null) {
+            for (FieldBean entity : fieldList) {
+                String name = getFieldName(entity);
+                if (entity.isSearch() && !name.equals(KEY_ID)) {
+                    searchList.add(name);
+                }
+            }
+        }
+        return searchList;
+    }
+
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/15
+     * Description：创建全文检索表(外部内容fts4,不重复存储数据)及同步触发器sql语句
+     *
+     * @return 无FieldSearch字段返回空集合
+     */
+    public static List<String> getCreateSearchSqlList(Class<?> tableClass) {
+        List<String> sqlList = new ArrayList<String>();
+        List<String> searchList = getSearchFieldList(tableClass);
+        if (searchList.isEmpty()) {
+            return sqlList;
+        }
+        String table = tableClass.getSimpleName();
+        String searchTable = table + SEARCH_SUFFIX;
+        String columns = "";
+        String newColumns = "";
+        for (String name : searchList) {
+            columns += "," + name;
+            newColumns += ",new." + name;
+        }
+        sqlList.add("create virtual table if not exists " + searchTable + " using fts4(content=\"" + table + "\"" + columns + ")");
+        sqlList.add("create trigger if not exists " + searchTable + "_bu before update on " + table + " begin delete from " + searchTable + " where docid = old." + KEY_ID + "; end");
+        sqlList.add("create trigger if not exists " + searchTable + "_bd before delete on " + table + " begin delete from " + searchTable + " where docid = old." + KEY_ID + "; end");
+        sqlList.add("create trigger if not exists " + searchTable + "_au after update on " + table + " begin insert into " + searchTable + "(docid" + columns + ") values(new." + KEY_ID + newColumns + "); end");
+        sqlList.add("create trigger if not exists " + searchTable + "_ai after insert on " + table + " begin insert into " + searchTable + "(docid" + columns + ") values(new." + KEY_ID + newColumns + "); end");
+        return sqlList;
+    }
+
+    /**
+     * 重建全文检索表索引sql语句(已有数据建立检索)
+     */
+    public static String getRebuildSearchSql(Class<?> tableClass) {
+        String searchTable = tableClass.getSimpleName() + SEARCH_SUFFIX;
+        return "insert into " + searchTable + "(" + searchTable + ") values('rebuild')";
+    }
+
+    /**
+     * 删除全文检索表及触发器sql语句
+     */
+    public static List<String> getDropSearchSqlList(Class<?> tableClass) {
+        String searchTable = tableClass.getSimpleName() + SEARCH_SUFFIX;
+        List<String> sqlList = new ArrayList<String>();
+        sqlList.add("drop trigger if exists " + searchTable + "_bu");
+        sqlList.add("drop trigger if exists " + searchTable + "_bd");
+        sqlList.add("drop trigger if exists " + searchTable + "_au");
+        sqlList.add("drop trigger if exists " + searchTable + "_ai");
+        sqlList.add("drop table if exists " + searchTable);
+        return sqlList;
+    }
+
+    /**
+     * 获取已有全文检索表字段
+     *
+     * @return 全文检索表不存在返回null
+     */
+    public static List<String> getSearchTableField(SQLiteDatabase db, Class<?> tableClass) {
+        Cursor c = null;
+        try {
+            String searchTable = tableClass.getSimpleName() + SEARCH_SUFFIX;
+            c = db.rawQuery("select name from sqlite_master where type = 'table' and name = ?", new String[]{searchTable});
+            if (!c.moveToFirst()) {
+                return null;
+            }
+            c.close();
+            c = db.rawQuery("select * from " + searchTable + " where 0", null);
+            List<String> fieldList = new ArrayList<String>();
+            String[] columnNames = c.getColumnNames();
+            if (columnNames != null) {
+                for (String name : columnNames) {
+                    fieldList.add(name);
+                }
+            }
+            return fieldList;
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+        return null;
+    }
+
     /**
      * 获取key等于value的sql语句
      *
@@ -161,10 +549,12 @@ public class DBUtil {
                 // key
                 String key = name;
                 // value
-                String tempValue = "" + XCBeanUtil.invokeGetMethod(classObject, original);
-                String value = !XCStringUtil.isEmpty(tempValue) ? tempValue : "";
-                if (!XCStringUtil.isEmpty(value) || isUpdate) {
-                    condition += key + " = '" + value + "' " + connectFlag + " ";
+                Object value = XCBeanUtil.invokeGetMethod(classObject, original);
+                if (value instanceof byte[] && !isUpdate) {//blob不参与条件
+                    continue;
+                }
+                if (!XCStringUtil.isEmpty("" + value) || isUpdate) {
+                    condition += key + " = " + getSqlValue(entity, value) + " " + connectFlag + " ";
                 }
             }
             if (!XCStringUtil.isEmpty(condition)) {
@@ -198,9 +588,9 @@ public class DBUtil {
                         if (field.equals(original) || field.equals(alias)) {
                             // key
                             key = name;
-                            String tempVal = "" + XCBeanUtil.invokeGetMethod(classObjectList.get(i), original);
-                            if (!XCStringUtil.isEmpty(tempVal)) {
-                                value += "'" + tempVal + "',";
+                            Object tempVal = XCBeanUtil.invokeGetMethod(classObjectList.get(i), original);
+                            if (!XCStringUtil.isEmpty("" + tempVal)) {
+                                value += getSqlValue(entity, tempVal) + ",";
                             }
                         }
                     }
@@ -284,35 +674,11 @@ public class DBUtil {
      * Time：2020/8/18 16:24
      * Description：parseClassObject
      */
+    @SuppressWarnings("unchecked")
     public static <T> T parseClassObject(Cursor cursor, T classObject, boolean isAlias) {
-        try {
-            T newClassObject = (T) classObject.getClass().newInstance();
-            List<FieldBean> fieldList = XCBeanUtil.getFieldList(classObject.getClass());
-            if (fieldList != null && !fieldList.isEmpty()) {
-                for (FieldBean entity : fieldList) {
-                    String original = !XCStringUtil.isEmpty(entity.getOriginal()) ? entity.getOriginal() : "";
-                    String alias = !XCStringUtil.isEmpty(entity.getAlias()) ? entity.getAlias() : "";
-                    //优先采用别名，无别名再采用原名
-                    String name = !XCStringUtil.isEmpty(alias) ? alias : original;
-                    // key
-                    String key;
-                    if (isAlias) {
-                        key = classObject.getClass().getSimpleName() + name;
-                    } else if (entity.isKeyId()) {
-                        key = DBUtil.KEY_ID;
-                    } else {
-                        key = name;
-                    }
-                    // value
-                    String value = cursor.getString(cursor.getColumnIndex(key));
-                    XCBeanUtil.invokeSetMethod(newClassObject, original, value);
-                }
-            }
-            return newClassObject;
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+        //逐行查询请直接使用DBRowMapper,列索引只需解析一次
+        DBRowMapper<T> mapper = DBRowMapper.get((Class<T>) classObject.getClass());
+        return mapper.map(cursor, mapper.getColumnIndexes(cursor, isAlias));
     }
 
     /**
@@ -321,10 +687,17 @@ public class DBUtil {
      * Description：获取变更表所有字段
      */
     public static synchronized List<String> getAlterTableField(SQLiteDatabase db, Class<?> tableClass) {
+        return getTableField(db, tableClass.getSimpleName());
+    }
+
+    /**
+     * 获取表所有字段(不含_id)
+     */
+    public static List<String> getTableField(SQLiteDatabase db, String tableName) {
         Cursor c = null;
         List<String> fieldList = new ArrayList<String>();
         try {
-            c = db.rawQuery("select * from " + tableClass.getSimpleName() + " where 0", null);
+            c = db.rawQuery("select * from " + tableName + " where 0", null);
             String[] columnNames = c.getColumnNames();
             if (columnNames != null && columnNames.length > 0) {
                 for (int i = 0; i < columnNames.length; i++) {
@@ -369,6 +742,94 @@ public class DBUtil {
         return fieldList;
     }
 
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/15
+     * Description：分段迁移-旧表更新/删除同步到已复制数据的触发器sql语句;insert or replace替换旧行时先删除(插入期间由DBManager开启recursive_triggers)再插入,
+     * 插入触发器把已复制范围内的新行同步回新表,已复制范围以新表自增序号为准(删除行后不回退)
+     */
+    public static List<String> getMigrateTriggerSqlList(Class<?> tableClass, List<String> equalList) {
+        String table = tableClass.getSimpleName();
+        String migrateTable = table + MIGRATE_SUFFIX;
+        String columns = "";
+        String newColumns = "";
+        for (String str : equalList) {
+            columns += "," + str;
+            newColumns += ",new." + str;
+        }
+        String copiedWhere = " where new." + KEY_ID + " <= (select ifnull(max(seq), 0) from sqlite_sequence where name = '" + migrateTable + "')";
+        List<String> sqlList = new ArrayList<String>();
+        sqlList.add("create trigger if not exists " + migrateTable + "_au after update on " + table + " begin insert or replace into " + migrateTable + "(" + KEY_ID + columns + ") select new." + KEY_ID + newColumns
+                + copiedWhere + "; end");
+        sqlList.add("create trigger if not exists " + migrateTable + "_ai after insert on " + table + " begin insert or replace into " + migrateTable + "(" + KEY_ID + columns + ") select new." + KEY_ID + newColumns
+                + copiedWhere + "; end");
+        sqlList.add("create trigger if not exists " + migrateTable + "_ad after delete on " + table + " begin delete from " + migrateTable + " where " + KEY_ID + " = old." + KEY_ID + "; end");
+        return sqlList;
+    }
+
+    /**
+     * 获取实体类所有字段列名(不含_id)
+     */
+    public static List<String> getFieldNameList(Class<?> tableClass) {
+        List<String> nameList = new ArrayList<String>();
+        List<FieldBean> fieldList = XCBeanUtil.getFieldList(tableClass);
+        if (fieldList != null) {
+            for (FieldBean entity : fieldList) {
+                String name = getFieldName(entity);
+                if (!name.equals(KEY_ID)) {
+                    nameList.add(name);
+                }
+            }
+        }
+        return nameList;
+    }
+
+    /**
+     * 表是否存在(直接查询sqlite_master)
+     */
+    public static boolean isTableExist(SQLiteDatabase db, String tableName) {
+        Cursor c = null;
+        try {
+            c = db.rawQuery("select name from sqlite_master where type = 'table' and name = ?", new String[]{tableName});
+            return c.moveToFirst();
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 分段迁移-删除新表及触发器sql语句
+     */
+    public static List<String> getDropMigrateSqlList(Class<?> tableClass) {
+        String migrateTable = tableClass.getSimpleName() + MIGRATE_SUFFIX;
+        List<String> sqlList = new ArrayList<String>();
+        sqlList.add("drop trigger if exists " + migrateTable + "_au");
+        sqlList.add("drop trigger if exists " + migrateTable + "_ai");
+        sqlList.add("drop trigger if exists " + migrateTable + "_ad");
+        sqlList.add("drop table if exists " + migrateTable);
+        return sqlList;
+    }
+
+    /**
+     * 分段迁移-复制一段数据sql语句,保留_id
+     *
+     * @param lastId  已复制的最大_id
+     * @param toId    本段最大_id,小于0复制剩余所有数据
+     */
+    public static String getMigrateCopySql(Class<?> tableClass, List<String> equalList, long lastId, long toId) {
+        String columns = KEY_ID;
+        for (String str : equalList) {
+            columns += "," + str;
+        }
+        return "insert or replace into " + tableClass.getSimpleName() + MIGRATE_SUFFIX + "(" + columns + ") select " + columns + " from " + tableClass.getSimpleName()
+                + " where " + KEY_ID + " > " + lastId + (toId >= 0 ? " and " + KEY_ID + " <= " + toId : "");
+    }
+
     /**
      * Author：ZhangXuanChen
      * Time：2021/4/12 10:11
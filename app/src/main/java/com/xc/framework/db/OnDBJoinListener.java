@@ -0,0 +1,21 @@
+package com.xc.framework.db;
+
+import java.util.List;
+
+/**
+ * Date：2021/4/14
+ * Author：ZhangXuanChen
+ * Description：逐条连表查询监听
+ */
+public interface OnDBJoinListener<T> {
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/14
+     * Description：每查询到一条主表数据及其所有从表数据回调一次
+     *
+     * @param masterObject 主表类数据
+     * @param slaveList    从表类数据
+     * @return 是否继续查询, false结束查询
+     */
+    boolean onJoin(T masterObject, List<Object> slaveList);
+}
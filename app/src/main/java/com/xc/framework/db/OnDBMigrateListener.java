@@ -0,0 +1,16 @@
+package com.xc.framework.db;
+
+/**
+ * Date：2021/4/15
+ * Author：ZhangXuanChen
+ * Description：分段变更表结构进度监听
+ */
+public interface OnDBMigrateListener {
+    /**
+     * 进度
+     *
+     * @param copied 已复制条数
+     * @param total  总条数(迁移中旧表新增数据会使总数变化)
+     */
+    void onProgress(long copied, long total);
+}
@@ -0,0 +1,17 @@
+package com.xc.framework.db;
+
+/**
+ * Date：2021/4/14
+ * Author：ZhangXuanChen
+ * Description：逐行查询监听
+ */
+public interface OnDBQueryListener<T> {
+    /**
+     * Author：ZhangXuanChen
+     * Time：2021/4/14
+     * Description：每查询到一行回调一次
+     *
+     * @return 是否继续查询, false结束查询
+     */
+    boolean onQuery(T classObject);
+}
@@ -0,0 +1,15 @@
+package com.xc.framework.db;
+
+/**
+ * Date：2021/4/15
+ * Author：ZhangXuanChen
+ * Description：异步操作结果监听(主线程回调)
+ */
+public interface OnDBResultListener<R> {
+    /**
+     * 操作结果
+     *
+     * @param result 结果,操作抛出异常时为null
+     */
+    void onResult(R result);
+}
@@ -1,53 +1,42 @@
 package com.xc.framework.http;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.InterruptedIOException;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 
-import org.apache.http.Header;
-import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponse;
-import org.apache.http.HttpResponseInterceptor;
 import org.apache.http.HttpStatus;
-import org.apache.http.HttpVersion;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.conn.ConnectTimeoutException;
-import org.apache.http.conn.params.ConnManagerParams;
-import org.apache.http.conn.params.ConnPerRouteBean;
-import org.apache.http.conn.scheme.PlainSocketFactory;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
-import org.apache.http.params.HttpConnectionParams;
-import org.apache.http.params.HttpParams;
-import org.apache.http.params.HttpProtocolParams;
-import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 
 import android.content.Context;
 import android.util.Log;
 
 import com.xc.framework.http.client.ConnectionConfig;
-import com.xc.framework.http.client.DefaultSSLSocketFactory;
-import com.xc.framework.http.client.GZipDecompressingEntity;
+import com.xc.framework.http.client.HostLimiter;
+import com.xc.framework.http.client.HttpCache;
+import com.xc.framework.http.client.HttpClientManager;
+import com.xc.framework.http.client.HttpDownloader;
 import com.xc.framework.http.client.HttpHandler;
-import com.xc.framework.http.client.RetryHandler;
 import com.xc.framework.http.interfaces.DownloadCallBack;
+import com.xc.framework.http.interfaces.ResponseParser;
 import com.xc.framework.http.interfaces.UploadCallBack;
-import com.xc.framework.util.XCNetUtil;
 import com.xc.framework.util.XCStringUtil;
 
 /**
  * @author ZhangXuanChen
  * @date 2015-9-9
  * @package com.frame.net
- * @description 网络连接类
+ * @description 网络连接类,可多线程并发请求,同一主机并发数受ConnectionConfig限制,共享HttpClientManager连接池
  */
 public class HttpConnection {
 	/**
@@ -83,28 +72,85 @@ public class HttpConnection {
 	 * @return InputStream
 	 * @throws Exception
 	 */
-	public synchronized static String httpGet(Context context, HttpParam param, ConnectionConfig config, DownloadCallBack downloadCallBack) {
-		DefaultHttpClient client = new DefaultHttpClient();
+	public static String httpGet(Context context, HttpParam param, ConnectionConfig config, DownloadCallBack downloadCallBack) {
+		if (config == null) {
+			config = new ConnectionConfig();
+		}
+		if (downloadCallBack != null || !XCStringUtil.isEmpty(param.getSaveFilePath())) {// 下载文件,断点续传
+			return HttpDownloader.download(context, param, config, downloadCallBack);
+		}
+		HttpCache.Entry cacheEntry = null;
+		if (config.isUseCache() && HttpCache.getInstance().isOpen()) {
+			cacheEntry = HttpCache.getInstance().get(param.getURL());
+			if (cacheEntry != null) {
+				if (cacheEntry.isFresh()) {// 未过期
+					return HttpCache.getInstance().onHit(cacheEntry, false);
+				} else if (cacheEntry.isStaleUsable()) {// 先返回旧数据,后台验证
+					final Context fContext = context;
+					final HttpParam fParam = param;
+					final ConnectionConfig fConfig = config;
+					final HttpCache.Entry fCacheEntry = cacheEntry;
+					HttpCache.getInstance().revalidate(param.getURL(), new Runnable() {
+						@Override
+						public void run() {
+							requestGet(fContext, fParam, fConfig, fCacheEntry);
+						}
+					});
+					return HttpCache.getInstance().onHit(cacheEntry, true);
+				}
+			}
+		}
+		return requestGet(context, param, config, cacheEntry);
+	}
+
+	/**
+	 * get请求
+	 * 
+	 * @param cacheEntry
+	 *            已过期的缓存,不为null时带条件请求
+	 * @return
+	 */
+	private static String requestGet(Context context, HttpParam param, ConnectionConfig config, HttpCache.Entry cacheEntry) {
 		String response = "";
+		String host = HostLimiter.getHost(param.getURL());
+		if (!HostLimiter.getInstance().acquire(host, config.getMaxRequestsPerHost())) {// 等待时被中断
+			return response;
+		}
+		HttpGet httpGet = null;
+		HttpResponse hr = null;
+		boolean isAbort = true;// 异常结束时中断连接,不归还连接池
 		try {
-			setHttpParams(client, config);
-			HttpGet httpGet = new HttpGet(param.getURL());
+			httpGet = new HttpGet(param.getURL());
+			HttpClientManager.getInstance().configRequest(httpGet, config);
+			if (cacheEntry != null) {// 验证缓存
+				if (cacheEntry.getEtag() != null) {
+					httpGet.addHeader("If-None-Match", cacheEntry.getEtag());
+				}
+				if (cacheEntry.getLastModified() != null) {
+					httpGet.addHeader("If-Modified-Since", cacheEntry.getLastModified());
+				}
+			}
 			//
-			HttpResponse hr = client.execute(httpGet);
-			if (hr.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+			hr = HttpClientManager.getInstance().execute(httpGet, config, param.isRetrySafe());
+			if (hr.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED && cacheEntry != null) {// 缓存未修改
+				response = HttpCache.getInstance().onNotModified(param.getURL(), cacheEntry, hr);
+			} else if (hr.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
 				HttpEntity entity = hr.getEntity();
 				if (entity != null) {
-					String value = entity.getContentType().getValue();
-					if ("text/html".equals(value) || value.contains("application/json")) {// 数据
+					if (HttpDownloader.isDataEntity(entity)) {// 数据
 						response = EntityUtils.toString(entity, config.getEncode());
-					} else {// 文件
-						HttpHandler.downloadFile(context, entity, param.getSaveFilePath(), param.getURL(), downloadCallBack);
+						if (config.isUseCache() && HttpCache.getInstance().isOpen()) {
+							HttpCache.getInstance().onResponse(param.getURL(), hr, response);
+						}
+					} else {// 文件,保存到缓存目录
+						HttpDownloader.saveEntity(context, entity, param.getURL());
 					}
 					entity.consumeContent();
 				}
 			}else {
 				response = "" + hr.getStatusLine().getStatusCode();
 			}
+			isAbort = false;
 		} catch (ClientProtocolException e) {
 			Log.e("ClientProtocolException", e.getMessage());
 		} catch (ConnectTimeoutException e) {// 连接超时
@@ -114,7 +160,8 @@ public class HttpConnection {
 		} catch (IOException e) {
 			Log.e("IOException", e.getMessage());
 		} finally {
-			client.getConnectionManager().shutdown();
+			HttpClientManager.getInstance().release(httpGet, hr, isAbort);
+			HostLimiter.getInstance().release(host);
 		}
 		return response;
 	}
@@ -151,23 +198,27 @@ public class HttpConnection {
 	 * @return
 	 * @throws Exception
 	 */
-	public synchronized static String httpPost(HttpParam param, ConnectionConfig config, UploadCallBack uploadCallBack) {
-		DefaultHttpClient client = new DefaultHttpClient();
+	public static String httpPost(HttpParam param, ConnectionConfig config, UploadCallBack uploadCallBack) {
+		if (config == null) {
+			config = new ConnectionConfig();
+		}
 		String response = "";
+		String host = HostLimiter.getHost(param.getURL());
+		if (!HostLimiter.getInstance().acquire(host, config.getMaxRequestsPerHost())) {// 等待时被中断
+			return response;
+		}
+		HttpPost httpPost = null;
+		HttpResponse hr = null;
+		boolean isAbort = true;// 异常结束时中断连接,不归还连接池
 		try {
-			setHttpParams(client, config);
-			HttpPost httpPost = new HttpPost(param.getURL());
+			httpPost = new HttpPost(param.getURL());
+			HttpClientManager.getInstance().configRequest(httpPost, config);
 			//
-	        HttpEntity entity = null;
-            if (!XCStringUtil.isEmpty(param.getJsonContent())) {
-                entity = new StringEntity(param.getJsonContent(), config.getEncode());
-            } else {
-                entity = HttpHandler.getEntity(param, config, uploadCallBack);
-            }
+			HttpEntity entity = getPostEntity(param, config, uploadCallBack);
 			if (entity != null) {
 				httpPost.setEntity(entity);
 				//
-				HttpResponse hr = client.execute(httpPost);
+				hr = HttpClientManager.getInstance().execute(httpPost, config, param.isRetrySafe());
 				if (hr.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
 					response = EntityUtils.toString(hr.getEntity(), config.getEncode());
 				} else {
@@ -175,6 +226,7 @@ public class HttpConnection {
 				}
 				entity.consumeContent();
 			}
+			isAbort = false;
 		} catch (UnsupportedEncodingException e) {
 			Log.e("UnsupportedEncodingException", e.getMessage());
 		} catch (ClientProtocolException e) {
@@ -186,74 +238,91 @@ public class HttpConnection {
 		} catch (IOException e) {
 			Log.e("IOException", e.getMessage());
 		} finally {
-			client.getConnectionManager().shutdown();
+			HttpClientManager.getInstance().release(httpPost, hr, isAbort);
+			HostLimiter.getInstance().release(host);
 		}
 		return response;
 	}
 
-	// ---------------------------------------------------------------------------------------------------------------
 	/**
-	 * 设置http参数
+	 * 请求并流式解析响应,根据参数类型发送get或post,响应体不转为字符串,由parser边读边解析(不使用HttpCache)
 	 * 
+	 * @param param
 	 * @param config
-	 * @return
+	 * @param parser
+	 *            在当前线程执行
+	 * @return 解析结果,请求失败或非200时为null
 	 */
-	private static void setHttpParams(DefaultHttpClient client, ConnectionConfig config) {
+	public static <T> T httpParse(HttpParam param, ConnectionConfig config, ResponseParser<T> parser) {
 		if (config == null) {
-			config = new ConnectionConfig();// 默认30秒超时
+			config = new ConnectionConfig();
 		}
-		//
-		HttpParams params = client.getParams();
-		if (params != null) {// 设置超时
-			// params.setIntParameter(HttpConnectionParams.SO_TIMEOUT,
-			// config.getSoTimeout());
-			// params.setIntParameter(HttpConnectionParams.CONNECTION_TIMEOUT,
-			// config.getConnectionTimeout());
+		T result = null;
+		String host = HostLimiter.getHost(param.getURL());
+		if (!HostLimiter.getInstance().acquire(host, config.getMaxRequestsPerHost())) {// 等待时被中断
+			return result;
+		}
+		HttpRequestBase request = null;
+		HttpResponse hr = null;
+		boolean isAbort = true;// 异常结束时中断连接,不归还连接池
+		try {
+			if (param.isPost()) {
+				HttpEntity entity = getPostEntity(param, config, null);
+				if (entity == null) {
+					return result;
+				}
+				HttpPost httpPost = new HttpPost(param.getURL());
+				httpPost.setEntity(entity);
+				request = httpPost;
+			} else {
+				request = new HttpGet(param.getURL());
+			}
+			HttpClientManager.getInstance().configRequest(request, config);
 			//
-			ConnManagerParams.setTimeout(params, config.getSoTimeout());
-			HttpConnectionParams.setSoTimeout(params, config.getSoTimeout());
-			HttpConnectionParams.setConnectionTimeout(params, config.getConnectionTimeout());
-			HttpProtocolParams.setUserAgent(params, XCNetUtil.getUserAgent(null));
-			ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(10));
-			ConnManagerParams.setMaxTotalConnections(params, 10);
-			HttpConnectionParams.setTcpNoDelay(params, true);
-			HttpConnectionParams.setSocketBufferSize(params, 1024 * 8);
-			HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
-			SchemeRegistry schemeRegistry = new SchemeRegistry();
-			schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
-			schemeRegistry.register(new Scheme("https", DefaultSSLSocketFactory.getSocketFactory(), 443));
-			client = new DefaultHttpClient(new ThreadSafeClientConnManager(params, schemeRegistry), params);
-
-			client.setHttpRequestRetryHandler(new RetryHandler(3));
-
-			client.addRequestInterceptor(new HttpRequestInterceptor() {
-				@Override
-				public void process(org.apache.http.HttpRequest httpRequest, HttpContext httpContext) throws org.apache.http.HttpException, IOException {
-					if (!httpRequest.containsHeader("Accept-Encoding")) {
-						httpRequest.addHeader("Accept-Encoding", "gzip");
-					}
+			hr = HttpClientManager.getInstance().execute(request, config, param.isRetrySafe());
+			HttpEntity entity = hr.getEntity();
+			if (hr.getStatusLine().getStatusCode() == HttpStatus.SC_OK && entity != null) {
+				String charset = EntityUtils.getContentCharSet(entity);
+				Reader reader = new BufferedReader(new InputStreamReader(entity.getContent(), charset != null ? charset : config.getEncode()), 8 * 1024);
+				try {
+					result = parser.parse(reader);
+				} finally {
+					reader.close();
 				}
-			});
+			}
+			isAbort = false;
+		} catch (ClientProtocolException e) {
+			Log.e("ClientProtocolException", "" + e.getMessage());
+		} catch (ConnectTimeoutException e) {// 连接超时
+			Log.e("ConnectTimeoutException", "连接超时" + e.getMessage());
+		} catch (InterruptedIOException e) {// 请求超时
+			Log.e("InterruptedIOException", "请求超时" + e.getMessage());
+		} catch (IOException e) {
+			Log.e("IOException", "" + e.getMessage());
+		} catch (RuntimeException e) {// 解析异常
+			Log.e("RuntimeException", "" + e.getMessage());
+		} finally {
+			HttpClientManager.getInstance().release(request, hr, isAbort);
+			HostLimiter.getInstance().release(host);
+		}
+		return result;
+	}
 
-			client.addResponseInterceptor(new HttpResponseInterceptor() {
-				@Override
-				public void process(HttpResponse response, HttpContext httpContext) throws org.apache.http.HttpException, IOException {
-					final HttpEntity entity = response.getEntity();
-					if (entity == null) {
-						return;
-					}
-					final Header encoding = entity.getContentEncoding();
-					if (encoding != null) {
-						for (HeaderElement element : encoding.getElements()) {
-							if (element.getName().equalsIgnoreCase("gzip")) {
-								response.setEntity(new GZipDecompressingEntity(response.getEntity()));
-								return;
-							}
-						}
-					}
-				}
-			});
+	/**
+	 * 获取post请求体,有json参时优先json
+	 * 
+	 * @param param
+	 * @param config
+	 * @param uploadCallBack
+	 * @return
+	 * @throws UnsupportedEncodingException
+	 */
+	private static HttpEntity getPostEntity(HttpParam param, ConnectionConfig config, UploadCallBack uploadCallBack) throws UnsupportedEncodingException {
+		if (!XCStringUtil.isEmpty(param.getJsonContent())) {
+			return new StringEntity(param.getJsonContent(), config.getEncode());
+		} else {
+			return HttpHandler.getEntity(param, config, uploadCallBack);
 		}
 	}
 
-}
\ No newline at end of file
+}
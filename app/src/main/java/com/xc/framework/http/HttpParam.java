@@ -31,6 +31,11 @@ public class HttpParam implements ParamInterface {
     private HashMap<String, ContentBody> contentBodyParams;// 对象参数集合
     private HashMap<String, Object> jsonParams;//json参数集合
     private String saveFilePath;// 保存下载文件绝对路径
+    private Object tag;// 取消标记
+    private int priority;// 优先级,大的先执行
+    private boolean isRetrySafe;// post请求是否可重试
+    private String checksumAlgorithm;// 下载文件校验算法
+    private String checksum;// 下载文件校验值
     //
     private String threadName;//线程名
 
@@ -109,6 +114,64 @@ public class HttpParam implements ParamInterface {
     }
 
 
+    /**
+     * 设置下载文件校验值,下载完成后校验,不一致时重新下载一次,仍不一致则下载失败
+     *
+     * @param algorithm 算法,例:MD5,SHA-1,SHA-256
+     * @param checksum  十六进制校验值,不区分大小写
+     */
+    public void setChecksum(String algorithm, String checksum) {
+        this.checksumAlgorithm = algorithm;
+        this.checksum = checksum;
+    }
+
+    public String getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * 设置取消标记,HttpDispatcher.cancel(tag)取消该请求,未设置时为url名
+     *
+     * @param tag
+     */
+    public void setTag(Object tag) {
+        this.tag = tag;
+    }
+
+    public Object getTag() {
+        return tag;
+    }
+
+    /**
+     * 设置优先级,同一通道中排队时优先级大的先执行,默认0
+     *
+     * @param priority
+     */
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * 标记post请求可重试(接口幂等,重复提交无副作用),默认只重试幂等的get请求
+     *
+     * @param isRetrySafe
+     */
+    public void setRetrySafe(boolean isRetrySafe) {
+        this.isRetrySafe = isRetrySafe;
+    }
+
+    public boolean isRetrySafe() {
+        return isRetrySafe;
+    }
+
     /**
      * 获取json内容
      *
@@ -222,6 +285,15 @@ public class HttpParam implements ParamInterface {
         return jsonParams;
     }
 
+    /**
+     * 是否为post请求(有post参,有文件上传或有json参)
+     *
+     * @return
+     */
+    public boolean isPost() {
+        return getPostList() != null && !getPostList().isEmpty() || getContentBodyMap() != null && !getContentBodyMap().isEmpty() || getJsonMap() != null && !getJsonMap().isEmpty();
+    }
+
     /**
      * 设置保存下载文件的绝对路径
      *
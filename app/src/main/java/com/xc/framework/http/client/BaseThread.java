@@ -22,7 +22,7 @@ public abstract class BaseThread extends Thread implements ThreadInterface {
 		isRun = true;
 		addThreadList();
 		threadRun();
-		stopThread();
+		removeThreadList();
 		isRun = false;
 	}
 
@@ -40,6 +40,15 @@ public abstract class BaseThread extends Thread implements ThreadInterface {
 		}
 	}
 
+	/**
+	 * 从线程集合中移除当前线程(同名线程可能并发执行,只移除自身)
+	 */
+	protected void removeThreadList() {
+		if (mThreadManager != null) {
+			mThreadManager.removeThreadList(getName(), this);
+		}
+	}
+
 	/**
 	 * 开始线程
 	 */
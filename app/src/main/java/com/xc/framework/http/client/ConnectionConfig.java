@@ -13,11 +13,29 @@ public class ConnectionConfig {
 	private int soTimeout = 30 * 1000;//请求超时时间
 	private int connectionTimeout = 30 * 1000;//连接超时时间
 	private String encode = HTTP.UTF_8;//请求编码
+	private int maxRequestsPerHost = 5;//同一主机最大并发请求数,小于等于0不限制
+	private int maxConnectionsPerRoute = 5;//连接池同一路由最大连接数(创建连接池时生效)
+	private int maxTotalConnections = 20;//连接池最大连接数(创建连接池时生效)
+	private long keepAliveTime = 30 * 1000;//服务器未指定时连接保持时间
+	private long idleTimeout = 30 * 1000;//空闲连接关闭时间
+	private boolean isUseCache = true;//GET是否使用HttpCache(HttpCache.open后生效)
+	private RetryPolicy retryPolicy = new RetryPolicy();//重试策略,null时不重试
+	private boolean isShareRequest = false;//同时发起的相同GET请求是否共享一次网络请求(HttpDispatcher排队时生效)
+	private int downloadSegmentCount = 1;//下载分段数,服务器支持Range时大文件(每段至少1M)分段并行下载
+	private boolean isShareCookie = false;//是否使用共享client的CookieStore,false时每个请求使用空的CookieStore,不携带其它请求收到的cookie
 
 	/**
 	 * 请求超时时间：默认30s 
 	 * 连接超时时间：默认30s 
 	 * 请求编码：默认UTF-8
+	 * 同一主机最大并发请求数：默认5
+	 * 连接池同一路由/总最大连接数：默认5/20
+	 * 连接保持/空闲关闭时间：默认30s/30s
+	 * 下载分段数：默认1
+	 * 使用缓存：默认true(需先打开HttpCache)
+	 * 共享相同请求：默认false
+	 * 共享cookie：默认false
+	 * 重试策略：默认RetryPolicy()
 	 */
 	public ConnectionConfig() {
 	}
@@ -55,4 +73,84 @@ public class ConnectionConfig {
 	public void setConnectionTimeout(int connectionTimeout) {
 		this.connectionTimeout = connectionTimeout;
 	}
+
+	public int getMaxRequestsPerHost() {
+		return maxRequestsPerHost;
+	}
+
+	public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+		this.maxRequestsPerHost = maxRequestsPerHost;
+	}
+
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	public int getMaxTotalConnections() {
+		return maxTotalConnections;
+	}
+
+	public void setMaxTotalConnections(int maxTotalConnections) {
+		this.maxTotalConnections = maxTotalConnections;
+	}
+
+	public long getKeepAliveTime() {
+		return keepAliveTime;
+	}
+
+	public void setKeepAliveTime(long keepAliveTime) {
+		this.keepAliveTime = keepAliveTime;
+	}
+
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	public int getDownloadSegmentCount() {
+		return downloadSegmentCount;
+	}
+
+	public void setDownloadSegmentCount(int downloadSegmentCount) {
+		this.downloadSegmentCount = downloadSegmentCount;
+	}
+
+	public boolean isUseCache() {
+		return isUseCache;
+	}
+
+	public void setUseCache(boolean isUseCache) {
+		this.isUseCache = isUseCache;
+	}
+
+	public boolean isShareRequest() {
+		return isShareRequest;
+	}
+
+	public void setShareRequest(boolean isShareRequest) {
+		this.isShareRequest = isShareRequest;
+	}
+
+	public boolean isShareCookie() {
+		return isShareCookie;
+	}
+
+	public void setShareCookie(boolean isShareCookie) {
+		this.isShareCookie = isShareCookie;
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
 }
@@ -0,0 +1,234 @@
+package com.xc.framework.http.client;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description 主机健康状态,按RetryPolicy维护各主机重试预算和熔断器(连续失败后快速失败,熔断时间过后放行一个试探请求)
+ */
+public class HostHealth {
+	public static final String TagName = "HostHealth";
+	private static HostHealth mHostHealth;
+	private final HashMap<String, State> stateMap = new HashMap<String, State>();
+	// 统计
+	private final AtomicLong retryCount = new AtomicLong();// 重试次数
+	private final AtomicLong retryRejectedCount = new AtomicLong();// 超出预算未重试次数
+	private final AtomicLong circuitOpenCount = new AtomicLong();// 熔断次数
+	private final AtomicLong fastFailCount = new AtomicLong();// 熔断中快速失败的请求数
+
+	/**
+	 * 获取实例
+	 *
+	 * @return
+	 */
+	public static synchronized HostHealth getInstance() {
+		if (mHostHealth == null) {
+			mHostHealth = new HostHealth();
+		}
+		return mHostHealth;
+	}
+
+	/**
+	 * 请求前检查熔断器
+	 *
+	 * @param host
+	 * @param policy
+	 * @throws CircuitOpenException
+	 *             熔断中
+	 */
+	public void checkRequest(String host, RetryPolicy policy) throws CircuitOpenException {
+		synchronized (stateMap) {
+			State state = stateMap.get(host);
+			if (state == null || state.openUntil == 0) {
+				return;
+			}
+			if (!state.isTrial && now() >= state.openUntil) {// 熔断时间已过,放行一个试探请求
+				state.isTrial = true;
+				return;
+			}
+		}
+		fastFailCount.incrementAndGet();
+		throw new CircuitOpenException(host);
+	}
+
+	/**
+	 * 请求成功(收到非502/503/504响应),关闭熔断器并返还重试令牌
+	 *
+	 * @param host
+	 * @param policy
+	 */
+	public void onSuccess(String host, RetryPolicy policy) {
+		synchronized (stateMap) {
+			State state = getState(host, policy);
+			state.failures = 0;
+			state.openUntil = 0;
+			state.isTrial = false;
+			state.tokens = Math.min(policy.getRetryBudgetTokens(), state.tokens + policy.getRetryBudgetRatio());
+		}
+	}
+
+	/**
+	 * 请求失败(网络异常或502/503/504),连续失败达到阈值或试探请求失败时熔断
+	 *
+	 * @param host
+	 * @param policy
+	 */
+	public void onFailure(String host, RetryPolicy policy) {
+		synchronized (stateMap) {
+			State state = getState(host, policy);
+			state.failures++;
+			if (state.isTrial || policy.getCircuitFailureThreshold() > 0 && state.failures >= policy.getCircuitFailureThreshold() && state.openUntil == 0) {
+				state.isTrial = false;
+				state.openUntil = now() + policy.getCircuitOpenTime();
+				circuitOpenCount.incrementAndGet();
+				Log.e(TagName, "熔断" + policy.getCircuitOpenTime() + "ms:" + host);
+			}
+		}
+	}
+
+	/**
+	 * 请求被取消,不计入成功失败,试探请求被取消时允许再次试探
+	 *
+	 * @param host
+	 */
+	public void onAbort(String host) {
+		synchronized (stateMap) {
+			State state = stateMap.get(host);
+			if (state != null) {
+				state.isTrial = false;
+			}
+		}
+	}
+
+	/**
+	 * 获取重试令牌
+	 *
+	 * @param host
+	 * @param policy
+	 * @return 超出重试预算返回false
+	 */
+	public boolean acquireRetry(String host, RetryPolicy policy) {
+		synchronized (stateMap) {
+			State state = getState(host, policy);
+			if (state.tokens >= 1) {
+				state.tokens--;
+				retryCount.incrementAndGet();
+				return true;
+			}
+		}
+		retryRejectedCount.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * 是否熔断中
+	 *
+	 * @param host
+	 * @return
+	 */
+	public boolean isCircuitOpen(String host) {
+		synchronized (stateMap) {
+			State state = stateMap.get(host);
+			return state != null && state.openUntil != 0;
+		}
+	}
+
+	/**
+	 * 重置主机状态(如网络切换后)
+	 *
+	 * @param host
+	 *            为null时重置全部
+	 */
+	public void reset(String host) {
+		synchronized (stateMap) {
+			if (host == null) {
+				stateMap.clear();
+			} else {
+				stateMap.remove(host);
+			}
+		}
+	}
+
+	/**
+	 * 当前时间(毫秒),熔断计时用
+	 *
+	 * @return
+	 */
+	long now() {
+		return SystemClock.elapsedRealtime();
+	}
+
+	private State getState(String host, RetryPolicy policy) {
+		State state = stateMap.get(host);
+		if (state == null) {
+			state = new State();
+			state.tokens = policy.getRetryBudgetTokens();
+			stateMap.put(host, state);
+		}
+		return state;
+	}
+
+	public long getRetryCount() {
+		return retryCount.get();
+	}
+
+	public long getRetryRejectedCount() {
+		return retryRejectedCount.get();
+	}
+
+	public long getCircuitOpenCount() {
+		return circuitOpenCount.get();
+	}
+
+	public long getFastFailCount() {
+		return fastFailCount.get();
+	}
+
+	/**
+	 * 重置统计
+	 */
+	public void resetStats() {
+		retryCount.set(0);
+		retryRejectedCount.set(0);
+		circuitOpenCount.set(0);
+		fastFailCount.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "HostHealth{" +
+				"retryCount=" + retryCount +
+				", retryRejectedCount=" + retryRejectedCount +
+				", circuitOpenCount=" + circuitOpenCount +
+				", fastFailCount=" + fastFailCount +
+				'}';
+	}
+
+	/**
+	 * 主机状态
+	 */
+	private static class State {
+		double tokens;// 剩余重试令牌
+		int failures;// 连续失败次数
+		long openUntil;// 熔断截止时间,0为未熔断
+		boolean isTrial;// 试探请求执行中
+	}
+
+	/**
+	 * 熔断中,请求未发送
+	 */
+	public static class CircuitOpenException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		public CircuitOpenException(String host) {
+			super("circuit open: " + host);
+		}
+	}
+}
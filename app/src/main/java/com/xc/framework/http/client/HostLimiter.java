@@ -0,0 +1,133 @@
+package com.xc.framework.http.client;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description 按主机限制并发请求数,超出时阻塞等待其它请求结束(可被线程中断取消)
+ */
+public class HostLimiter {
+	private static HostLimiter mHostLimiter;
+	private final HashMap<String, Integer> runningMap = new HashMap<String, Integer>();// 各主机执行中请求数
+	private int waitingCount;// 等待中请求数
+
+	/**
+	 * 获取实例
+	 *
+	 * @return
+	 */
+	public static synchronized HostLimiter getInstance() {
+		if (mHostLimiter == null) {
+			mHostLimiter = new HostLimiter();
+		}
+		return mHostLimiter;
+	}
+
+	/**
+	 * 获取url的主机名(含端口)
+	 *
+	 * @param url
+	 * @return 解析失败返回url本身
+	 */
+	public static String getHost(String url) {
+		try {
+			URL u = new URL(url);
+			return u.getPort() != -1 ? u.getHost().toLowerCase(Locale.US) + ":" + u.getPort() : u.getHost().toLowerCase(Locale.US);
+		} catch (MalformedURLException e) {
+			return url;
+		}
+	}
+
+	/**
+	 * 获取执行许可,达到上限时等待
+	 *
+	 * @param host
+	 * @param maxRequests
+	 *            该主机最大并发数,小于等于0不限制
+	 * @return 等待被中断返回false,此时不需要release
+	 */
+	public boolean acquire(String host, int maxRequests) {
+		synchronized (runningMap) {
+			if (maxRequests > 0 && getRunning(host) >= maxRequests) {
+				waitingCount++;
+				try {
+					while (getRunning(host) >= maxRequests) {
+						runningMap.wait();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				} finally {
+					waitingCount--;
+				}
+			}
+			runningMap.put(host, getRunning(host) + 1);
+			return true;
+		}
+	}
+
+	/**
+	 * 释放执行许可
+	 *
+	 * @param host
+	 */
+	public void release(String host) {
+		synchronized (runningMap) {
+			int running = getRunning(host) - 1;
+			if (running > 0) {
+				runningMap.put(host, running);
+			} else {
+				runningMap.remove(host);
+			}
+			runningMap.notifyAll();
+		}
+	}
+
+	/**
+	 * 主机执行中请求数
+	 *
+	 * @param host
+	 * @return
+	 */
+	public int getRunningCount(String host) {
+		synchronized (runningMap) {
+			return getRunning(host);
+		}
+	}
+
+	/**
+	 * 全部执行中请求数
+	 *
+	 * @return
+	 */
+	public int getRunningCount() {
+		synchronized (runningMap) {
+			int count = 0;
+			for (Integer running : runningMap.values()) {
+				count += running;
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * 等待许可的请求数
+	 *
+	 * @return
+	 */
+	public int getWaitingCount() {
+		synchronized (runningMap) {
+			return waitingCount;
+		}
+	}
+
+	private int getRunning(String host) {
+		Integer running = runningMap.get(host);
+		return running != null ? running : 0;
+	}
+}
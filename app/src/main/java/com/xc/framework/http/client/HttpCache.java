@@ -0,0 +1,462 @@
+package com.xc.framework.http.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
+
+import android.util.Log;
+
+import com.xc.framework.bitmap.cache.LruDiskCache;
+import com.xc.framework.util.XCIOUtil;
+import com.xc.framework.util.XCStringUtil;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description GET响应磁盘缓存,按Cache-Control/Expires判断是否新鲜,过期后带If-None-Match/If-Modified-Since重新验证,
+ *              stale-while-revalidate时间内先返回旧数据并在后台验证;open后生效
+ */
+public class HttpCache {
+	public static final String TagName = "HttpCache";
+	private static final int INDEX_META = 0;// 缓存头信息
+	private static final int INDEX_BODY = 1;// 响应内容
+	private static HttpCache mHttpCache;
+	private LruDiskCache diskCache;
+	private final Set<String> revalidateSet = Collections.synchronizedSet(new HashSet<String>());// 后台验证中的url
+	private ExecutorService revalidateExecutor;
+	// 统计
+	private final AtomicLong hitCount = new AtomicLong();// 新鲜缓存直接返回
+	private final AtomicLong staleHitCount = new AtomicLong();// 返回旧缓存并后台验证
+	private final AtomicLong revalidateCount = new AtomicLong();// 验证后未修改(304)返回缓存
+	private final AtomicLong missCount = new AtomicLong();// 网络返回新数据
+
+	/**
+	 * 获取实例
+	 *
+	 * @return
+	 */
+	public static synchronized HttpCache getInstance() {
+		if (mHttpCache == null) {
+			mHttpCache = new HttpCache();
+		}
+		return mHttpCache;
+	}
+
+	/**
+	 * 打开缓存
+	 *
+	 * @param directory
+	 *            缓存目录
+	 * @param maxSize
+	 *            最大字节数
+	 * @return
+	 */
+	public synchronized boolean open(File directory, long maxSize) {
+		if (diskCache != null && !diskCache.isClosed()) {
+			return true;
+		}
+		try {
+			if (directory.exists() || directory.mkdirs()) {
+				diskCache = LruDiskCache.open(directory, 1, 2, maxSize);
+				return true;
+			}
+		} catch (IOException e) {
+			Log.e(TagName, "打开缓存失败:" + e);
+		}
+		return false;
+	}
+
+	/**
+	 * 关闭缓存
+	 */
+	public synchronized void close() {
+		if (diskCache != null) {
+			XCIOUtil.close(diskCache);
+			diskCache = null;
+		}
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public synchronized void clear() {
+		if (diskCache != null) {
+			try {
+				File directory = diskCache.getDirectory();
+				long maxSize = diskCache.getMaxSize();
+				diskCache.delete();
+				diskCache = LruDiskCache.open(directory, 1, 2, maxSize);
+			} catch (IOException e) {
+				Log.e(TagName, "清空缓存失败:" + e);
+				diskCache = null;
+			}
+		}
+	}
+
+	public synchronized boolean isOpen() {
+		return diskCache != null && !diskCache.isClosed();
+	}
+
+	private synchronized LruDiskCache getDiskCache() {
+		return diskCache != null && !diskCache.isClosed() ? diskCache : null;
+	}
+
+	/**
+	 * 获取缓存
+	 *
+	 * @param url
+	 * @return 未缓存返回null
+	 */
+	public Entry get(String url) {
+		LruDiskCache cache = getDiskCache();
+		if (cache == null) {
+			return null;
+		}
+		LruDiskCache.Snapshot snapshot = null;
+		try {
+			snapshot = cache.get(url);
+			if (snapshot != null) {
+				Entry entry = Entry.parse(snapshot.getString(INDEX_META));
+				if (entry != null) {
+					entry.body = snapshot.getString(INDEX_BODY);
+					return entry;
+				}
+			}
+		} catch (IOException e) {
+			Log.e(TagName, "读取缓存失败:" + e);
+		} finally {
+			XCIOUtil.close(snapshot);
+		}
+		return null;
+	}
+
+	/**
+	 * 命中缓存
+	 *
+	 * @param entry
+	 * @param isStale
+	 *            是否为返回旧数据并后台验证
+	 * @return 缓存内容
+	 */
+	public String onHit(Entry entry, boolean isStale) {
+		(isStale ? staleHitCount : hitCount).incrementAndGet();
+		return entry.body;
+	}
+
+	/**
+	 * 验证返回304,更新缓存头
+	 *
+	 * @param url
+	 * @param entry
+	 * @param response
+	 * @return 缓存内容
+	 */
+	public String onNotModified(String url, Entry entry, HttpResponse response) {
+		revalidateCount.incrementAndGet();
+		Entry update = Entry.create(response);
+		if (update.etag == null) {
+			update.etag = entry.etag;
+		}
+		if (update.lastModified == null) {
+			update.lastModified = entry.lastModified;
+		}
+		update.body = entry.body;
+		write(url, update);
+		return entry.body;
+	}
+
+	/**
+	 * 网络返回200,可缓存时保存
+	 *
+	 * @param url
+	 * @param response
+	 * @param body
+	 */
+	public void onResponse(String url, HttpResponse response, String body) {
+		missCount.incrementAndGet();
+		if (getDiskCache() == null) {
+			return;
+		}
+		if (getCacheControl(response).contains("no-store")) {
+			remove(url);
+			return;
+		}
+		Entry entry = Entry.create(response);
+		if (entry.maxAge > 0 || entry.etag != null || entry.lastModified != null) {
+			entry.body = body;
+			write(url, entry);
+		} else {
+			remove(url);
+		}
+	}
+
+	/**
+	 * 后台验证,同一url同时只验证一次
+	 *
+	 * @param url
+	 * @param task
+	 *            带条件的请求
+	 */
+	public void revalidate(final String url, final Runnable task) {
+		if (!revalidateSet.add(url)) {
+			return;
+		}
+		getRevalidateExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					task.run();
+				} finally {
+					revalidateSet.remove(url);
+				}
+			}
+		});
+	}
+
+	public void remove(String url) {
+		LruDiskCache cache = getDiskCache();
+		if (cache != null) {
+			try {
+				cache.remove(url);
+			} catch (IOException e) {
+				Log.e(TagName, "删除缓存失败:" + e);
+			}
+		}
+	}
+
+	private void write(String url, Entry entry) {
+		LruDiskCache cache = getDiskCache();
+		if (cache == null) {
+			return;
+		}
+		LruDiskCache.Editor editor = null;
+		try {
+			editor = cache.edit(url);
+			if (editor != null) {// 为null时其它线程正在写入
+				editor.set(INDEX_META, entry.toString());
+				editor.set(INDEX_BODY, entry.body != null ? entry.body : "");
+				editor.commit();
+			}
+		} catch (IOException e) {
+			Log.e(TagName, "写入缓存失败:" + e);
+		} finally {
+			if (editor != null) {
+				editor.abortUnlessCommitted();
+			}
+		}
+	}
+
+	private synchronized ExecutorService getRevalidateExecutor() {
+		if (revalidateExecutor == null) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, TagName + "-revalidate");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			executor.allowCoreThreadTimeOut(true);
+			revalidateExecutor = executor;
+		}
+		return revalidateExecutor;
+	}
+
+	private static String getCacheControl(HttpResponse response) {
+		StringBuilder sb = new StringBuilder();
+		for (Header header : response.getHeaders("Cache-Control")) {
+			sb.append(header.getValue().toLowerCase(Locale.US)).append(',');
+		}
+		Header pragma = response.getFirstHeader("Pragma");
+		if (pragma != null && pragma.getValue().toLowerCase(Locale.US).contains("no-cache")) {
+			sb.append("no-cache,");
+		}
+		return sb.toString();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getStaleHitCount() {
+		return staleHitCount.get();
+	}
+
+	public long getRevalidateCount() {
+		return revalidateCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * 命中率(含旧数据和304)
+	 *
+	 * @return
+	 */
+	public double getHitRate() {
+		long hit = hitCount.get() + staleHitCount.get() + revalidateCount.get();
+		long total = hit + missCount.get();
+		return total > 0 ? hit / (double) total : 0;
+	}
+
+	public void resetStats() {
+		hitCount.set(0);
+		staleHitCount.set(0);
+		revalidateCount.set(0);
+		missCount.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "HttpCache{" +
+				"hitCount=" + hitCount +
+				", staleHitCount=" + staleHitCount +
+				", revalidateCount=" + revalidateCount +
+				", missCount=" + missCount +
+				", hitRate=" + getHitRate() +
+				'}';
+	}
+
+	/**
+	 * 缓存项
+	 */
+	public static class Entry {
+		String etag;
+		String lastModified;
+		long responseTime;// 响应时间
+		long maxAge = -1;// 新鲜时间(毫秒),未指定为-1
+		long staleWhileRevalidate;// 过期后可先返回旧数据的时间(毫秒)
+		boolean isNoCache;// 每次都需验证
+		boolean isMustRevalidate;// 过期后必须验证
+		String body;
+
+		/**
+		 * 是否新鲜(无需请求)
+		 */
+		public boolean isFresh() {
+			return !isNoCache && maxAge > 0 && getAge() < maxAge;
+		}
+
+		/**
+		 * 是否可先返回旧数据并后台验证
+		 */
+		public boolean isStaleUsable() {
+			return !isNoCache && !isMustRevalidate && staleWhileRevalidate > 0 && getAge() < Math.max(maxAge, 0) + staleWhileRevalidate;
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		public String getBody() {
+			return body;
+		}
+
+		private long getAge() {
+			return System.currentTimeMillis() - responseTime;
+		}
+
+		static Entry create(HttpResponse response) {
+			Entry entry = new Entry();
+			entry.responseTime = System.currentTimeMillis();
+			Header etag = response.getFirstHeader("ETag");
+			entry.etag = etag != null ? etag.getValue() : null;
+			Header lastModified = response.getFirstHeader("Last-Modified");
+			entry.lastModified = lastModified != null ? lastModified.getValue() : null;
+			for (Header header : response.getHeaders("Cache-Control")) {
+				for (HeaderElement element : header.getElements()) {
+					String name = element.getName().toLowerCase(Locale.US);
+					if ("max-age".equals(name)) {
+						entry.maxAge = toMillis(element.getValue());
+					} else if ("stale-while-revalidate".equals(name)) {
+						entry.staleWhileRevalidate = Math.max(0, toMillis(element.getValue()));
+					} else if ("no-cache".equals(name)) {
+						entry.isNoCache = true;
+					} else if ("must-revalidate".equals(name) || "proxy-revalidate".equals(name)) {
+						entry.isMustRevalidate = true;
+					}
+				}
+			}
+			if (getCacheControl(response).contains("no-cache")) {
+				entry.isNoCache = true;
+			}
+			if (entry.maxAge < 0) {// 无max-age时按Expires
+				Header expires = response.getFirstHeader("Expires");
+				Header date = response.getFirstHeader("Date");
+				if (expires != null) {
+					try {
+						long serverTime = date != null ? DateUtils.parseDate(date.getValue()).getTime() : entry.responseTime;
+						entry.maxAge = Math.max(0, DateUtils.parseDate(expires.getValue()).getTime() - serverTime);
+					} catch (DateParseException e) {
+						entry.maxAge = 0;// 无效的Expires视为已过期
+					}
+				}
+			}
+			return entry;
+		}
+
+		static Entry parse(String meta) {
+			if (XCStringUtil.isEmpty(meta)) {
+				return null;
+			}
+			String[] lines = meta.split("\n", -1);
+			if (lines.length < 7) {
+				return null;
+			}
+			try {
+				Entry entry = new Entry();
+				entry.etag = XCStringUtil.isEmpty(lines[0]) ? null : lines[0];
+				entry.lastModified = XCStringUtil.isEmpty(lines[1]) ? null : lines[1];
+				entry.responseTime = Long.parseLong(lines[2]);
+				entry.maxAge = Long.parseLong(lines[3]);
+				entry.staleWhileRevalidate = Long.parseLong(lines[4]);
+				entry.isNoCache = "1".equals(lines[5]);
+				entry.isMustRevalidate = "1".equals(lines[6]);
+				return entry;
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		private static long toMillis(String seconds) {
+			try {
+				return Long.parseLong(seconds.trim()) * 1000;
+			} catch (Exception e) {
+				return -1;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return (etag != null ? etag : "") + "\n" +
+					(lastModified != null ? lastModified : "") + "\n" +
+					responseTime + "\n" +
+					maxAge + "\n" +
+					staleWhileRevalidate + "\n" +
+					(isNoCache ? "1" : "0") + "\n" +
+					(isMustRevalidate ? "1" : "0");
+		}
+	}
+}
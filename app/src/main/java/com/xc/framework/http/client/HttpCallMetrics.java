@@ -0,0 +1,167 @@
+package com.xc.framework.http.client;
+
+import java.io.IOException;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description 单次请求的各阶段耗时(毫秒)和传输字节数,未经历的阶段(如复用连接时的DNS/连接/TLS)为-1,重试时累计
+ */
+public class HttpCallMetrics {
+	static final ThreadLocal<HttpCallMetrics> current = new ThreadLocal<HttpCallMetrics>();// 当前线程执行中的请求
+	//
+	final String method;
+	final String url;
+	final String host;
+	final long startNanos;
+	long dnsNanos = -1;
+	long connectNanos = -1;
+	long tlsNanos = -1;
+	long requestWriteNanos = -1;
+	long ttfbNanos = -1;
+	long bodyReadNanos = -1;
+	long totalNanos = -1;
+	long bytesSent;
+	long bytesReceived;
+	int statusCode;
+	boolean isConnectionReused;
+	IOException error;
+	// 阶段时间点
+	long requestSentNanos;// 请求发送完成
+	long responseNanos;// 收到响应头
+	long lastReadNanos;// 最后读取响应体
+
+	HttpCallMetrics(String method, String url, String host) {
+		this.method = method;
+		this.url = url;
+		this.host = host;
+		this.startNanos = System.nanoTime();
+	}
+
+	static long add(long total, long value) {
+		return total < 0 ? value : total + value;
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos < 0 ? -1 : nanos / 1000000d;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * 主机名(含端口)
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * DNS解析耗时
+	 */
+	public double getDnsMillis() {
+		return toMillis(dnsNanos);
+	}
+
+	/**
+	 * TCP连接耗时
+	 */
+	public double getConnectMillis() {
+		return toMillis(connectNanos);
+	}
+
+	/**
+	 * TLS握手耗时
+	 */
+	public double getTlsMillis() {
+		return toMillis(tlsNanos);
+	}
+
+	/**
+	 * 发送请求头和请求体耗时
+	 */
+	public double getRequestWriteMillis() {
+		return toMillis(requestWriteNanos);
+	}
+
+	/**
+	 * 请求发送完成到收到响应头耗时
+	 */
+	public double getTtfbMillis() {
+		return toMillis(ttfbNanos);
+	}
+
+	/**
+	 * 收到响应头到响应体读取结束耗时
+	 */
+	public double getBodyReadMillis() {
+		return toMillis(bodyReadNanos);
+	}
+
+	/**
+	 * 总耗时(不含HostLimiter排队)
+	 */
+	public double getTotalMillis() {
+		return toMillis(totalNanos);
+	}
+
+	/**
+	 * 发送字节数(请求行,请求头和请求体)
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	/**
+	 * 接收的响应体字节数(解压前)
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	/**
+	 * 响应码,未收到响应为0
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * 是否复用连接池中的连接
+	 */
+	public boolean isConnectionReused() {
+		return isConnectionReused;
+	}
+
+	/**
+	 * 请求异常,成功为null
+	 */
+	public IOException getError() {
+		return error;
+	}
+
+	@Override
+	public String toString() {
+		return "HttpCallMetrics{" +
+				method + " " + url +
+				", status=" + statusCode +
+				", reused=" + isConnectionReused +
+				", dns=" + getDnsMillis() +
+				", connect=" + getConnectMillis() +
+				", tls=" + getTlsMillis() +
+				", requestWrite=" + getRequestWriteMillis() +
+				", ttfb=" + getTtfbMillis() +
+				", bodyRead=" + getBodyReadMillis() +
+				", total=" + getTotalMillis() +
+				", bytesSent=" + bytesSent +
+				", bytesReceived=" + bytesReceived +
+				(error != null ? ", error=" + error : "") +
+				'}';
+	}
+}
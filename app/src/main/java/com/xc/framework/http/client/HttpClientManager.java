@@ -0,0 +1,645 @@
+package com.xc.framework.http.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLSocket;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.HttpHostConnectException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.LayeredSocketFactory;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.scheme.SocketFactory;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import android.util.Log;
+
+import com.xc.framework.http.interfaces.HttpEventListener;
+import com.xc.framework.util.XCNetUtil;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description 共享的HttpClient,连接池复用keep-alive连接,后台线程定时关闭过期和空闲连接;
+ * cookie默认不在请求间共享(ConnectionConfig.setShareCookie(true)时使用client的CookieStore);
+ * 注册HttpEventListener后记录每个请求各阶段耗时(DNS,连接,TLS,发送请求,首字节,读取响应体)和传输字节数
+ */
+public class HttpClientManager {
+	public static final String TagName = "HttpClientManager";
+	private static final long IDLE_CHECK_INTERVAL = 5 * 1000;// 空闲连接检查间隔
+	private static final String ATTR_METRICS = "xc.metrics";// 上下文属性:HttpCallMetrics
+	private static HttpClientManager mHttpClientManager;
+	//
+	private DefaultHttpClient client;
+	private ThreadSafeClientConnManager connManager;
+	private Thread idleThread;// 空闲连接回收线程
+	private volatile long keepAliveTime;// 服务器未指定时连接保持时间
+	private volatile long idleTimeout;// 空闲超过此时间的连接被关闭
+	// 统计
+	private final AtomicLong reuseCount = new AtomicLong();// 复用池中连接次数
+	private final AtomicLong connectCount = new AtomicLong();// 新建连接次数
+	// 事件
+	private final List<HttpEventListener> listenerList = new CopyOnWriteArrayList<HttpEventListener>();
+	private final Map<HttpRequestBase, HttpCallMetrics> metricsMap = Collections.synchronizedMap(new HashMap<HttpRequestBase, HttpCallMetrics>());// 未释放的请求
+
+	/**
+	 * 获取实例
+	 *
+	 * @return
+	 */
+	public static synchronized HttpClientManager getInstance() {
+		if (mHttpClientManager == null) {
+			mHttpClientManager = new HttpClientManager();
+		}
+		return mHttpClientManager;
+	}
+
+	/**
+	 * 获取共享client,首次调用时按config创建连接池
+	 *
+	 * @param config
+	 * @return
+	 */
+	public synchronized DefaultHttpClient getClient(ConnectionConfig config) {
+		if (client == null) {
+			createClient(config != null ? config : new ConnectionConfig());
+		}
+		return client;
+	}
+
+	/**
+	 * 按config重建连接池(连接数上限只在创建时生效),建议在发起请求前调用
+	 *
+	 * @param config
+	 */
+	public synchronized void configPool(ConnectionConfig config) {
+		shutdown();
+		createClient(config != null ? config : new ConnectionConfig());
+	}
+
+	/**
+	 * 关闭连接池,下次请求时重新创建
+	 */
+	public synchronized void shutdown() {
+		if (idleThread != null) {
+			idleThread.interrupt();
+			idleThread = null;
+		}
+		if (connManager != null) {
+			connManager.shutdown();
+			connManager = null;
+		}
+		client = null;
+	}
+
+	/**
+	 * 设置单个请求的超时时间(优先于client参数)
+	 *
+	 * @param request
+	 * @param config
+	 */
+	public void configRequest(HttpRequestBase request, ConnectionConfig config) {
+		HttpParams params = request.getParams();
+		ConnManagerParams.setTimeout(params, config.getSoTimeout());
+		HttpConnectionParams.setSoTimeout(params, config.getSoTimeout());
+		HttpConnectionParams.setConnectionTimeout(params, config.getConnectionTimeout());
+	}
+
+	/**
+	 * 执行请求,按config的RetryPolicy重试和熔断
+	 *
+	 * @param request
+	 * @param config
+	 * @param isRetrySafe
+	 *            非幂等请求(post)是否可在发送后重试
+	 * @return
+	 * @throws IOException
+	 *             熔断中时为HostHealth.CircuitOpenException
+	 */
+	public HttpResponse execute(HttpRequestBase request, ConnectionConfig config, boolean isRetrySafe) throws IOException {
+		String host = HostLimiter.getHost(request.getURI().toString());
+		RetryPolicy policy = config.getRetryPolicy() != null ? config.getRetryPolicy() : RetryPolicy.none();
+		HttpTask task = HttpTask.current.get();
+		if (task != null && !task.attach(request)) {// 任务已取消
+			throw new InterruptedIOException("request cancelled");
+		}
+		HostHealth.getInstance().checkRequest(host, policy);
+		HttpContext context = new BasicHttpContext();
+		if (!config.isShareCookie()) {// 每个请求独立的cookie,同一请求重定向间保留
+			context.setAttribute(ClientContext.COOKIE_STORE, new BasicCookieStore());
+		}
+		context.setAttribute(RetryHandler.ATTR_RETRY_POLICY, policy);
+		context.setAttribute(RetryHandler.ATTR_RETRY_SAFE, isRetrySafe);
+		context.setAttribute(RetryHandler.ATTR_HOST, host);
+		HttpCallMetrics metrics = null;
+		if (!listenerList.isEmpty()) {// 有监听时才记录
+			metrics = new HttpCallMetrics(request.getMethod(), request.getURI().toString(), host);
+			context.setAttribute(ATTR_METRICS, metrics);
+			metricsMap.put(request, metrics);
+			HttpCallMetrics.current.set(metrics);
+		}
+		HttpResponse response;
+		try {
+			response = getClient(config).execute(request, context);
+		} catch (IOException e) {
+			if (metrics != null) {
+				metrics.error = e;
+			}
+			if (request.isAborted() || Thread.currentThread().isInterrupted()) {// 被取消
+				HostHealth.getInstance().onAbort(host);
+			} else {
+				HostHealth.getInstance().onFailure(host, policy);
+			}
+			throw e;
+		} catch (RuntimeException e) {// 按失败处理,否则试探请求标记无法清除,主机一直熔断
+			HostHealth.getInstance().onFailure(host, policy);
+			throw e;
+		} finally {
+			HttpCallMetrics.current.remove();
+		}
+		if (metrics != null) {
+			metrics.statusCode = response.getStatusLine().getStatusCode();
+		}
+		if (RetryPolicy.isHostFailure(response.getStatusLine().getStatusCode())) {
+			HostHealth.getInstance().onFailure(host, policy);
+		} else {
+			HostHealth.getInstance().onSuccess(host, policy);
+		}
+		return response;
+	}
+
+	/**
+	 * 释放请求占用的连接,正常结束时读完响应体归还连接池,否则中断连接
+	 *
+	 * @param request
+	 * @param response
+	 * @param isAbort
+	 *            是否中断
+	 */
+	public void release(HttpRequestBase request, HttpResponse response, boolean isAbort) {
+		if (request == null) {
+			return;
+		}
+		if (!isAbort && response != null && response.getEntity() != null) {
+			try {
+				response.getEntity().consumeContent();
+			} catch (IOException e) {
+				isAbort = true;
+			}
+		}
+		if (isAbort) {
+			request.abort();
+		}
+		HttpCallMetrics metrics = metricsMap.remove(request);
+		if (metrics != null) {
+			if (metrics.lastReadNanos > 0) {
+				metrics.bodyReadNanos = metrics.lastReadNanos - metrics.responseNanos;
+			}
+			metrics.totalNanos = System.nanoTime() - metrics.startNanos;
+			for (HttpEventListener listener : listenerList) {
+				try {
+					listener.onCallEnd(metrics);
+				} catch (RuntimeException e) {
+					Log.e(TagName, "" + e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 添加请求事件监听
+	 *
+	 * @param listener
+	 */
+	public void addEventListener(HttpEventListener listener) {
+		if (listener != null && !listenerList.contains(listener)) {
+			listenerList.add(listener);
+		}
+	}
+
+	/**
+	 * 移除请求事件监听
+	 *
+	 * @param listener
+	 */
+	public void removeEventListener(HttpEventListener listener) {
+		listenerList.remove(listener);
+	}
+
+	/**
+	 * 创建client
+	 *
+	 * @param config
+	 */
+	private void createClient(ConnectionConfig config) {
+		keepAliveTime = config.getKeepAliveTime();
+		idleTimeout = config.getIdleTimeout();
+		//
+		HttpParams params = new BasicHttpParams();
+		ConnManagerParams.setTimeout(params, config.getSoTimeout());
+		HttpConnectionParams.setSoTimeout(params, config.getSoTimeout());
+		HttpConnectionParams.setConnectionTimeout(params, config.getConnectionTimeout());
+		HttpProtocolParams.setUserAgent(params, XCNetUtil.getUserAgent(null));
+		ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(config.getMaxConnectionsPerRoute()));
+		ConnManagerParams.setMaxTotalConnections(params, config.getMaxTotalConnections());
+		HttpConnectionParams.setTcpNoDelay(params, true);
+		HttpConnectionParams.setStaleCheckingEnabled(params, true);
+		HttpConnectionParams.setSocketBufferSize(params, 1024 * 8);
+		HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+		SchemeRegistry schemeRegistry = new SchemeRegistry();
+		schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+		schemeRegistry.register(new Scheme("https", DefaultSSLSocketFactory.getSocketFactory(), 443));
+		//
+		connManager = new ThreadSafeClientConnManager(params, schemeRegistry) {
+			@Override
+			protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schreg) {
+				return new MetricsConnectionOperator(schreg);
+			}
+
+			@Override
+			public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+				final ClientConnectionRequest request = super.requestConnection(route, state);
+				return new ClientConnectionRequest() {
+					@Override
+					public ManagedClientConnection getConnection(long timeout, TimeUnit tunit) throws InterruptedException, ConnectionPoolTimeoutException {
+						ManagedClientConnection connection = request.getConnection(timeout, tunit);
+						if (connection.isOpen()) {// 池中已建立的连接
+							reuseCount.incrementAndGet();
+						} else {
+							connectCount.incrementAndGet();
+						}
+						HttpCallMetrics metrics = HttpCallMetrics.current.get();
+						if (metrics != null) {
+							metrics.isConnectionReused = connection.isOpen();
+						}
+						return connection;
+					}
+
+					@Override
+					public void abortRequest() {
+						request.abortRequest();
+					}
+				};
+			}
+		};
+		client = new DefaultHttpClient(connManager, params) {
+			@Override
+			protected HttpRequestExecutor createRequestExecutor() {
+				return new MetricsRequestExecutor();
+			}
+		};
+		client.setHttpRequestRetryHandler(new RetryHandler(3));
+		client.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+			@Override
+			public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+				long duration = super.getKeepAliveDuration(response, context);// 服务器Keep-Alive: timeout
+				return duration > 0 ? Math.min(duration, keepAliveTime) : keepAliveTime;
+			}
+		});
+		client.addRequestInterceptor(new HttpRequestInterceptor() {
+			@Override
+			public void process(org.apache.http.HttpRequest httpRequest, HttpContext httpContext) throws org.apache.http.HttpException, IOException {
+				if (!httpRequest.containsHeader("Accept-Encoding")) {
+					httpRequest.addHeader("Accept-Encoding", "gzip");
+				}
+			}
+		});
+		client.addResponseInterceptor(new HttpResponseInterceptor() {
+			@Override
+			public void process(HttpResponse response, HttpContext httpContext) throws org.apache.http.HttpException, IOException {
+				HttpCallMetrics metrics = (HttpCallMetrics) httpContext.getAttribute(ATTR_METRICS);
+				if (metrics != null && response.getEntity() != null) {// 在解压前统计响应体
+					response.setEntity(new MetricsEntity(response.getEntity(), metrics));
+				}
+			}
+		});
+		client.addResponseInterceptor(new HttpResponseInterceptor() {
+			@Override
+			public void process(HttpResponse response, HttpContext httpContext) throws org.apache.http.HttpException, IOException {
+				final HttpEntity entity = response.getEntity();
+				if (entity == null) {
+					return;
+				}
+				final Header encoding = entity.getContentEncoding();
+				if (encoding != null) {
+					for (HeaderElement element : encoding.getElements()) {
+						if (element.getName().equalsIgnoreCase("gzip")) {
+							response.setEntity(new GZipDecompressingEntity(response.getEntity()));
+							return;
+						}
+					}
+				}
+			}
+		});
+		//
+		final ThreadSafeClientConnManager manager = connManager;
+		idleThread = new Thread(TagName) {
+			@Override
+			public void run() {
+				while (!isInterrupted()) {
+					try {
+						Thread.sleep(IDLE_CHECK_INTERVAL);
+					} catch (InterruptedException e) {
+						return;
+					}
+					try {
+						manager.closeExpiredConnections();
+						manager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+					} catch (Exception e) {
+						Log.e(TagName, "" + e);
+					}
+				}
+			}
+		};
+		idleThread.setDaemon(true);
+		idleThread.start();
+	}
+
+	/**
+	 * 复用池中连接次数
+	 *
+	 * @return
+	 */
+	public long getReuseCount() {
+		return reuseCount.get();
+	}
+
+	/**
+	 * 新建连接次数
+	 *
+	 * @return
+	 */
+	public long getConnectCount() {
+		return connectCount.get();
+	}
+
+	/**
+	 * 连接复用率
+	 *
+	 * @return
+	 */
+	public double getReuseRate() {
+		long reuse = reuseCount.get();
+		long total = reuse + connectCount.get();
+		return total > 0 ? reuse / (double) total : 0;
+	}
+
+	/**
+	 * 池中连接数(含使用中)
+	 *
+	 * @return
+	 */
+	public synchronized int getConnectionsInPool() {
+		return connManager != null ? connManager.getConnectionsInPool() : 0;
+	}
+
+	/**
+	 * 重置统计
+	 */
+	public void resetStats() {
+		reuseCount.set(0);
+		connectCount.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "HttpClientManager{" +
+				"reuseCount=" + reuseCount +
+				", connectCount=" + connectCount +
+				", reuseRate=" + getReuseRate() +
+				", connectionsInPool=" + getConnectionsInPool() +
+				'}';
+	}
+
+	/**
+	 * 记录DNS解析,TCP连接和TLS握手耗时;没有统计时使用默认实现。
+	 * 默认实现自行解析主机名后把IP传给SocketFactory,https用普通SocketFactory连接后再由LayeredSocketFactory在其上创建SSLSocket,
+	 * 因此按相同流程在此计时
+	 */
+	private static class MetricsConnectionOperator extends DefaultClientConnectionOperator {
+
+		MetricsConnectionOperator(SchemeRegistry schemes) {
+			super(schemes);
+		}
+
+		@Override
+		public void openConnection(OperatedClientConnection conn, HttpHost target, InetAddress local, HttpContext context, HttpParams params) throws IOException {
+			HttpCallMetrics metrics = context != null ? (HttpCallMetrics) context.getAttribute(ATTR_METRICS) : null;
+			if (metrics == null) {
+				super.openConnection(conn, target, local, context, params);
+				return;
+			}
+			if (conn.isOpen()) {
+				throw new IllegalStateException("Connection must not be open.");
+			}
+			Scheme scheme = schemeRegistry.getScheme(target.getSchemeName());
+			SocketFactory socketFactory = scheme.getSocketFactory();
+			LayeredSocketFactory layeredFactory = socketFactory instanceof LayeredSocketFactory ? (LayeredSocketFactory) socketFactory : null;
+			SocketFactory plainFactory = layeredFactory != null ? PlainSocketFactory.getSocketFactory() : socketFactory;
+			int port = scheme.resolvePort(target.getPort());
+			long start = System.nanoTime();
+			InetAddress[] addresses = InetAddress.getAllByName(target.getHostName());
+			metrics.dnsNanos = HttpCallMetrics.add(metrics.dnsNanos, System.nanoTime() - start);
+			for (int i = 0; i < addresses.length; i++) {
+				Socket sock = plainFactory.createSocket();
+				conn.opening(sock, target);
+				start = System.nanoTime();
+				try {
+					Socket connsock = plainFactory.connectSocket(sock, addresses[i].getHostAddress(), port, local, 0, params);
+					if (sock != connsock) {
+						sock = connsock;
+						conn.opening(sock, target);
+					}
+				} catch (ConnectException e) {
+					metrics.connectNanos = HttpCallMetrics.add(metrics.connectNanos, System.nanoTime() - start);
+					if (i == addresses.length - 1) {
+						throw new HttpHostConnectException(target, e);
+					}
+					continue;
+				} catch (ConnectTimeoutException e) {
+					metrics.connectNanos = HttpCallMetrics.add(metrics.connectNanos, System.nanoTime() - start);
+					if (i == addresses.length - 1) {
+						throw e;
+					}
+					continue;
+				}
+				metrics.connectNanos = HttpCallMetrics.add(metrics.connectNanos, System.nanoTime() - start);
+				if (layeredFactory != null) {
+					Socket layeredsock = createLayeredSocket(layeredFactory, sock, target, port, metrics);
+					if (layeredsock != sock) {
+						conn.opening(layeredsock, target);
+					}
+					prepareSocket(layeredsock, context, params);
+					conn.openCompleted(layeredFactory.isSecure(layeredsock), params);
+				} else {
+					prepareSocket(sock, context, params);
+					conn.openCompleted(plainFactory.isSecure(sock), params);
+				}
+				return;
+			}
+		}
+
+		@Override
+		public void updateSecureConnection(OperatedClientConnection conn, HttpHost target, HttpContext context, HttpParams params) throws IOException {
+			HttpCallMetrics metrics = context != null ? (HttpCallMetrics) context.getAttribute(ATTR_METRICS) : null;
+			Scheme scheme = schemeRegistry.getScheme(target.getSchemeName());
+			if (metrics == null || !conn.isOpen() || !(scheme.getSocketFactory() instanceof LayeredSocketFactory)) {
+				super.updateSecureConnection(conn, target, context, params);
+				return;
+			}
+			// 通过代理隧道连接https
+			LayeredSocketFactory layeredFactory = (LayeredSocketFactory) scheme.getSocketFactory();
+			Socket sock = createLayeredSocket(layeredFactory, conn.getSocket(), target, scheme.resolvePort(target.getPort()), metrics);
+			prepareSocket(sock, context, params);
+			conn.update(sock, target, layeredFactory.isSecure(sock), params);
+		}
+
+		/**
+		 * 在已连接的socket上创建SSLSocket并完成握手
+		 */
+		private static Socket createLayeredSocket(LayeredSocketFactory layeredFactory, Socket sock, HttpHost target, int port, HttpCallMetrics metrics) throws IOException {
+			long start = System.nanoTime();
+			try {
+				Socket layeredsock = layeredFactory.createSocket(sock, target.getHostName(), port, true);
+				if (layeredsock instanceof SSLSocket) {// 已握手时不再重复
+					((SSLSocket) layeredsock).startHandshake();
+				}
+				return layeredsock;
+			} finally {
+				metrics.tlsNanos = HttpCallMetrics.add(metrics.tlsNanos, System.nanoTime() - start);
+			}
+		}
+	}
+
+	/**
+	 * 记录发送请求和等待首字节耗时
+	 */
+	private static class MetricsRequestExecutor extends HttpRequestExecutor {
+		@Override
+		protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn, HttpContext context) throws IOException, HttpException {
+			HttpCallMetrics metrics = (HttpCallMetrics) context.getAttribute(ATTR_METRICS);
+			if (metrics == null) {
+				return super.doSendRequest(request, conn, context);
+			}
+			long start = System.nanoTime();
+			long sentBytes = conn.getMetrics().getSentBytesCount();
+			HttpResponse response = super.doSendRequest(request, conn, context);
+			metrics.requestSentNanos = System.nanoTime();
+			metrics.requestWriteNanos = HttpCallMetrics.add(metrics.requestWriteNanos, metrics.requestSentNanos - start);
+			metrics.bytesSent += conn.getMetrics().getSentBytesCount() - sentBytes;
+			return response;
+		}
+
+		@Override
+		protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn, HttpContext context) throws HttpException, IOException {
+			HttpResponse response = super.doReceiveResponse(request, conn, context);
+			HttpCallMetrics metrics = (HttpCallMetrics) context.getAttribute(ATTR_METRICS);
+			if (metrics != null) {
+				metrics.responseNanos = System.nanoTime();
+				metrics.ttfbNanos = HttpCallMetrics.add(metrics.ttfbNanos, metrics.responseNanos - metrics.requestSentNanos);
+			}
+			return response;
+		}
+	}
+
+	/**
+	 * 统计响应体读取字节数和结束时间
+	 */
+	private static class MetricsEntity extends HttpEntityWrapper {
+		private final HttpCallMetrics metrics;
+
+		MetricsEntity(HttpEntity entity, HttpCallMetrics metrics) {
+			super(entity);
+			this.metrics = metrics;
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			return new FilterInputStream(wrappedEntity.getContent()) {
+				@Override
+				public int read() throws IOException {
+					int b = super.read();
+					onRead(b < 0 ? -1 : 1);
+					return b;
+				}
+
+				@Override
+				public int read(byte[] buffer, int offset, int length) throws IOException {
+					int count = super.read(buffer, offset, length);
+					onRead(count);
+					return count;
+				}
+			};
+		}
+
+		@Override
+		public void writeTo(OutputStream outstream) throws IOException {
+			InputStream in = getContent();
+			try {
+				byte[] buffer = new byte[8 * 1024];
+				int count;
+				while ((count = in.read(buffer)) != -1) {
+					outstream.write(buffer, 0, count);
+				}
+			} finally {
+				in.close();
+			}
+		}
+
+		private void onRead(int count) {
+			if (count > 0) {
+				metrics.bytesReceived += count;
+			}
+			metrics.lastReadNanos = System.nanoTime();
+		}
+	}
+}
@@ -0,0 +1,370 @@
+package com.xc.framework.http.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description http请求调度器,接口请求和上传下载分通道在固定大小线程池中按优先级排队执行,支持按tag取消;
+ * ConnectionConfig.setShareRequest(true)时,执行中的相同GET请求(method+url)只请求一次,结果返回给所有请求方
+ */
+public class HttpDispatcher {
+    public static final String TagName = "HttpDispatcher";
+    public static final int LANE_API = 0;// 接口请求通道
+    public static final int LANE_TRANSFER = 1;// 上传下载通道
+    private static HttpDispatcher mHttpDispatcher;
+    private final Lane[] lanes;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, HttpTask> inFlightMap = new HashMap<String, HttpTask>();// 执行中的共享请求
+    private final AtomicLong sharedCount = new AtomicLong();// 共享结果的请求数
+
+    public static synchronized HttpDispatcher getInstance() {
+        if (mHttpDispatcher == null) {
+            mHttpDispatcher = new HttpDispatcher();
+        }
+        return mHttpDispatcher;
+    }
+
+    private HttpDispatcher() {
+        lanes = new Lane[]{new Lane("api", 6, 256), new Lane("transfer", 3, 64)};
+    }
+
+    /**
+     * 配置通道
+     *
+     * @param lane         LANE_API(默认6线程,排队256) / LANE_TRANSFER(默认3线程,排队64)
+     * @param maxThreads   最大同时执行数
+     * @param maxQueueSize 最多排队数,超出时请求直接返回空结果,小于等于0不限制
+     */
+    public void config(int lane, int maxThreads, int maxQueueSize) {
+        Lane l = lanes[lane];
+        maxThreads = Math.max(1, maxThreads);
+        synchronized (l) {
+            if (maxThreads > l.executor.getMaximumPoolSize()) {
+                l.executor.setMaximumPoolSize(maxThreads);
+                l.executor.setCorePoolSize(maxThreads);
+            } else {
+                l.executor.setCorePoolSize(maxThreads);
+                l.executor.setMaximumPoolSize(maxThreads);
+            }
+            l.maxQueueSize = maxQueueSize;
+        }
+    }
+
+    /**
+     * 提交请求
+     *
+     * @param task
+     * @param lane LANE_API / LANE_TRANSFER
+     * @return 队列已满被拒绝返回false(已返回空结果)
+     */
+    public boolean enqueue(HttpTask task, int lane) {
+        Lane l = lanes[lane];
+        task.lane = lane;
+        task.sequence = sequence.getAndIncrement();
+        task.submitTime = System.nanoTime();
+        String shareKey = task.getShareKey();
+        if (shareKey != null) {
+            synchronized (inFlightMap) {
+                HttpTask leader = inFlightMap.get(shareKey);
+                if (leader != null && leader.followers != null) {// 相同请求执行中,等待其结果
+                    leader.followers.add(task);
+                    return true;
+                }
+            }
+        }
+        synchronized (l) {
+            if (l.maxQueueSize > 0 && l.executor.getQueue().size() >= l.maxQueueSize) {
+                l.rejectedCount.incrementAndGet();
+                task.reject();
+                return false;
+            }
+            if (shareKey != null) {
+                synchronized (inFlightMap) {
+                    task.shareKey = shareKey;
+                    task.followers = new ArrayList<HttpTask>();
+                    inFlightMap.put(shareKey, task);
+                }
+            }
+            l.executor.execute(task);
+        }
+        return true;
+    }
+
+    /**
+     * 共享请求结束,结果返回给等待的任务;被取消时等待的任务重新提交
+     *
+     * @param task
+     */
+    private void finishShare(HttpTask task) {
+        List<HttpTask> followers;
+        synchronized (inFlightMap) {
+            if (task.shareKey == null || task.followers == null) {
+                return;
+            }
+            if (inFlightMap.get(task.shareKey) == task) {
+                inFlightMap.remove(task.shareKey);
+            }
+            followers = task.followers;
+            task.followers = null;
+        }
+        for (HttpTask follower : followers) {
+            if (follower.isCancelled()) {
+                continue;
+            }
+            if (task.isCancelled()) {
+                enqueue(follower, follower.lane);
+            } else {
+                sharedCount.incrementAndGet();
+                follower.deliver(task.getResult());
+            }
+        }
+    }
+
+    /**
+     * 取消tag相同的请求,排队中的移出队列,执行中的中断,均不再返回结果
+     *
+     * @param tag HttpParam.setTag设置,未设置时为url名
+     * @return 取消数量
+     */
+    public int cancel(Object tag) {
+        int count = 0;
+        synchronized (inFlightMap) {// 先取消等待共享结果的任务,执行者被取消时只重新提交其余等待的任务
+            for (HttpTask leader : inFlightMap.values()) {
+                if (leader.followers == null) {
+                    continue;
+                }
+                for (Iterator<HttpTask> iterator = leader.followers.iterator(); iterator.hasNext(); ) {
+                    HttpTask follower = iterator.next();
+                    if ((tag == null || tag.equals(follower.getTag())) && follower.cancel()) {
+                        iterator.remove();
+                        lanes[follower.lane].cancelledCount.incrementAndGet();
+                        count++;
+                    }
+                }
+            }
+        }
+        for (Lane l : lanes) {
+            for (HttpTask task : l.getTaskList()) {
+                if (tag == null || tag.equals(task.getTag())) {
+                    l.executor.remove(task);
+                    if (task.cancel()) {
+                        l.cancelledCount.incrementAndGet();
+                        count++;
+                        finishShare(task);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 取消全部请求
+     *
+     * @return 取消数量
+     */
+    public int cancelAll() {
+        return cancel(null);
+    }
+
+    /**
+     * 排队中请求数
+     */
+    public int getQueueSize(int lane) {
+        return lanes[lane].executor.getQueue().size();
+    }
+
+    /**
+     * 执行中请求数
+     */
+    public int getRunningCount(int lane) {
+        return lanes[lane].runningSet.size();
+    }
+
+    /**
+     * 平均排队时间(毫秒)
+     */
+    public double getAverageQueueMillis(int lane) {
+        Lane l = lanes[lane];
+        long count = l.executeCount.get();
+        return count > 0 ? l.queueNanos.get() / 1000000d / count : 0;
+    }
+
+    /**
+     * 最长排队时间(毫秒)
+     */
+    public double getMaxQueueMillis(int lane) {
+        return lanes[lane].maxQueueNanos.get() / 1000000d;
+    }
+
+    /**
+     * 平均执行时间(毫秒)
+     */
+    public double getAverageExecuteMillis(int lane) {
+        Lane l = lanes[lane];
+        long count = l.executeCount.get();
+        return count > 0 ? l.executeNanos.get() / 1000000d / count : 0;
+    }
+
+    /**
+     * 最长执行时间(毫秒)
+     */
+    public double getMaxExecuteMillis(int lane) {
+        return lanes[lane].maxExecuteNanos.get() / 1000000d;
+    }
+
+    /**
+     * 已执行请求数
+     */
+    public long getExecuteCount(int lane) {
+        return lanes[lane].executeCount.get();
+    }
+
+    /**
+     * 队列已满被拒绝的请求数
+     */
+    public long getRejectedCount(int lane) {
+        return lanes[lane].rejectedCount.get();
+    }
+
+    /**
+     * 被取消的请求数
+     */
+    public long getCancelledCount(int lane) {
+        return lanes[lane].cancelledCount.get();
+    }
+
+    /**
+     * 共享其他请求结果的请求数
+     */
+    public long getSharedCount() {
+        return sharedCount.get();
+    }
+
+    /**
+     * 重置统计
+     */
+    public void resetStats() {
+        sharedCount.set(0);
+        for (Lane l : lanes) {
+            l.executeCount.set(0);
+            l.queueNanos.set(0);
+            l.maxQueueNanos.set(0);
+            l.executeNanos.set(0);
+            l.maxExecuteNanos.set(0);
+            l.rejectedCount.set(0);
+            l.cancelledCount.set(0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(TagName).append('{');
+        for (int i = 0; i < lanes.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(lanes[i].name)
+                    .append("{queue=").append(getQueueSize(i))
+                    .append(", running=").append(getRunningCount(i))
+                    .append(", execute=").append(getExecuteCount(i))
+                    .append(", avgQueueMillis=").append(getAverageQueueMillis(i))
+                    .append(", maxQueueMillis=").append(getMaxQueueMillis(i))
+                    .append(", avgExecuteMillis=").append(getAverageExecuteMillis(i))
+                    .append(", maxExecuteMillis=").append(getMaxExecuteMillis(i))
+                    .append(", rejected=").append(getRejectedCount(i))
+                    .append(", cancelled=").append(getCancelledCount(i))
+                    .append('}');
+        }
+        return sb.append(", shared=").append(getSharedCount()).append('}').toString();
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while ((current = max.get()) < value && !max.compareAndSet(current, value)) {
+        }
+    }
+
+    /**
+     * 通道,固定线程数,排队按优先级
+     */
+    private class Lane {
+        final String name;
+        final ThreadPoolExecutor executor;
+        final Set<HttpTask> runningSet = Collections.synchronizedSet(new HashSet<HttpTask>());
+        volatile int maxQueueSize;
+        //统计
+        final AtomicLong executeCount = new AtomicLong();
+        final AtomicLong queueNanos = new AtomicLong();
+        final AtomicLong maxQueueNanos = new AtomicLong();
+        final AtomicLong executeNanos = new AtomicLong();
+        final AtomicLong maxExecuteNanos = new AtomicLong();
+        final AtomicLong rejectedCount = new AtomicLong();
+        final AtomicLong cancelledCount = new AtomicLong();
+
+        Lane(final String name, int maxThreads, int maxQueueSize) {
+            this.name = name;
+            this.maxQueueSize = maxQueueSize;
+            this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, TagName + "-" + name + "-" + count.incrementAndGet());
+                }
+            }) {
+                @Override
+                protected void beforeExecute(Thread t, Runnable r) {
+                    HttpTask task = (HttpTask) r;
+                    task.startTime = System.nanoTime();
+                    long queue = task.startTime - task.submitTime;
+                    queueNanos.addAndGet(queue);
+                    updateMax(maxQueueNanos, queue);
+                    runningSet.add(task);
+                }
+
+                @Override
+                protected void afterExecute(Runnable r, Throwable t) {
+                    HttpTask task = (HttpTask) r;
+                    runningSet.remove(task);
+                    long execute = System.nanoTime() - task.startTime;
+                    executeNanos.addAndGet(execute);
+                    updateMax(maxExecuteNanos, execute);
+                    executeCount.incrementAndGet();
+                    finishShare(task);
+                }
+            };
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        /**
+         * 排队中和执行中的请求
+         */
+        List<HttpTask> getTaskList() {
+            List<HttpTask> list = new ArrayList<HttpTask>();
+            for (Runnable r : executor.getQueue().toArray(new Runnable[0])) {
+                list.add((HttpTask) r);
+            }
+            synchronized (runningSet) {
+                list.addAll(runningSet);
+            }
+            return list;
+        }
+    }
+}
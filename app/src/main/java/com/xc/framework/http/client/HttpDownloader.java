@@ -0,0 +1,688 @@
+package com.xc.framework.http.client;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.xc.framework.http.HttpParam;
+import com.xc.framework.http.interfaces.DownloadCallBack;
+import com.xc.framework.util.XCFileUtil;
+import com.xc.framework.util.XCIOUtil;
+import com.xc.framework.util.XCStringUtil;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description 文件下载器,先写入临时文件(.tmp)并记录进度(.cfg),中断后用Range请求断点续传;
+ *              服务器支持Range时可按ConnectionConfig.downloadSegmentCount分段并行下载,各段按位置写入同一文件;
+ *              下载完成后按HttpParam.setChecksum校验,通过后重命名为目标文件
+ */
+public class HttpDownloader {
+	public static final String TagName = "HttpDownloader";
+	private static final long MIN_SEGMENT_SIZE = 1024 * 1024;// 每段最小字节数
+	private static final int BUFFER_SIZE = 64 * 1024;// 读写缓冲
+	private static final long PROGRESS_INTERVAL = 200;// 进度回调最小间隔(毫秒)
+	private static final long STATE_INTERVAL = 1000;// 进度保存间隔(毫秒)
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final String STATE_SUFFIX = ".cfg";
+	private static final int RESULT_OK = 0;
+	private static final int RESULT_FAIL = 1;
+	private static final int RESULT_RESTART = 2;// 服务器文件已变化或校验失败,需重新下载
+	private static ExecutorService segmentExecutor;
+
+	/**
+	 * 下载文件,结果通过downloadCallBack返回(在当前线程回调)
+	 *
+	 * @param context
+	 * @param param
+	 * @param config
+	 * @param downloadCallBack
+	 * @return 下载完成返回""; 服务器返回错误时为状态码, 返回数据(text/html,json)而非文件时为数据, 不写入文件;
+	 *         其它失败或被中断返回""(已下载部分保留, 下次续传)
+	 */
+	public static String download(Context context, HttpParam param, ConnectionConfig config, DownloadCallBack downloadCallBack) {
+		if (config == null) {
+			config = new ConnectionConfig();
+		}
+		String savePath = param.getSaveFilePath();
+		if (XCStringUtil.isEmpty(savePath)) {
+			savePath = XCFileUtil.getCacheDir(context) + File.separator + XCFileUtil.getDownloadFileName(param.getURL());
+		}
+		File targetFile = new File(savePath);
+		File dir = targetFile.getParentFile();
+		if (dir != null && !dir.exists() && !dir.mkdirs()) {
+			Log.e(TagName, "创建目录失败:" + dir);
+			return "";
+		}
+		for (int i = 0; i < 2; i++) {// 文件变化或校验失败时从头重新下载一次
+			Download download = new Download(param, config, targetFile, downloadCallBack);
+			int result = download.start();
+			if (result == RESULT_OK) {
+				return "";
+			} else if (result != RESULT_RESTART) {
+				return download.failResponse != null ? download.failResponse : "";
+			}
+			download.deleteTemp();
+		}
+		return "";
+	}
+
+	/**
+	 * 保存已收到的文件响应到缓存目录(httpGet未指定保存路径且返回文件时),先写入临时文件,完成后替换目标文件
+	 *
+	 * @param context
+	 * @param entity
+	 * @param url
+	 * @return 保存的文件,失败返回null
+	 */
+	public static File saveEntity(Context context, HttpEntity entity, String url) {
+		File targetFile = new File(XCFileUtil.getCacheDir(context), XCFileUtil.getDownloadFileName(url));
+		File tempFile = null;
+		InputStream is = null;
+		FileOutputStream fos = null;
+		try {
+			tempFile = File.createTempFile(targetFile.getName(), TEMP_SUFFIX, targetFile.getParentFile());// 不与断点续传的临时文件冲突
+			is = entity.getContent();
+			fos = new FileOutputStream(tempFile);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int len;
+			while ((len = is.read(buffer)) != -1) {
+				fos.write(buffer, 0, len);
+			}
+			fos.getFD().sync();
+			XCIOUtil.close(fos);
+			fos = null;
+			if ((targetFile.exists() && !targetFile.delete()) || !tempFile.renameTo(targetFile)) {
+				throw new IOException("rename failed:" + targetFile);
+			}
+			return targetFile;
+		} catch (IOException e) {
+			Log.e(TagName, "保存文件失败:" + url + "," + e);
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+			return null;
+		} finally {
+			XCIOUtil.close(is);
+			XCIOUtil.close(fos);
+		}
+	}
+
+	/**
+	 * 是否为数据(text/html,json)而非文件,与HttpConnection.httpGet的判断一致
+	 *
+	 * @param entity
+	 * @return
+	 */
+	public static boolean isDataEntity(HttpEntity entity) {
+		String value = entity.getContentType() != null ? entity.getContentType().getValue() : "";
+		return value.startsWith("text/html") || value.contains("application/json");
+	}
+
+	/**
+	 * 删除未完成的临时文件和进度
+	 *
+	 * @param savePath
+	 */
+	public static void deleteTemp(String savePath) {
+		new File(savePath + TEMP_SUFFIX).delete();
+		new File(savePath + TEMP_SUFFIX + STATE_SUFFIX).delete();
+	}
+
+	private static synchronized ExecutorService getSegmentExecutor() {
+		if (segmentExecutor == null) {
+			segmentExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					return new Thread(runnable, TagName + "-" + count.incrementAndGet());
+				}
+			});
+		}
+		return segmentExecutor;
+	}
+
+	/**
+	 * 单次下载
+	 */
+	private static class Download {
+		final HttpParam param;
+		final ConnectionConfig config;
+		final String url;
+		final String host;
+		final File targetFile;
+		final File tempFile;
+		final File stateFile;
+		final DownloadCallBack downloadCallBack;
+		final List<Segment> segmentList = new ArrayList<Segment>();
+		final AtomicLong current = new AtomicLong();// 已下载字节数
+		long total = -1;// 文件大小,未知为-1
+		String validator;// ETag或Last-Modified,续传时校验文件未变化
+		boolean isRangeSupported;
+		FileChannel channel;
+		volatile boolean isCancel;
+		volatile boolean isChanged;
+		volatile IOException error;
+		volatile String failResponse;// 服务器返回的状态码或数据
+
+		Download(HttpParam param, ConnectionConfig config, File targetFile, DownloadCallBack downloadCallBack) {
+			this.param = param;
+			this.config = config;
+			this.url = param.getURL();
+			this.host = HostLimiter.getHost(url);
+			this.targetFile = targetFile;
+			this.tempFile = new File(targetFile.getPath() + TEMP_SUFFIX);
+			this.stateFile = new File(tempFile.getPath() + STATE_SUFFIX);
+			this.downloadCallBack = downloadCallBack;
+		}
+
+		int start() {
+			RandomAccessFile raf = null;
+			try {
+				if (!loadState()) {
+					deleteTemp();
+					if (!probe()) {
+						return isChanged ? RESULT_RESTART : RESULT_FAIL;
+					}
+				}
+				raf = new RandomAccessFile(tempFile, "rw");
+				channel = raf.getChannel();
+				saveState();
+				//
+				List<Segment> pendingList = new ArrayList<Segment>();
+				for (Segment segment : segmentList) {
+					if (!segment.isDone()) {
+						pendingList.add(segment);
+					} else {
+						segment.closeResponse();
+					}
+				}
+				CountDownLatch latch = new CountDownLatch(pendingList.size());
+				for (Segment segment : pendingList) {
+					segment.latch = latch;
+					getSegmentExecutor().execute(segment);
+				}
+				long lastProgress = 0;
+				long lastSave = System.currentTimeMillis();
+				try {
+					while (!latch.await(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS)) {
+						long now = System.currentTimeMillis();
+						if (now - lastProgress >= PROGRESS_INTERVAL) {
+							lastProgress = now;
+							onLoading();
+						}
+						if (now - lastSave >= STATE_INTERVAL) {
+							lastSave = now;
+							saveState();
+						}
+					}
+				} catch (InterruptedException e) {// 被取消
+					cancel();
+					awaitUninterruptibly(latch);
+					Thread.currentThread().interrupt();
+				}
+				saveState();
+				if (isChanged) {
+					return RESULT_RESTART;
+				}
+				if (isCancel || error != null) {
+					if (error != null) {
+						Log.e(TagName, "下载失败:" + url + "," + error);
+					}
+					if (!isRangeSupported) {// 无法续传
+						deleteTemp();
+					}
+					return RESULT_FAIL;
+				}
+				onLoading();
+				XCIOUtil.close(raf);
+				raf = null;
+				if (!verifyChecksum()) {
+					Log.e(TagName, "校验失败:" + url);
+					return RESULT_RESTART;
+				}
+				if (targetFile.exists()) {
+					targetFile.delete();
+				}
+				if (!tempFile.renameTo(targetFile)) {
+					Log.e(TagName, "重命名失败:" + targetFile);
+					return RESULT_FAIL;
+				}
+				stateFile.delete();
+				if (downloadCallBack != null) {
+					downloadCallBack.onResult(targetFile);
+				}
+				return RESULT_OK;
+			} catch (IOException e) {
+				Log.e(TagName, "下载失败:" + url + "," + e);
+				return RESULT_FAIL;
+			} finally {
+				for (Segment segment : segmentList) {
+					segment.closeResponse();
+				}
+				XCIOUtil.close(raf);
+			}
+		}
+
+		/**
+		 * 首次请求,获取文件大小和校验值并划分下载段,返回的数据流作为第一段继续使用
+		 *
+		 * @return
+		 */
+		boolean probe() {
+			if (!HostLimiter.getInstance().acquire(host, config.getMaxRequestsPerHost())) {
+				return false;
+			}
+			boolean isRelease = true;
+			HttpGet request = newRequest(0, -1);
+			HttpResponse response = null;
+			try {
+				response = HttpClientManager.getInstance().execute(request, config, true);
+				int code = response.getStatusLine().getStatusCode();
+				HttpEntity entity = response.getEntity();
+				if (entity == null || code != HttpStatus.SC_OK && code != HttpStatus.SC_PARTIAL_CONTENT) {
+					Log.e(TagName, "下载失败:" + url + "," + code);
+					failResponse = "" + code;
+					return false;
+				}
+				if (isDataEntity(entity)) {// 错误页或json错误信息,不写入文件
+					Log.e(TagName, "下载失败:" + url + ",返回数据");
+					failResponse = EntityUtils.toString(entity, config.getEncode());
+					return false;
+				}
+				Header etag = response.getFirstHeader("ETag");
+				Header lastModified = response.getFirstHeader("Last-Modified");
+				validator = etag != null ? etag.getValue() : (lastModified != null ? lastModified.getValue() : null);
+				isRangeSupported = code == HttpStatus.SC_PARTIAL_CONTENT;
+				total = isRangeSupported ? getContentRangeTotal(response) : entity.getContentLength();
+				if (total < 0) {
+					isRangeSupported = false;
+				}
+				//
+				int count = 1;
+				if (isRangeSupported) {
+					count = (int) Math.max(1, Math.min(config.getDownloadSegmentCount(), total / MIN_SEGMENT_SIZE));
+				}
+				long size = total > 0 ? total / count : 0;
+				for (int i = 0; i < count; i++) {
+					long start = i * size;
+					long end = i == count - 1 ? total - 1 : start + size - 1;
+					segmentList.add(new Segment(this, start, total > 0 ? end : -1, start));
+				}
+				Segment first = segmentList.get(0);
+				first.request = request;
+				first.response = response;
+				first.isPartialResponse = count > 1;// 只读第一段,结束时需断开连接
+				isRelease = false;
+				return true;
+			} catch (IOException e) {
+				Log.e(TagName, "下载失败:" + url + "," + e);
+				return false;
+			} finally {
+				if (isRelease) {
+					HttpClientManager.getInstance().release(request, response, true);
+					HostLimiter.getInstance().release(host);
+				}
+			}
+		}
+
+		HttpGet newRequest(long start, long end) {
+			HttpGet request = new HttpGet(url);
+			HttpClientManager.getInstance().configRequest(request, config);
+			request.addHeader("Accept-Encoding", "identity");// 按字节位置续传,不压缩
+			request.addHeader("Range", "bytes=" + start + "-" + (end >= 0 ? String.valueOf(end) : ""));
+			if (start > 0 && validator != null) {
+				request.addHeader("If-Range", validator);
+			}
+			return request;
+		}
+
+		/**
+		 * 取消全部段
+		 */
+		void cancel() {
+			isCancel = true;
+			for (Segment segment : segmentList) {
+				segment.abort();
+			}
+		}
+
+		void onLoading() {
+			if (downloadCallBack != null) {
+				downloadCallBack.onLoading(total, current.get());
+			}
+		}
+
+		/**
+		 * 读取上次进度
+		 *
+		 * @return 是否可续传
+		 */
+		boolean loadState() {
+			if (!tempFile.exists() || !stateFile.exists()) {
+				return false;
+			}
+			BufferedReader reader = null;
+			try {
+				reader = new BufferedReader(new InputStreamReader(new FileInputStream(stateFile), "UTF-8"));
+				total = Long.parseLong(reader.readLine());
+				validator = reader.readLine();
+				if (XCStringUtil.isEmpty(validator)) {
+					validator = null;
+				}
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] values = line.split(",");
+					if (values.length == 3) {
+						Segment segment = new Segment(this, Long.parseLong(values[0]), Long.parseLong(values[1]), Long.parseLong(values[2]));
+						segmentList.add(segment);
+						current.addAndGet(segment.position - segment.start);
+					}
+				}
+				isRangeSupported = true;
+				return total > 0 && !segmentList.isEmpty();
+			} catch (Exception e) {
+				segmentList.clear();
+				current.set(0);
+				return false;
+			} finally {
+				XCIOUtil.close(reader);
+			}
+		}
+
+		/**
+		 * 保存进度,先记下各段位置再把数据force到磁盘,保证记录的位置之前的数据已写入
+		 */
+		synchronized void saveState() {
+			if (!isRangeSupported) {
+				return;
+			}
+			Writer writer = null;
+			try {
+				StringBuilder sb = new StringBuilder();
+				sb.append(total).append('\n').append(validator != null ? validator : "").append('\n');
+				for (Segment segment : segmentList) {
+					sb.append(segment.start).append(',').append(segment.end).append(',').append(segment.position).append('\n');
+				}
+				if (channel != null && channel.isOpen()) {
+					channel.force(false);
+				}
+				writer = new OutputStreamWriter(new FileOutputStream(stateFile), "UTF-8");
+				writer.write(sb.toString());
+				writer.flush();
+			} catch (IOException e) {
+				Log.e(TagName, "保存进度失败:" + e);
+			} finally {
+				XCIOUtil.close(writer);
+			}
+		}
+
+		void deleteTemp() {
+			tempFile.delete();
+			stateFile.delete();
+		}
+
+		/**
+		 * 校验文件
+		 *
+		 * @return 未设置校验值返回true
+		 */
+		boolean verifyChecksum() {
+			if (XCStringUtil.isEmpty(param.getChecksum())) {
+				return true;
+			}
+			FileInputStream fis = null;
+			try {
+				MessageDigest digest = MessageDigest.getInstance(param.getChecksumAlgorithm());
+				fis = new FileInputStream(tempFile);
+				FileChannel fileChannel = fis.getChannel();
+				ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				while (fileChannel.read(buffer) != -1) {
+					buffer.flip();
+					digest.update(buffer);
+					buffer.clear();
+				}
+				StringBuilder sb = new StringBuilder();
+				for (byte b : digest.digest()) {
+					sb.append(String.format(Locale.US, "%02x", b & 0xff));
+				}
+				return sb.toString().equalsIgnoreCase(param.getChecksum().trim());
+			} catch (Exception e) {
+				Log.e(TagName, "校验失败:" + e);
+				return false;
+			} finally {
+				XCIOUtil.close(fis);
+			}
+		}
+
+		/**
+		 * Content-Range: bytes 0-99/1000
+		 *
+		 * @param response
+		 * @return 未知返回-1
+		 */
+		static long getContentRangeTotal(HttpResponse response) {
+			Header header = response.getFirstHeader("Content-Range");
+			if (header != null) {
+				String value = header.getValue();
+				int index = value.lastIndexOf('/');
+				if (index != -1) {
+					try {
+						return Long.parseLong(value.substring(index + 1).trim());
+					} catch (NumberFormatException e) {
+					}
+				}
+			}
+			return -1;
+		}
+
+		static void awaitUninterruptibly(CountDownLatch latch) {
+			boolean isInterrupted = false;
+			while (true) {
+				try {
+					latch.await();
+					break;
+				} catch (InterruptedException e) {
+					isInterrupted = true;
+				}
+			}
+			if (isInterrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * 下载段[start, end],position为下一个写入位置
+	 */
+	private static class Segment implements Runnable {
+		final Download download;
+		final long start;
+		final long end;// 未知大小为-1,读到结束
+		volatile long position;
+		volatile HttpGet request;
+		HttpResponse response;// 首次请求已打开的响应
+		boolean isPartialResponse;// 响应内容超出本段
+		CountDownLatch latch;
+
+		Segment(Download download, long start, long end, long position) {
+			this.download = download;
+			this.start = start;
+			this.end = end;
+			this.position = position;
+		}
+
+		boolean isDone() {
+			return end >= 0 && position > end;
+		}
+
+		@Override
+		public void run() {
+			int retries = 0;
+			try {
+				while (!isDone() && !download.isCancel && !download.isChanged && download.error == null) {
+					try {
+						if (readSegment()) {
+							return;
+						}
+					} catch (IOException e) {
+						if (download.isCancel) {
+							return;
+						}
+						RetryPolicy policy = download.config.getRetryPolicy();
+						if (policy == null || ++retries > policy.getMaxRetries() || e instanceof HostHealth.CircuitOpenException || !download.isRangeSupported && position > start) {// 不支持Range时无法续传
+							download.error = e;
+							download.cancel();
+							return;
+						}
+						long delay = policy.getDelay(retries);
+						Log.e(TagName, "连接断开," + delay + "ms后续传:" + e);
+						try {
+							Thread.sleep(delay);
+						} catch (InterruptedException ie) {
+							return;
+						}
+					}
+				}
+			} finally {
+				latch.countDown();
+			}
+		}
+
+		/**
+		 * 读取本段
+		 *
+		 * @return 是否已结束(读完或文件已变化)
+		 * @throws IOException
+		 */
+		boolean readSegment() throws IOException {
+			HttpResponse hr = response;
+			boolean isPartial = isPartialResponse;
+			response = null;
+			isPartialResponse = false;
+			boolean isAcquired = hr != null;// 首次请求已获取许可
+			if (hr == null) {
+				if (!HostLimiter.getInstance().acquire(download.host, download.config.getMaxRequestsPerHost())) {
+					throw new IOException("interrupted");
+				}
+				isAcquired = true;
+				if (download.isCancel) {
+					HostLimiter.getInstance().release(download.host);
+					throw new IOException("cancelled");
+				}
+				request = download.newRequest(position, end);
+			}
+			boolean isAbort = true;
+			try {
+				if (hr == null) {
+					hr = HttpClientManager.getInstance().execute(request, download.config, true);
+					int code = hr.getStatusLine().getStatusCode();
+					if (code == HttpStatus.SC_OK && download.isRangeSupported) {// If-Range不匹配,文件已变化
+						download.isChanged = true;
+						download.cancel();
+						return true;
+					} else if (code == HttpStatus.SC_PARTIAL_CONTENT && download.total > 0 && Download.getContentRangeTotal(hr) != download.total) {
+						download.isChanged = true;
+						download.cancel();
+						return true;
+					} else if (code != HttpStatus.SC_OK && code != HttpStatus.SC_PARTIAL_CONTENT) {
+						download.failResponse = "" + code;
+						throw new IOException("status " + code);
+					} else if (hr.getEntity() != null && isDataEntity(hr.getEntity())) {// 续传时返回错误页
+						download.failResponse = "" + code;
+						throw new IOException("unexpected content type " + hr.getEntity().getContentType());
+					}
+				}
+				HttpEntity entity = hr.getEntity();
+				if (entity == null) {
+					throw new IOException("empty entity");
+				}
+				InputStream is = entity.getContent();
+				byte[] buf = new byte[BUFFER_SIZE];
+				while (end < 0 || position <= end) {
+					if (download.isCancel) {
+						return true;
+					}
+					int max = end < 0 ? buf.length : (int) Math.min(buf.length, end - position + 1);
+					int len = is.read(buf, 0, max);
+					if (len == -1) {
+						if (end >= 0) {
+							throw new IOException("unexpected end of stream at " + position);
+						}
+						break;
+					}
+					ByteBuffer buffer = ByteBuffer.wrap(buf, 0, len);
+					long offset = position;
+					while (buffer.hasRemaining()) {
+						offset += download.channel.write(buffer, offset);
+					}
+					position += len;
+					download.current.addAndGet(len);
+				}
+				isAbort = isPartial;
+				return true;
+			} finally {
+				HttpClientManager.getInstance().release(request, hr, isAbort);
+				request = null;
+				if (isAcquired) {
+					HostLimiter.getInstance().release(download.host);
+				}
+			}
+		}
+
+		/**
+		 * 中断当前请求
+		 */
+		void abort() {
+			HttpGet current = request;
+			if (current != null) {
+				current.abort();
+			}
+		}
+
+		/**
+		 * 关闭未使用的首次响应
+		 */
+		void closeResponse() {
+			if (response != null) {
+				HttpClientManager.getInstance().release(request, response, true);
+				HostLimiter.getInstance().release(download.host);
+				response = null;
+				request = null;
+			}
+		}
+	}
+}
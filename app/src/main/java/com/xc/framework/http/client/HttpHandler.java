@@ -72,7 +72,10 @@ public class HttpHandler {
 	 * 下载文件
 	 *
 	 * @param savePath
+	 * @deprecated 不检查状态码和Content-Type,不支持断点续传;下载使用XCHttpUtil.downloadFile或HttpDownloader.download,
+	 *             已收到的文件响应使用HttpDownloader.saveEntity
 	 */
+	@Deprecated
 	public static void downloadFile(Context context, HttpEntity entity, String savePath, String downloadUrl, DownloadCallBack downloadCallBack) {
 		File targetFile = null;
 		BufferedInputStream bis = null;
@@ -0,0 +1,223 @@
+package com.xc.framework.http.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.xc.framework.http.interfaces.HttpEventListener;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description 请求耗时统计,按主机汇总总耗时和首字节耗时直方图,可估算分位数;
+ * 使用:HttpClientManager.getInstance().addEventListener(collector)
+ */
+public class HttpMetricsCollector implements HttpEventListener {
+	private static final double[] BOUNDS = { 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000 };// 直方图桶上限(毫秒)
+	private final Map<String, HostStats> statsMap = new HashMap<String, HostStats>();
+
+	@Override
+	public void onCallEnd(HttpCallMetrics metrics) {
+		synchronized (statsMap) {
+			HostStats stats = statsMap.get(metrics.getHost());
+			if (stats == null) {
+				stats = new HostStats();
+				statsMap.put(metrics.getHost(), stats);
+			}
+			stats.count++;
+			if (metrics.getError() != null || metrics.getStatusCode() >= 500) {
+				stats.errorCount++;
+			}
+			if (metrics.isConnectionReused()) {
+				stats.reusedCount++;
+			}
+			stats.bytesSent += metrics.getBytesSent();
+			stats.bytesReceived += metrics.getBytesReceived();
+			stats.total.add(metrics.getTotalMillis());
+			if (metrics.getTtfbMillis() >= 0) {
+				stats.ttfb.add(metrics.getTtfbMillis());
+			}
+		}
+	}
+
+	/**
+	 * 已统计的主机
+	 *
+	 * @return
+	 */
+	public List<String> getHosts() {
+		synchronized (statsMap) {
+			return new ArrayList<String>(statsMap.keySet());
+		}
+	}
+
+	/**
+	 * 请求数
+	 *
+	 * @param host
+	 * @return
+	 */
+	public long getCount(String host) {
+		synchronized (statsMap) {
+			HostStats stats = statsMap.get(host);
+			return stats != null ? stats.count : 0;
+		}
+	}
+
+	/**
+	 * 失败数(网络异常或5xx)
+	 *
+	 * @param host
+	 * @return
+	 */
+	public long getErrorCount(String host) {
+		synchronized (statsMap) {
+			HostStats stats = statsMap.get(host);
+			return stats != null ? stats.errorCount : 0;
+		}
+	}
+
+	/**
+	 * 总耗时分位数估算(所在桶上限,超出最大桶时为最大值)
+	 *
+	 * @param host
+	 * @param percentile
+	 *            0-100
+	 * @return 毫秒,无数据为-1
+	 */
+	public double getPercentile(String host, double percentile) {
+		synchronized (statsMap) {
+			HostStats stats = statsMap.get(host);
+			return stats != null ? stats.total.getPercentile(percentile) : -1;
+		}
+	}
+
+	/**
+	 * 首字节耗时分位数估算
+	 *
+	 * @param host
+	 * @param percentile
+	 *            0-100
+	 * @return 毫秒,无数据为-1
+	 */
+	public double getTtfbPercentile(String host, double percentile) {
+		synchronized (statsMap) {
+			HostStats stats = statsMap.get(host);
+			return stats != null ? stats.ttfb.getPercentile(percentile) : -1;
+		}
+	}
+
+	/**
+	 * 总耗时直方图
+	 *
+	 * @param host
+	 * @return 各桶请求数,与getBounds()对应,最后一个为超出最大桶的请求数
+	 */
+	public long[] getHistogram(String host) {
+		synchronized (statsMap) {
+			HostStats stats = statsMap.get(host);
+			return stats != null ? stats.total.counts.clone() : new long[BOUNDS.length + 1];
+		}
+	}
+
+	/**
+	 * 直方图桶上限(毫秒)
+	 *
+	 * @return
+	 */
+	public static double[] getBounds() {
+		return BOUNDS.clone();
+	}
+
+	/**
+	 * 重置统计
+	 */
+	public void reset() {
+		synchronized (statsMap) {
+			statsMap.clear();
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("HttpMetricsCollector{");
+		synchronized (statsMap) {
+			boolean isFirst = true;
+			for (Map.Entry<String, HostStats> entry : statsMap.entrySet()) {
+				HostStats stats = entry.getValue();
+				if (!isFirst) {
+					sb.append(", ");
+				}
+				isFirst = false;
+				sb.append(entry.getKey())
+						.append("{count=").append(stats.count)
+						.append(", error=").append(stats.errorCount)
+						.append(", reused=").append(stats.reusedCount)
+						.append(", avg=").append(stats.total.getAverage())
+						.append(", p50=").append(stats.total.getPercentile(50))
+						.append(", p90=").append(stats.total.getPercentile(90))
+						.append(", p99=").append(stats.total.getPercentile(99))
+						.append(", ttfbP50=").append(stats.ttfb.getPercentile(50))
+						.append(", bytesSent=").append(stats.bytesSent)
+						.append(", bytesReceived=").append(stats.bytesReceived)
+						.append('}');
+			}
+		}
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * 单个主机统计
+	 */
+	private static class HostStats {
+		long count;
+		long errorCount;
+		long reusedCount;
+		long bytesSent;
+		long bytesReceived;
+		final Histogram total = new Histogram();
+		final Histogram ttfb = new Histogram();
+	}
+
+	/**
+	 * 固定桶直方图
+	 */
+	private static class Histogram {
+		final long[] counts = new long[BOUNDS.length + 1];
+		long count;
+		double sum;
+		double max;
+
+		void add(double millis) {
+			int i = 0;
+			while (i < BOUNDS.length && millis > BOUNDS[i]) {
+				i++;
+			}
+			counts[i]++;
+			count++;
+			sum += millis;
+			max = Math.max(max, millis);
+		}
+
+		double getAverage() {
+			return count > 0 ? sum / count : -1;
+		}
+
+		double getPercentile(double percentile) {
+			if (count == 0) {
+				return -1;
+			}
+			long rank = (long) Math.ceil(count * Math.max(0, Math.min(100, percentile)) / 100d);
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= Math.max(rank, 1)) {
+					return i < BOUNDS.length ? Math.min(BOUNDS[i], max) : max;
+				}
+			}
+			return max;
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package com.xc.framework.http.client;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Message;
+import android.util.Log;
+
+import com.xc.framework.http.HttpConnection;
+import com.xc.framework.http.HttpParam;
+import com.xc.framework.http.interfaces.DownloadCallBack;
+import com.xc.framework.http.interfaces.ResponseParser;
+import com.xc.framework.http.interfaces.UploadCallBack;
+import com.xc.framework.util.XCNetUtil;
+import com.xc.framework.util.XCStringUtil;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.util.List;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description http请求任务,由HttpDispatcher排队执行,数据返回通过handler传递;被取消后不再返回结果
+ */
+public class HttpTask implements Runnable, Comparable<HttpTask> {
+    public static final String TagName = HttpThread.TagName;
+    private static final int STATE_WAIT = 0;// 等待执行
+    private static final int STATE_RUN = 1;// 执行中
+    private static final int STATE_DONE = 2;// 已结束
+    private static final int STATE_CANCEL = 3;// 已取消
+    static final ThreadLocal<HttpTask> current = new ThreadLocal<HttpTask>();// 执行线程当前的任务
+    //
+    private Context context;// 上下文
+    private HttpParam params;// 参数集,包含请求URL
+    private Handler handler;// 消息传递者
+    private int requestCode;// 传递标识
+    private ConnectionConfig config;// 连接超时时间参数
+    private boolean isShowLog;// 是否打印log日志
+    private UploadCallBack uploadCallBack;// 上传回调
+    private DownloadCallBack downloadCallBack;// 下载回调
+    private ResponseParser<?> parser;// 响应流解析,不为null时结果为解析对象
+    //
+    private int state = STATE_WAIT;
+    private Thread runner;// 执行线程
+    private HttpRequestBase request;// 执行中的请求,取消时中断连接
+    long sequence;// 入队序号,同优先级先进先出
+    long submitTime;// 入队时间(纳秒)
+    long startTime;// 开始执行时间(纳秒)
+    int lane;// 所在通道
+    String shareKey;// 共享请求标识,不为null时为共享请求的执行者
+    List<HttpTask> followers;// 共享本次请求结果的任务,由HttpDispatcher加锁维护
+    private volatile Object result;// 请求结果
+
+    public HttpTask(Context context, HttpParam params, Handler handler, int requestCode, ConnectionConfig config, UploadCallBack uploadCallBack, DownloadCallBack downloadCallBack, boolean isShowLog) {
+        this.context = context;
+        this.params = params;
+        this.handler = handler;
+        this.requestCode = requestCode;
+        this.config = config != null ? config : new ConnectionConfig();
+        this.uploadCallBack = uploadCallBack;
+        this.downloadCallBack = downloadCallBack;
+        this.isShowLog = isShowLog;
+    }
+
+    /**
+     * 流式解析请求,响应不转为字符串,在执行线程中由parser直接解析
+     *
+     * @param parser
+     */
+    public HttpTask(Context context, HttpParam params, Handler handler, int requestCode, ConnectionConfig config, ResponseParser<?> parser, boolean isShowLog) {
+        this(context, params, handler, requestCode, config, null, null, isShowLog);
+        this.parser = parser;
+    }
+
+    /**
+     * run
+     */
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (state != STATE_WAIT) {
+                return;
+            }
+            state = STATE_RUN;
+            runner = Thread.currentThread();
+        }
+        current.set(this);
+        try {
+            Object requestResult = parser != null ? null : "";
+            // 发送结果
+            Message msg = new Message();
+            msg.what = requestCode;
+            if (isNetworkUse()) {
+                requestResult = requestStart();
+                result = requestResult;
+                msg.obj = requestResult;
+                if (finish()) {
+                    handler.sendMessage(msg);
+                }
+            } else {
+                if (isShowLog) {
+                    Log.i(TagName, "----------网络不可连接----------");
+                }
+                msg.obj = requestResult;
+                result = requestResult;
+                if (finish()) {// 无网络时立即返回,不再等待连接超时时间
+                    handler.sendMessage(msg);
+                }
+            }
+            if (isShowLog) {
+                Log.i(TagName, "----------请求访问结束----------");
+            }
+        } finally {
+            current.remove();
+            synchronized (this) {
+                runner = null;
+                request = null;
+                if (state == STATE_RUN) {
+                    state = STATE_DONE;
+                }
+            }
+            Thread.interrupted();// 清除取消时的中断标志,线程池线程继续复用
+        }
+    }
+
+    /**
+     * 网络是否可用
+     *
+     * @return
+     */
+    boolean isNetworkUse() {
+        return XCNetUtil.isNetworkUse(context);
+    }
+
+    /**
+     * 开始请求
+     *
+     * @return
+     */
+    Object requestStart() {
+        if (isShowLog) {
+            Log.i(TagName, "----------请求访问开始----------");
+            params.outURL(TagName);
+        }
+        //
+        if (parser != null) {// 流式解析
+            return HttpConnection.httpParse(params, config, parser);
+        }
+        if (params.isPost()) {// 有post参或有文件上传,有json参上传
+            return HttpConnection.httpPost(params, config, uploadCallBack);
+        } else {
+            return HttpConnection.httpGet(context, params, config, downloadCallBack);
+        }
+    }
+
+    /**
+     * 执行结束,与cancel()同一把锁,结束后不可再取消
+     *
+     * @return 是否可返回结果(已取消返回false)
+     */
+    private synchronized boolean finish() {
+        if (state != STATE_RUN) {
+            return false;
+        }
+        state = STATE_DONE;
+        return true;
+    }
+
+    /**
+     * 记录执行中的请求,由HttpClientManager在执行线程中调用
+     *
+     * @param request
+     * @return 是否可执行(已取消返回false)
+     */
+    synchronized boolean attach(HttpRequestBase request) {
+        if (state == STATE_CANCEL) {
+            return false;
+        }
+        this.request = request;
+        return true;
+    }
+
+    /**
+     * 拒绝执行(队列已满),返回空结果
+     */
+    void reject() {
+        synchronized (this) {
+            if (state != STATE_WAIT) {
+                return;
+            }
+            state = STATE_DONE;
+        }
+        Message msg = new Message();
+        msg.what = requestCode;
+        msg.obj = parser != null ? null : "";
+        handler.sendMessage(msg);
+    }
+
+    /**
+     * 共享请求标识,可共享时为"GET "+url
+     *
+     * @return 不可共享时为null(未开启共享,post,流式解析,上传下载)
+     */
+    String getShareKey() {
+        if (!config.isShareRequest() || parser != null || uploadCallBack != null || downloadCallBack != null || params.isPost() || !XCStringUtil.isEmpty(params.getSaveFilePath())) {
+            return null;
+        }
+        return "GET " + params.getURL();
+    }
+
+    Object getResult() {
+        return result;
+    }
+
+    /**
+     * 返回共享请求的结果,不再执行
+     *
+     * @param result
+     */
+    void deliver(Object result) {
+        synchronized (this) {
+            if (state != STATE_WAIT) {
+                return;
+            }
+            state = STATE_DONE;
+        }
+        this.result = result;
+        Message msg = new Message();
+        msg.what = requestCode;
+        msg.obj = result;
+        handler.sendMessage(msg);
+    }
+
+    /**
+     * 取消,等待中的不再执行,执行中的中断执行线程和连接且不返回结果
+     *
+     * @return 是否取消成功(已结束返回false)
+     */
+    public boolean cancel() {
+        synchronized (this) {
+            if (state == STATE_WAIT) {
+                state = STATE_CANCEL;
+                return true;
+            } else if (state == STATE_RUN) {
+                state = STATE_CANCEL;
+                if (runner != null) {
+                    runner.interrupt();
+                }
+                if (request != null) {// 阻塞在socket读写时中断线程无效,需中断连接
+                    request.abort();
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return state == STATE_CANCEL;
+    }
+
+    /**
+     * 取消标记,未设置时为url名
+     *
+     * @return
+     */
+    public Object getTag() {
+        return params.getTag() != null ? params.getTag() : params.getUrlName();
+    }
+
+    public int getPriority() {
+        return params.getPriority();
+    }
+
+    public HttpParam getParams() {
+        return params;
+    }
+
+    /**
+     * 优先级高的先执行,同优先级先入队的先执行
+     */
+    @Override
+    public int compareTo(HttpTask another) {
+        if (getPriority() != another.getPriority()) {
+            return getPriority() > another.getPriority() ? -1 : 1;
+        }
+        return sequence < another.sequence ? -1 : (sequence == another.sequence ? 0 : 1);
+    }
+}
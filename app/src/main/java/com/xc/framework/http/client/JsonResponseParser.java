@@ -0,0 +1,52 @@
+package com.xc.framework.http.client;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+import com.xc.framework.http.interfaces.ResponseParser;
+import com.xc.framework.util.XCJsonUtil;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description json响应流解析,直接从响应流解析为bean,字段规则同XCJsonUtil
+ */
+public class JsonResponseParser {
+	/**
+	 * 解析bean
+	 * 
+	 * @param jsonObjectName
+	 *            根节点下jsonObject节点名,为空时解析根节点
+	 * @param objectClass
+	 *            实体类
+	 * @return
+	 */
+	public static <T> ResponseParser<T> bean(final String jsonObjectName, final Class<T> objectClass) {
+		return new ResponseParser<T>() {
+			@Override
+			public T parse(Reader reader) throws IOException {
+				return XCJsonUtil.readBean(reader, jsonObjectName, objectClass);
+			}
+		};
+	}
+
+	/**
+	 * 解析ListBean
+	 * 
+	 * @param jsonArrayName
+	 *            根节点下jsonArray节点名,为空时根节点为数组
+	 * @param objectClass
+	 *            实体类
+	 * @return
+	 */
+	public static <T> ResponseParser<List<T>> listBean(final String jsonArrayName, final Class<T> objectClass) {
+		return new ResponseParser<List<T>>() {
+			@Override
+			public List<T> parse(Reader reader) throws IOException {
+				return XCJsonUtil.readListBean(reader, jsonArrayName, objectClass);
+			}
+		};
+	}
+}
@@ -15,13 +15,11 @@
 
 package com.xc.framework.http.client;
 
-import android.os.SystemClock;
 import android.util.Log;
 
 import org.apache.http.NoHttpResponseException;
 import org.apache.http.client.HttpRequestRetryHandler;
-import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.impl.client.RequestWrapper;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.protocol.ExecutionContext;
 import org.apache.http.protocol.HttpContext;
 
@@ -33,9 +31,13 @@ import java.util.HashSet;
 
 import javax.net.ssl.SSLHandshakeException;
 
+/**
+ * 重试处理,按请求上下文中的RetryPolicy决定是否重试:只重试未发送、幂等或标记可重试的请求,受主机重试预算限制,重试前指数退避等待
+ */
 public class RetryHandler implements HttpRequestRetryHandler {
-
-	private static final int RETRY_SLEEP_INTERVAL = 500;
+	public static final String ATTR_RETRY_POLICY = "xc.retry.policy";// 上下文属性:RetryPolicy
+	public static final String ATTR_RETRY_SAFE = "xc.retry.safe";// 上下文属性:非幂等请求是否可重试
+	public static final String ATTR_HOST = "xc.retry.host";// 上下文属性:重试预算所属主机
 
 	private static HashSet<Class<?>> exceptionWhiteList = new HashSet<Class<?>>();
 
@@ -52,6 +54,10 @@ public class RetryHandler implements HttpRequestRetryHandler {
 
 	private final int maxRetries;
 
+	/**
+	 * @param maxRetries
+	 *            上下文中没有RetryPolicy时的最大重试次数
+	 */
 	public RetryHandler(int maxRetries) {
 		this.maxRetries = maxRetries;
 	}
@@ -60,14 +66,19 @@ public class RetryHandler implements HttpRequestRetryHandler {
 	public boolean retryRequest(IOException exception, int retriedTimes, HttpContext context) {
 		boolean retry = true;
 
-		if (exception == null || context == null) {
+		if (exception == null || context == null || Thread.currentThread().isInterrupted()) {
 			return false;
 		}
 
+		RetryPolicy policy = (RetryPolicy) context.getAttribute(ATTR_RETRY_POLICY);
+		if (policy == null) {
+			policy = new RetryPolicy();
+			policy.setMaxRetries(maxRetries);
+		}
 		Object isReqSent = context.getAttribute(ExecutionContext.HTTP_REQ_SENT);
 		boolean sent = isReqSent == null ? false : (Boolean) isReqSent;
 
-		if (retriedTimes > maxRetries) {
+		if (retriedTimes > policy.getMaxRetries()) {
 			retry = false;
 		} else if (exceptionBlackList.contains(exception.getClass())) {
 			retry = false;
@@ -80,14 +91,10 @@ public class RetryHandler implements HttpRequestRetryHandler {
 		if (retry) {
 			try {
 				Object currRequest = context.getAttribute(ExecutionContext.HTTP_REQUEST);
-				if (currRequest != null) {
-					if (currRequest instanceof HttpRequestBase) {
-						HttpRequestBase requestBase = (HttpRequestBase) currRequest;
-						retry = "GET".equals(requestBase.getMethod());
-					} else if (currRequest instanceof RequestWrapper) {
-						RequestWrapper requestWrapper = (RequestWrapper) currRequest;
-						retry = "GET".equals(requestWrapper.getMethod());
-					}
+				if (currRequest instanceof HttpUriRequest) {
+					HttpUriRequest request = (HttpUriRequest) currRequest;
+					// 未发送的请求重发无副作用,已发送的只重试幂等或标记可重试的请求
+					retry = !sent || RetryPolicy.isIdempotent(request.getMethod()) || Boolean.TRUE.equals(context.getAttribute(ATTR_RETRY_SAFE));
 				} else {
 					retry = false;
 					Log.e("RetryHandler", "retry error, curr request is null");
@@ -98,9 +105,18 @@ public class RetryHandler implements HttpRequestRetryHandler {
 			}
 		}
 
+		String host = (String) context.getAttribute(ATTR_HOST);
+		if (retry && host != null) {
+			retry = HostHealth.getInstance().acquireRetry(host, policy);// 重试预算,避免主机故障时大量重试
+		}
+
 		if (retry) {
-			SystemClock.sleep(RETRY_SLEEP_INTERVAL); // sleep a while and retry
-														// http request again.
+			try {
+				Thread.sleep(policy.getDelay(retriedTimes)); // 退避等待后重试
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				retry = false;
+			}
 		}
 
 		return retry;
@@ -0,0 +1,136 @@
+package com.xc.framework.http.client;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description 重试策略:指数退避加随机抖动,只重试幂等或标记可重试的请求,按主机限制重试预算,连续失败时熔断快速失败
+ */
+public class RetryPolicy {
+	private static final Random random = new Random();
+	//
+	private int maxRetries = 3;// 最大重试次数
+	private long baseDelay = 500;// 首次重试等待时间
+	private long maxDelay = 10 * 1000;// 最长重试等待时间
+	private double retryBudgetTokens = 10;// 每个主机重试令牌数,重试消耗1个
+	private double retryBudgetRatio = 0.1;// 每次成功请求返还的令牌数
+	private int circuitFailureThreshold = 0;// 连续失败(网络异常或502/503/504)次数达到后熔断,小于等于0不熔断
+	private long circuitOpenTime = 30 * 1000;// 熔断时间,之后放行一个试探请求
+
+	/**
+	 * 最大重试次数：默认3
+	 * 重试等待：默认500ms起每次翻倍,最长10s,实际等待为其一半到全部间随机
+	 * 重试预算：默认每主机10次,每次成功返还0.1次
+	 * 熔断：默认关闭,setCircuitFailureThreshold开启后连续失败达到次数熔断30s
+	 */
+	public RetryPolicy() {
+	}
+
+	/**
+	 * 不重试,不熔断
+	 *
+	 * @return
+	 */
+	public static RetryPolicy none() {
+		RetryPolicy policy = new RetryPolicy();
+		policy.setMaxRetries(0);
+		policy.setCircuitFailureThreshold(0);
+		return policy;
+	}
+
+	/**
+	 * 第retriedTimes次重试前的等待时间,指数退避加随机抖动
+	 *
+	 * @param retriedTimes
+	 *            从1开始
+	 * @return
+	 */
+	public long getDelay(int retriedTimes) {
+		long delay = baseDelay << Math.min(Math.max(retriedTimes - 1, 0), 20);
+		delay = Math.max(0, Math.min(delay, maxDelay));
+		return delay / 2 + (long) (random.nextDouble() * (delay - delay / 2));
+	}
+
+	/**
+	 * 响应是否表示主机不可用(网关错误或服务不可用),计入熔断失败次数;其它状态码只是单个接口出错,不影响同主机其它请求
+	 *
+	 * @param statusCode
+	 * @return
+	 */
+	public static boolean isHostFailure(int statusCode) {
+		return statusCode == 502 || statusCode == 503 || statusCode == 504;
+	}
+
+	/**
+	 * 是否为幂等请求方法,重复发送不会产生副作用
+	 *
+	 * @param method
+	 * @return
+	 */
+	public static boolean isIdempotent(String method) {
+		if (method == null) {
+			return false;
+		}
+		method = method.toUpperCase(Locale.US);
+		return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method) || "TRACE".equals(method) || "PUT".equals(method) || "DELETE".equals(method);
+	}
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	public long getBaseDelay() {
+		return baseDelay;
+	}
+
+	public void setBaseDelay(long baseDelay) {
+		this.baseDelay = baseDelay;
+	}
+
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+
+	public void setMaxDelay(long maxDelay) {
+		this.maxDelay = maxDelay;
+	}
+
+	public double getRetryBudgetTokens() {
+		return retryBudgetTokens;
+	}
+
+	public void setRetryBudgetTokens(double retryBudgetTokens) {
+		this.retryBudgetTokens = retryBudgetTokens;
+	}
+
+	public double getRetryBudgetRatio() {
+		return retryBudgetRatio;
+	}
+
+	public void setRetryBudgetRatio(double retryBudgetRatio) {
+		this.retryBudgetRatio = retryBudgetRatio;
+	}
+
+	public int getCircuitFailureThreshold() {
+		return circuitFailureThreshold;
+	}
+
+	public void setCircuitFailureThreshold(int circuitFailureThreshold) {
+		this.circuitFailureThreshold = circuitFailureThreshold;
+	}
+
+	public long getCircuitOpenTime() {
+		return circuitOpenTime;
+	}
+
+	public void setCircuitOpenTime(long circuitOpenTime) {
+		this.circuitOpenTime = circuitOpenTime;
+	}
+}
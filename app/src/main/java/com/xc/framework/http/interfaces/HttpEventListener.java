@@ -0,0 +1,21 @@
+package com.xc.framework.http.interfaces;
+
+import com.xc.framework.http.client.HttpCallMetrics;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.interfaces
+ * @description http请求事件监听,由HttpClientManager.addEventListener注册,请求结束(释放连接)时在请求线程回调
+ */
+public interface HttpEventListener {
+
+	/**
+	 * 请求结束
+	 * 
+	 * @param metrics
+	 *            各阶段耗时和传输字节数
+	 */
+	public void onCallEnd(HttpCallMetrics metrics);
+
+}
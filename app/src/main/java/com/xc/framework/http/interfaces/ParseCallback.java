@@ -0,0 +1,20 @@
+package com.xc.framework.http.interfaces;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.interfaces
+ * @description 处理流式解析结果的回调接口
+ */
+public interface ParseCallback<T> {
+
+	/**
+	 * 解析结果
+	 * 
+	 * @param what
+	 * @param result
+	 *            请求或解析失败时为null
+	 */
+	public void onResult(int what, T result);
+
+}
@@ -0,0 +1,23 @@
+package com.xc.framework.http.interfaces;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.interfaces
+ * @description 响应流解析接口,在请求线程中边读边解析,不缓存整个响应字符串
+ */
+public interface ResponseParser<T> {
+	/**
+	 * 解析响应
+	 * 
+	 * @param reader
+	 *            响应体字符流,由调用方关闭
+	 * @return 解析结果
+	 * @throws IOException
+	 */
+	public T parse(Reader reader) throws IOException;
+
+}
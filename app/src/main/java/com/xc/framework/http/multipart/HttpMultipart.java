@@ -48,8 +48,7 @@ class HttpMultipart {
 
     private static void writeBytes(
             final ByteArrayBuffer b, final OutputStream out) throws IOException {
-        out.write(b.buffer(), 0, b.length());
-        out.flush();
+        out.write(b.buffer(), 0, b.length());// 不逐段flush,写完后统一flush
     }
 
     private static void writeBytes(
@@ -238,6 +237,7 @@ class HttpMultipart {
         callBackInfo.pos += TWO_DASHES.length();
         writeBytes(CR_LF, out);
         callBackInfo.pos += CR_LF.length();
+        out.flush();
         callBackInfo.doCallBack(true);
     }
 
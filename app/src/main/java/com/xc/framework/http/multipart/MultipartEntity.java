@@ -18,6 +18,7 @@ package com.xc.framework.http.multipart;
 import com.xc.framework.http.client.UploadEntity;
 import com.xc.framework.http.interfaces.UploadCallBack;
 import com.xc.framework.http.multipart.content.ContentBody;
+import com.xc.framework.http.multipart.content.InputStreamBody;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -47,19 +48,26 @@ public class MultipartEntity implements HttpEntity, UploadEntity {
 	// wyouflf add： upload callBackHandler
 	public static class CallBackInfo {
 		public final static CallBackInfo DEFAULT = new CallBackInfo();
+		public final static long CALLBACK_INTERVAL = 200;// 进度回调最小间隔(毫秒)
 		public UploadCallBack uploadCallBack = null;
 		public long totalLength = 0;
 		public long pos = 0;
+		private long lastCallBackTime = 0;
 
 		/**
 		 * @param forceUpdateUI
-		 * @return Whether continue.
+		 *            false时距上次回调不足CALLBACK_INTERVAL不回调
+		 * @return Whether continue(线程被中断时返回false).
 		 */
 		public boolean doCallBack(boolean forceUpdateUI) {
 			if (uploadCallBack != null) {
-				uploadCallBack.onLoading(totalLength, pos);
+				long now = System.currentTimeMillis();
+				if (forceUpdateUI || now - lastCallBackTime >= CALLBACK_INTERVAL) {
+					lastCallBackTime = now;
+					uploadCallBack.onLoading(totalLength, pos);
+				}
 			}
-			return true;
+			return !Thread.currentThread().isInterrupted();
 		}
 	}
 
@@ -176,15 +184,18 @@ public class MultipartEntity implements HttpEntity, UploadEntity {
 	public boolean isRepeatable() {
 		for (FormBodyPart part : this.multipart.getBodyParts()) {
 			ContentBody body = part.getBody();
-			if (body.getContentLength() < 0) {
+			if (body.getContentLength() < 0 || body instanceof InputStreamBody) {// 流只能读一次
 				return false;
 			}
 		}
 		return true;
 	}
 
+	/**
+	 * 有未知长度的内容时使用chunked传输
+	 */
 	public boolean isChunked() {
-		return !isRepeatable();
+		return getContentLength() < 0;
 	}
 
 	public boolean isStreaming() {
@@ -208,9 +219,7 @@ public class MultipartEntity implements HttpEntity, UploadEntity {
 	}
 
 	public void consumeContent() throws IOException, UnsupportedOperationException {
-		if (isStreaming()) {
-			throw new UnsupportedOperationException("Streaming entity does not implement #consumeContent()");
-		}
+		// 请求实体,发送后无需消费
 	}
 
 	public InputStream getContent() throws IOException, UnsupportedOperationException {
@@ -54,8 +54,25 @@ public abstract class AbstractContentBody implements ContentBody {
         return this.subType;
     }
 
+    protected static final int BUFFER_SIZE = 64 * 1024;
+
+    // 每个上传线程复用一个缓冲区
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
     protected MultipartEntity.CallBackInfo callBackInfo = MultipartEntity.CallBackInfo.DEFAULT;
 
+    /**
+     * 获取当前线程的写出缓冲区
+     */
+    protected static byte[] getBuffer() {
+        return BUFFER.get();
+    }
+
     @Override
     public void setCallBackInfo(MultipartEntity.CallBackInfo callBackInfo) {
         this.callBackInfo = callBackInfo;
@@ -15,13 +15,14 @@
 
 package com.xc.framework.http.multipart.content;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import com.xc.framework.http.multipart.MIME;
 import com.xc.framework.util.XCIOUtil;
@@ -80,13 +81,16 @@ public class FileBody extends AbstractContentBody {
         if (out == null) {
             throw new IllegalArgumentException("Output stream may not be null");
         }
-        BufferedInputStream in = null;
+        FileInputStream in = null;
         try {
-            in = new BufferedInputStream(new FileInputStream(this.file));
-            byte[] tmp = new byte[4096];
+            in = new FileInputStream(this.file);
+            FileChannel channel = in.getChannel();// 可中断,取消请求时立即结束
+            byte[] tmp = getBuffer();
+            ByteBuffer buffer = ByteBuffer.wrap(tmp);
             int l;
-            while ((l = in.read(tmp)) != -1) {
-                out.write(tmp, 0, l);
+            while ((l = channel.read(buffer)) != -1) {
+                out.write(tmp, 0, l);// 大块写出,不经过输出缓冲直接写入socket
+                buffer.clear();
                 callBackInfo.pos += l;
                 if (!callBackInfo.doCallBack(false)) {
                     throw new InterruptedIOException("cancel");
@@ -32,6 +32,9 @@ public class InputStreamBody extends AbstractContentBody {
     private final String filename;
     private long length;
 
+    /**
+     * @param length 未知长度传-1,上传时使用chunked传输
+     */
     public InputStreamBody(final InputStream in, long length, final String filename, final String mimeType) {
         super(mimeType);
         if (in == null) {
@@ -59,7 +62,7 @@ public class InputStreamBody extends AbstractContentBody {
             throw new IllegalArgumentException("Output stream may not be null");
         }
         try {
-            byte[] tmp = new byte[4096];
+            byte[] tmp = getBuffer();
             int l;
             while ((l = this.in.read(tmp)) != -1) {
                 out.write(tmp, 0, l);
@@ -2,7 +2,10 @@ package com.xc.framework.util;
 
 import com.xc.framework.annotation.FieldAlias;
 import com.xc.framework.annotation.FieldIgnore;
+import com.xc.framework.annotation.FieldIndex;
 import com.xc.framework.annotation.FieldKeyId;
+import com.xc.framework.annotation.FieldSearch;
+import com.xc.framework.annotation.FieldType;
 import com.xc.framework.annotation.FieldUnique;
 import com.xc.framework.bean.FieldBean;
 
@@ -63,6 +66,20 @@ public class XCBeanUtil {
                                         if (unique != null) {
                                             mFieldBean.setUnique(true);
                                         }
+                                        //列类型
+                                        FieldType type = field.getAnnotation(FieldType.class);
+                                        mFieldBean.setType(type != null && !XCStringUtil.isEmpty(type.value()) ? type.value().toLowerCase(Locale.ENGLISH) : FieldType.TEXT);
+                                        //索引
+                                        FieldIndex index = field.getAnnotation(FieldIndex.class);
+                                        if (index != null) {
+                                            mFieldBean.setIndex(index.value());
+                                            mFieldBean.setIndexUnique(index.unique());
+                                        }
+                                        //全文检索
+                                        FieldSearch search = field.getAnnotation(FieldSearch.class);
+                                        if (search != null) {
+                                            mFieldBean.setSearch(true);
+                                        }
                                         mList.add(mFieldBean);
                                     }
                                 }
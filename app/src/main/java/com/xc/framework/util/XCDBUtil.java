@@ -2,12 +2,20 @@ package com.xc.framework.util;
 
 import android.content.Context;
 
+import com.xc.framework.db.DBCursorIterator;
+import com.xc.framework.db.DBExecutor;
 import com.xc.framework.db.DBHelper;
 import com.xc.framework.db.DBManager;
+import com.xc.framework.db.DBPage;
+import com.xc.framework.db.OnDBJoinListener;
 import com.xc.framework.db.OnDBListener;
+import com.xc.framework.db.OnDBMigrateListener;
+import com.xc.framework.db.OnDBQueryListener;
+import com.xc.framework.db.OnDBResultListener;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * @author ZhangXuanChen
@@ -49,6 +57,19 @@ public class XCDBUtil {
         return DBManager.getInstance(context).alterTable(tableClass);
     }
 
+    /**
+     * 分段变更表结构,每段一个短事务,不长时间阻塞其他读写,中断后再次调用继续(需在子线程调用)
+     *
+     * @param context    上下文
+     * @param tableClass 以实体类名创建的表
+     * @param chunkSize  每段复制条数,如1000
+     * @param listener   进度监听,可为null
+     * @return 是否成功
+     */
+    public static boolean alterTable(Context context, Class<?> tableClass, int chunkSize, OnDBMigrateListener listener) {
+        return DBManager.getInstance(context).alterTable(tableClass, chunkSize, listener);
+    }
+
     /**
      * 清空数据库表
      *
@@ -272,6 +293,29 @@ public class XCDBUtil {
         return DBManager.getInstance(context).query(classObject, limit, offset, field, startDate, endDate);
     }
 
+    /**
+     * 逐行查询,不缓存结果集
+     *
+     * @param context     上下文
+     * @param classObject 类对象,操作以该对象类名创建的表,反射get方法获取查询条件(new空对象查询该表所有数据)
+     * @param listener    每行回调一次,返回false结束查询
+     * @return 回调行数, -1失败
+     */
+    public static <T> int query(Context context, T classObject, OnDBQueryListener<T> listener) {
+        return DBManager.getInstance(context).query(classObject, listener);
+    }
+
+    /**
+     * 迭代器查询,调用next时才读取下一行(使用完需close,读完自动关闭)
+     *
+     * @param context     上下文
+     * @param classObject 类对象,操作以该对象类名创建的表,反射get方法获取查询条件(new空对象查询该表所有数据)
+     * @return 迭代器, 失败返回null
+     */
+    public static <T> DBCursorIterator<T> queryIterator(Context context, T classObject) {
+        return DBManager.getInstance(context).queryIterator(classObject);
+    }
+
     /**
      * Author：ZhangXuanChen
      * Time：2020/8/20 9:48
@@ -298,6 +342,34 @@ public class XCDBUtil {
         return DBManager.getInstance(context).queryInnerJoin(masterClass, masterField, slaveMap);
     }
 
+    /**
+     * 逐条左联查询,不缓存结果集
+     *
+     * @param context     上下文
+     * @param masterClass 主表类
+     * @param masterField 主表条件字段
+     * @param slaveMap    从表类与从表条件字段
+     * @param listener    每条主表数据回调一次,返回false结束查询
+     * @return 回调条数, -1失败
+     */
+    public static <T> int queryLeftJoin(Context context, Class<T> masterClass, String masterField, Map<Class<?>, String> slaveMap, OnDBJoinListener<T> listener) {
+        return DBManager.getInstance(context).queryLeftJoin(masterClass, masterField, slaveMap, listener);
+    }
+
+    /**
+     * 逐条内联查询,不缓存结果集
+     *
+     * @param context     上下文
+     * @param masterClass 主表类
+     * @param masterField 主表条件字段
+     * @param slaveMap    从表类与从表条件字段
+     * @param listener    每条主表数据回调一次,返回false结束查询
+     * @return 回调条数, -1失败
+     */
+    public static <T> int queryInnerJoin(Context context, Class<T> masterClass, String masterField, Map<Class<?>, String> slaveMap, OnDBJoinListener<T> listener) {
+        return DBManager.getInstance(context).queryInnerJoin(masterClass, masterField, slaveMap, listener);
+    }
+
     /**
      * @author ZhangXuanChen
      * @date 2020/2/25
@@ -327,6 +399,120 @@ public class XCDBUtil {
         return DBManager.getInstance(context).isExist(classObject);
     }
 
+    /**
+     * 游标分页查询,下一页从上一页最后一行继续查询(不使用offset),每页耗时与页码无关
+     *
+     * @param context     上下文
+     * @param classObject 类对象,反射get方法获取查询条件
+     * @param limit       每页数量
+     * @param field       排序字段名,为空按_id排序(建议加FieldIndex索引)
+     * @param isDesc      是否倒序
+     * @param lastPage    上一页,第一页为null
+     * @return 本页
+     */
+    public static <T> DBPage<T> queryPage(Context context, T classObject, int limit, String field, boolean isDesc, DBPage<T> lastPage) {
+        return DBManager.getInstance(context).queryPage(classObject, limit, field, isDesc, lastPage);
+    }
+
+    /**
+     * 全文检索,检索FieldSearch注释字段
+     *
+     * @param context     上下文
+     * @param classObject 类对象,反射get方法获取查询条件
+     * @param field       检索字段名,为空检索所有FieldSearch字段
+     * @param keyword     关键词,空格分隔多个词同时匹配,每个词按前缀匹配
+     * @return 结果集
+     */
+    public static <T> List<T> search(Context context, T classObject, String field, String keyword) {
+        return DBManager.getInstance(context).search(classObject, field, keyword);
+    }
+
+    /**
+     * 全文检索分页,检索FieldSearch注释字段
+     *
+     * @param context     上下文
+     * @param classObject 类对象,反射get方法获取查询条件
+     * @param field       检索字段名,为空检索所有FieldSearch字段
+     * @param keyword     关键词
+     * @param limit       每页数量
+     * @param lastPage    上一页,第一页为null
+     * @return 本页
+     */
+    public static <T> DBPage<T> searchPage(Context context, T classObject, String field, String keyword, int limit, DBPage<T> lastPage) {
+        return DBManager.getInstance(context).searchPage(classObject, field, keyword, limit, lastPage);
+    }
+
+    /**
+     * 异步插入,与其他排队写操作合并为一个事务提交
+     *
+     * @param context     上下文
+     * @param classObject 类对象
+     * @param listener    结果监听(主线程回调),可为null
+     * @return 是否成功
+     */
+    public static <T> Future<Boolean> insertAsync(Context context, T classObject, OnDBResultListener<Boolean> listener) {
+        return DBExecutor.getInstance(context).insert(classObject, listener);
+    }
+
+    /**
+     * 异步插入,与其他排队写操作合并为一个事务提交
+     *
+     * @param context         上下文
+     * @param classObjectList 类对象集合
+     * @param listener        结果监听(主线程回调),可为null
+     * @return 是否成功
+     */
+    public static <T> Future<Boolean> insertAsync(Context context, List<T> classObjectList, OnDBResultListener<Boolean> listener) {
+        return DBExecutor.getInstance(context).insert(classObjectList, listener);
+    }
+
+    /**
+     * 异步删除,与其他排队写操作合并为一个事务提交
+     *
+     * @param context     上下文
+     * @param classObject 类对象
+     * @param listener    结果监听(主线程回调),可为null
+     * @return 是否成功
+     */
+    public static <T> Future<Boolean> deleteAsync(Context context, T classObject, OnDBResultListener<Boolean> listener) {
+        return DBExecutor.getInstance(context).delete(classObject, listener);
+    }
+
+    /**
+     * 异步更新,与其他排队写操作合并为一个事务提交
+     *
+     * @param context         上下文
+     * @param updateObject    更新数据类对象
+     * @param conditionObject 查询条件类对象
+     * @param listener        结果监听(主线程回调),可为null
+     * @return 是否成功
+     */
+    public static <T> Future<Boolean> updateAsync(Context context, T updateObject, T conditionObject, OnDBResultListener<Boolean> listener) {
+        return DBExecutor.getInstance(context).update(updateObject, conditionObject, listener);
+    }
+
+    /**
+     * 异步条件查询,在读线程池执行
+     *
+     * @param context     上下文
+     * @param classObject 类对象
+     * @param listener    结果监听(主线程回调),可为null
+     * @return 结果集
+     */
+    public static <T> Future<List<T>> queryAsync(Context context, T classObject, OnDBResultListener<List<T>> listener) {
+        return DBExecutor.getInstance(context).query(classObject, listener);
+    }
+
+    /**
+     * 开启查询结果缓存,增删改、清空表后该表缓存失效;命中时返回的对象与缓存共用,不要修改
+     *
+     * @param context 上下文
+     * @param maxRows 最多缓存行数,小于等于0关闭缓存
+     */
+    public static void configQueryCache(Context context, int maxRows) {
+        DBManager.getInstance(context).configQueryCache(maxRows);
+    }
+
     /**
      * 设置数据库监听
      *
@@ -1,5 +1,7 @@
 package com.xc.framework.util;
 
+import java.io.File;
+
 import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
@@ -7,9 +9,13 @@ import android.os.Message;
 
 import com.xc.framework.http.HttpParam;
 import com.xc.framework.http.client.ConnectionConfig;
-import com.xc.framework.http.client.HttpThread;
+import com.xc.framework.http.client.HttpCache;
+import com.xc.framework.http.client.HttpDispatcher;
+import com.xc.framework.http.client.HttpTask;
 import com.xc.framework.http.interfaces.DownloadCallBack;
+import com.xc.framework.http.interfaces.ParseCallback;
 import com.xc.framework.http.interfaces.RequestCallback;
+import com.xc.framework.http.interfaces.ResponseParser;
 import com.xc.framework.http.interfaces.UploadCallBack;
 
 /**
@@ -26,7 +32,7 @@ public class XCHttpUtil {
 	 * @param param 参数
 	 * @param what 常量
 	 * @param requestCallback 请求回调
-	 * @Description ThreadManager提供线程终止
+	 * @Description HttpDispatcher排队执行,cancel(tag)提供取消
 	 */
 	public static void sendRequest(Context context, HttpParam param, int what, final RequestCallback requestCallback) {
 		sendRequest(context, param, what, requestCallback, new ConnectionConfig(), false);
@@ -40,7 +46,7 @@ public class XCHttpUtil {
 	 * @param what 常量
 	 * @param requestCallback 请求回调
 	 * @param isShowLog 是否打印Log tagName：HttpThread
-	 * @Description ThreadManager提供线程终止
+	 * @Description HttpDispatcher排队执行,cancel(tag)提供取消
 	 */
 	public static void sendRequest(Context context, HttpParam param, int what, final RequestCallback requestCallback, boolean isShowLog) {
 		sendRequest(context, param, what, requestCallback, new ConnectionConfig(), isShowLog);
@@ -55,7 +61,7 @@ public class XCHttpUtil {
 	 * @param requestCallback 请求回调
 	 * @param config 连接配置
 	 * @param isShowLog 是否打印Log tagName：HttpThread
-	 * @Description ThreadManager提供线程终止
+	 * @Description HttpDispatcher排队执行,cancel(tag)提供取消
 	 */
 	public static void sendRequest(final Context context, HttpParam param, final int what, final RequestCallback requestCallback, ConnectionConfig config, boolean isShowLog) {
 		Handler handler = new Handler(Looper.getMainLooper()) {
@@ -66,7 +72,32 @@ public class XCHttpUtil {
 				}
 			}
 		};
-		new HttpThread(context, param, handler, what, config, null, null, isShowLog).startThread();
+		HttpDispatcher.getInstance().enqueue(new HttpTask(context, param, handler, what, config, null, null, isShowLog), HttpDispatcher.LANE_API);
+	}
+
+	/**
+	 * 通过URL方式请求数据并流式解析(如JsonResponseParser.listBean),响应不转为字符串,大数据列表接口可减少内存占用
+	 * 
+	 * @param context 上下文
+	 * @param param 参数
+	 * @param what 常量
+	 * @param parser 响应流解析,在请求线程执行
+	 * @param parseCallback 解析结果回调,失败时结果为null
+	 * @param config 连接配置
+	 * @param isShowLog 是否打印Log tagName：HttpThread
+	 * @Description HttpDispatcher排队执行,cancel(tag)提供取消
+	 */
+	public static <T> void sendRequest(Context context, HttpParam param, int what, ResponseParser<T> parser, final ParseCallback<T> parseCallback, ConnectionConfig config, boolean isShowLog) {
+		Handler handler = new Handler(Looper.getMainLooper()) {
+			@SuppressWarnings("unchecked")
+			@Override
+			public void handleMessage(Message msg) {
+				if (parseCallback != null) {
+					parseCallback.onResult(msg.what, (T) msg.obj);
+				}
+			}
+		};
+		HttpDispatcher.getInstance().enqueue(new HttpTask(context, param, handler, what, config, parser, isShowLog), HttpDispatcher.LANE_API);
 	}
 
 	// -----------------------------------------------上传-----------------------------------------------
@@ -76,7 +107,7 @@ public class XCHttpUtil {
 	 * @param context 上下文
 	 * @param param 参数
 	 * @param uploadCallBack 上传回调
-	 * @Description ThreadManager提供线程终止
+	 * @Description HttpDispatcher排队执行,cancel(tag)提供取消
 	 */
 	public static void uploadFile(Context context, HttpParam param, final UploadCallBack uploadCallBack) {
 		uploadFile(context, param, uploadCallBack, new ConnectionConfig(), false);
@@ -89,7 +120,7 @@ public class XCHttpUtil {
 	 * @param param 参数
 	 * @param uploadCallBack 上传回调
 	 * @param isShowLog 是否打印Log tagName：HttpThread
-	 * @Description ThreadManager提供线程终止
+	 * @Description HttpDispatcher排队执行,cancel(tag)提供取消
 	 */
 	public static void uploadFile(Context context, HttpParam param, final UploadCallBack uploadCallBack, boolean isShowLog) {
 		uploadFile(context, param, uploadCallBack, new ConnectionConfig(), isShowLog);
@@ -103,7 +134,7 @@ public class XCHttpUtil {
 	 * @param uploadCallBack 上传回调
 	 * @param config 连接配置
 	 * @param isShowLog 是否打印Log tagName：HttpThread
-	 * @Description ThreadManager提供线程终止
+	 * @Description HttpDispatcher排队执行,cancel(tag)提供取消
 	 */
 	public static void uploadFile(Context context, HttpParam param, final UploadCallBack uploadCallBack, ConnectionConfig config, boolean isShowLog) {
 		Handler handler = new Handler(Looper.getMainLooper()) {
@@ -116,50 +147,83 @@ public class XCHttpUtil {
 		};
 		if (param != null) {
 			param.clearDownloadParams();
-			new HttpThread(context, param, handler, 0x123, config, uploadCallBack, null, isShowLog).startThread();
+			HttpDispatcher.getInstance().enqueue(new HttpTask(context, param, handler, 0x123, config, uploadCallBack, null, isShowLog), HttpDispatcher.LANE_TRANSFER);
 		}
 	}
 
 	// ---------------------------------------------下载----------------------------------------------------------
 	/**
-	 * 通过get下载文件(只支持单个下载)
+	 * 通过get下载文件(断点续传,ConnectionConfig.setDownloadSegmentCount可分段并行下载)
 	 * 
 	 * @param context 上下文
 	 * @param param 参数
 	 * @param downloadCallBack 下载回调
-	 * @Description ThreadManager提供线程终止
+	 * @Description HttpDispatcher排队执行,cancel(tag)提供取消
 	 */
 	public static void downloadFile(Context context, HttpParam param, final DownloadCallBack downloadCallBack) {
 		downloadFile(context, param, downloadCallBack, new ConnectionConfig(), false);
 	}
 
 	/**
-	 * 通过get下载文件(只支持单个下载)
+	 * 通过get下载文件(断点续传,ConnectionConfig.setDownloadSegmentCount可分段并行下载)
 	 * 
 	 * @param context 上下文
 	 * @param param 参数
 	 * @param downloadCallBack 下载回调
 	 * @param isShowLog 是否打印Log tagName：HttpThread
-	 * @Description ThreadManager提供线程终止
+	 * @Description HttpDispatcher排队执行,cancel(tag)提供取消
 	 */
 	public static void downloadFile(Context context, HttpParam param, final DownloadCallBack downloadCallBack, boolean isShowLog) {
 		downloadFile(context, param, downloadCallBack, new ConnectionConfig(), isShowLog);
 	}
 
 	/**
-	 * 通过get下载文件(只支持单个下载)
+	 * 通过get下载文件(断点续传,ConnectionConfig.setDownloadSegmentCount可分段并行下载)
 	 * 
 	 * @param context 上下文
 	 * @param param 参数
 	 * @param downloadCallBack 下载回调
 	 * @param config 连接配置
 	 * @param isShowLog 是否打印Log tagName：HttpThread
-	 * @Description ThreadManager提供线程终止
+	 * @Description HttpDispatcher排队执行,cancel(tag)提供取消
 	 */
 	public static void downloadFile(Context context, HttpParam param, final DownloadCallBack downloadCallBack, ConnectionConfig config, boolean isShowLog) {
 		if (param != null) {
 			param.clearUploadParams();
-			new HttpThread(context, param, new Handler(), 0x123, config, null, downloadCallBack, isShowLog).startThread();
+			HttpDispatcher.getInstance().enqueue(new HttpTask(context, param, new Handler(), 0x123, config, null, downloadCallBack, isShowLog), HttpDispatcher.LANE_TRANSFER);
 		}
 	}
+
+	// ---------------------------------------------缓存----------------------------------------------------------
+	/**
+	 * 打开http缓存(缓存目录/http),GET数据请求按Cache-Control/ETag/Last-Modified缓存和验证
+	 * 
+	 * @param context
+	 * @param maxSize 缓存最大字节数
+	 * @return 是否打开成功
+	 */
+	public static boolean configHttpCache(Context context, long maxSize) {
+		return HttpCache.getInstance().open(new File(XCFileUtil.getCacheDir(context), "http"), maxSize);
+	}
+
+	// ---------------------------------------------取消----------------------------------------------------------
+	/**
+	 * 取消请求(排队中的不再执行,执行中的中断),被取消的请求不再回调;
+	 * 请求由HttpDispatcher执行而不是单独线程,XCThreadUtil.stopSingle(url名)不会取消,需调用此方法
+	 * 
+	 * @param tag HttpParam.setTag设置,未设置时为url名
+	 * @return 取消数量
+	 */
+	public static int cancel(Object tag) {
+		return HttpDispatcher.getInstance().cancel(tag);
+	}
+
+	/**
+	 * 取消全部请求
+	 * 
+	 * @return 取消数量
+	 */
+	public static int cancelAll() {
+		return HttpDispatcher.getInstance().cancelAll();
+	}
 }
@@ -1,12 +1,22 @@
 package com.xc.framework.util;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
 import com.xc.framework.bean.FieldBean;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author ZhangXuanChen
@@ -373,4 +383,184 @@ public class XCJsonUtil {
 		}
 		return mList;
 	}
+
+	// ------------------------------------------流式解析----------------------------------------
+
+	/**
+	 * 流式解析bean,边读边赋值,不生成中间json字符串和JSONObject
+	 *
+	 * @param reader         json字符流
+	 * @param jsonObjectName 根节点下jsonObject节点名,为空时解析根节点
+	 * @param objectClass    实体类
+	 * @return 结果bean,节点不存在时为null
+	 * @throws IOException
+	 */
+	public static <T> T readBean(Reader reader, String jsonObjectName, Class<T> objectClass) throws IOException {
+		JsonReader jsonReader = new JsonReader(reader);
+		jsonReader.setLenient(true);
+		if (objectClass != null && moveTo(jsonReader, jsonObjectName) && jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+			return readBean(jsonReader, getFieldNameMap(objectClass), objectClass);
+		}
+		return null;
+	}
+
+	/**
+	 * 流式解析ListBean,逐个元素解析,不生成中间json字符串和JSONArray
+	 *
+	 * @param reader        json字符流
+	 * @param jsonArrayName 根节点下jsonArray节点名,为空时根节点为数组
+	 * @param objectClass   实体类
+	 * @return 结果集
+	 * @throws IOException
+	 */
+	public static <T> List<T> readListBean(Reader reader, String jsonArrayName, Class<T> objectClass) throws IOException {
+		List<T> mList = new ArrayList<T>();
+		JsonReader jsonReader = new JsonReader(reader);
+		jsonReader.setLenient(true);
+		if (objectClass != null && moveTo(jsonReader, jsonArrayName) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+			Map<String, String> fieldNameMap = getFieldNameMap(objectClass);
+			jsonReader.beginArray();
+			while (jsonReader.hasNext()) {
+				if (jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+					T info = readBean(jsonReader, fieldNameMap, objectClass);
+					if (info != null) {
+						mList.add(info);
+					}
+				} else {
+					jsonReader.skipValue();
+				}
+			}
+			jsonReader.endArray();
+		}
+		return mList;
+	}
+
+	/**
+	 * 移动到根节点下的字段值
+	 *
+	 * @param jsonReader
+	 * @param name       为空时停在根节点
+	 * @return 是否找到且不为null
+	 * @throws IOException
+	 */
+	private static boolean moveTo(JsonReader jsonReader, String name) throws IOException {
+		if (XCStringUtil.isEmpty(name)) {
+			return true;
+		}
+		if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+			return false;
+		}
+		jsonReader.beginObject();
+		while (jsonReader.hasNext()) {
+			if (name.equals(jsonReader.nextName()) && jsonReader.peek() != JsonToken.NULL) {
+				return true;
+			}
+			jsonReader.skipValue();
+		}
+		return false;
+	}
+
+	/**
+	 * json字段名(优先别名)与bean变量原名的对应
+	 *
+	 * @param objectClass
+	 * @return
+	 */
+	private static Map<String, String> getFieldNameMap(Class<?> objectClass) {
+		Map<String, String> map = new HashMap<String, String>();
+		List<FieldBean> fieldList = XCBeanUtil.getFieldList(objectClass);
+		if (fieldList != null) {
+			for (FieldBean entity : fieldList) {
+				String original = !XCStringUtil.isEmpty(entity.getOriginal()) ? entity.getOriginal() : "";
+				String alias = !XCStringUtil.isEmpty(entity.getAlias()) ? entity.getAlias() : "";
+				String name = !XCStringUtil.isEmpty(alias) ? alias : original;
+				if (!XCStringUtil.isEmpty(name)) {
+					map.put(name, original);
+				}
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * 解析当前jsonObject为bean,赋值规则同parseBean(JSONObject, Class)
+	 */
+	private static <T> T readBean(JsonReader jsonReader, Map<String, String> fieldNameMap, Class<T> objectClass) throws IOException {
+		T info = null;
+		try {
+			info = objectClass.newInstance();
+		} catch (Exception e) {
+		}
+		jsonReader.beginObject();
+		while (jsonReader.hasNext()) {
+			String original = fieldNameMap.get(jsonReader.nextName());
+			if (info != null && original != null && jsonReader.peek() != JsonToken.NULL) {
+				String value = readString(jsonReader);
+				XCBeanUtil.invokeSetMethod(info, original, !XCStringUtil.isEmpty(value) ? value : "");//赋值给原名
+			} else {
+				jsonReader.skipValue();
+			}
+		}
+		jsonReader.endObject();
+		return info;
+	}
+
+	/**
+	 * 读取当前值为字符串,jsonObject和jsonArray转为json字符串(同optString)
+	 */
+	private static String readString(JsonReader jsonReader) throws IOException {
+		switch (jsonReader.peek()) {
+			case BOOLEAN:
+				return String.valueOf(jsonReader.nextBoolean());
+			case BEGIN_OBJECT:
+			case BEGIN_ARRAY:
+				StringWriter stringWriter = new StringWriter();
+				JsonWriter jsonWriter = new JsonWriter(stringWriter);
+				copy(jsonReader, jsonWriter);
+				jsonWriter.flush();
+				return stringWriter.toString();
+			default:
+				return jsonReader.nextString();
+		}
+	}
+
+	/**
+	 * 复制当前值
+	 */
+	private static void copy(JsonReader jsonReader, JsonWriter jsonWriter) throws IOException {
+		switch (jsonReader.peek()) {
+			case BEGIN_OBJECT:
+				jsonReader.beginObject();
+				jsonWriter.beginObject();
+				while (jsonReader.hasNext()) {
+					jsonWriter.name(jsonReader.nextName());
+					copy(jsonReader, jsonWriter);
+				}
+				jsonReader.endObject();
+				jsonWriter.endObject();
+				break;
+			case BEGIN_ARRAY:
+				jsonReader.beginArray();
+				jsonWriter.beginArray();
+				while (jsonReader.hasNext()) {
+					copy(jsonReader, jsonWriter);
+				}
+				jsonReader.endArray();
+				jsonWriter.endArray();
+				break;
+			case BOOLEAN:
+				jsonWriter.value(jsonReader.nextBoolean());
+				break;
+			case NUMBER:
+				jsonWriter.value(new BigDecimal(jsonReader.nextString()));
+				break;
+			case NULL:
+				jsonReader.nextNull();
+				jsonWriter.nullValue();
+				break;
+			default:
+				jsonWriter.value(jsonReader.nextString());
+				break;
+		}
+	}
 }
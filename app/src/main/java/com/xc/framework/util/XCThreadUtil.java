@@ -23,7 +23,7 @@ public class XCThreadUtil {
      *
      * @return XCThreadUtil实例
      */
-    public static XCThreadUtil getInstance() {
+    public static synchronized XCThreadUtil getInstance() {
         if (mThreadManager == null) {
             mThreadManager = new XCThreadUtil();
             threadMap = new LinkedHashMap<String, Thread>();
@@ -37,18 +37,30 @@ public class XCThreadUtil {
      * @param threadName 线程名
      * @param thread     线程
      */
-    public void addThreadList(String threadName, Thread thread) {
+    public synchronized void addThreadList(String threadName, Thread thread) {
         if (threadMap != null) {
             threadMap.put(threadName, thread);
         }
     }
 
+    /**
+     * 从集合中移除线程(不中断),集合中同名的是其它线程时不移除
+     *
+     * @param threadName 线程名
+     * @param thread     线程
+     */
+    public synchronized void removeThreadList(String threadName, Thread thread) {
+        if (threadMap != null && threadMap.get(threadName) == thread) {
+            threadMap.remove(threadName);
+        }
+    }
+
     /**
      * 停止某个线程
      *
      * @param threadNameOrUrlName 线程名或url名
      */
-    public void stopSingle(String threadNameOrUrlName) {
+    public synchronized void stopSingle(String threadNameOrUrlName) {
         try {
             if (threadMap != null && !threadMap.isEmpty()) {
                 interruptThread(threadMap.get(threadNameOrUrlName));
@@ -61,7 +73,7 @@ public class XCThreadUtil {
     /**
      * 停止所有线程
      */
-    public void stopAll() {
+    public synchronized void stopAll() {
         try {
             if (threadMap != null && !threadMap.isEmpty()) {
                 for (Thread thread : threadMap.values()) {
@@ -94,7 +106,7 @@ public class XCThreadUtil {
      *
      * @return 线程集合
      */
-    public List<Thread> getThreadList() {
+    public synchronized List<Thread> getThreadList() {
         List<Thread> tempList = new ArrayList<Thread>();
         if (threadMap != null && !threadMap.isEmpty()) {
             for (Thread thread : threadMap.values()) {
@@ -109,7 +121,7 @@ public class XCThreadUtil {
      *
      * @return 线程数
      */
-    public int getThreadCount() {
+    public synchronized int getThreadCount() {
         if (threadMap != null) {
             return threadMap.size();
         }
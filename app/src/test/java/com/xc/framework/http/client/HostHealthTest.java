@@ -0,0 +1,169 @@
+package com.xc.framework.http.client;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description HostHealth熔断器状态转换及重试预算测试
+ */
+public class HostHealthTest {
+	private static final String HOST = "example.com";
+	private TestHostHealth health;
+	private RetryPolicy policy;
+
+	/**
+	 * 手动推进时间
+	 */
+	private static class TestHostHealth extends HostHealth {
+		long time = 1000;
+
+		@Override
+		long now() {
+			return time;
+		}
+	}
+
+	@Before
+	public void setUp() {
+		health = new TestHostHealth();
+		policy = new RetryPolicy();
+		policy.setCircuitFailureThreshold(3);
+		policy.setCircuitOpenTime(5000);
+		policy.setRetryBudgetTokens(2);
+		policy.setRetryBudgetRatio(0.5);
+	}
+
+	@Test
+	public void closedUntilThresholdReached() throws Exception {
+		health.onFailure(HOST, policy);
+		health.onFailure(HOST, policy);
+		assertFalse(health.isCircuitOpen(HOST));
+		health.checkRequest(HOST, policy);
+		health.onFailure(HOST, policy);
+		assertTrue(health.isCircuitOpen(HOST));
+		assertEquals(1, health.getCircuitOpenCount());
+	}
+
+	@Test
+	public void successResetsConsecutiveFailures() {
+		health.onFailure(HOST, policy);
+		health.onFailure(HOST, policy);
+		health.onSuccess(HOST, policy);
+		health.onFailure(HOST, policy);
+		health.onFailure(HOST, policy);
+		assertFalse(health.isCircuitOpen(HOST));
+	}
+
+	@Test
+	public void openFailsFastUntilOpenTimeElapsed() throws Exception {
+		open();
+		assertFastFail();
+		health.time += 4999;
+		assertFastFail();
+		assertEquals(2, health.getFastFailCount());
+	}
+
+	@Test
+	public void halfOpenAllowsSingleTrial() throws Exception {
+		open();
+		health.time += 5000;
+		health.checkRequest(HOST, policy);// 试探请求
+		assertFastFail();// 试探中其它请求快速失败
+	}
+
+	@Test
+	public void trialSuccessCloses() throws Exception {
+		open();
+		health.time += 5000;
+		health.checkRequest(HOST, policy);
+		health.onSuccess(HOST, policy);
+		assertFalse(health.isCircuitOpen(HOST));
+		health.checkRequest(HOST, policy);
+		health.checkRequest(HOST, policy);
+	}
+
+	@Test
+	public void trialFailureReopens() throws Exception {
+		open();
+		health.time += 5000;
+		health.checkRequest(HOST, policy);
+		health.onFailure(HOST, policy);
+		assertTrue(health.isCircuitOpen(HOST));
+		assertEquals(2, health.getCircuitOpenCount());
+		health.time += 4999;
+		assertFastFail();
+		health.time += 1;
+		health.checkRequest(HOST, policy);
+	}
+
+	@Test
+	public void abortedTrialAllowsAnotherTrial() throws Exception {
+		open();
+		health.time += 5000;
+		health.checkRequest(HOST, policy);
+		health.onAbort(HOST);
+		assertTrue(health.isCircuitOpen(HOST));
+		health.checkRequest(HOST, policy);
+	}
+
+	@Test
+	public void thresholdZeroNeverOpens() throws Exception {
+		RetryPolicy none = RetryPolicy.none();
+		for (int i = 0; i < 20; i++) {
+			health.onFailure(HOST, none);
+		}
+		assertFalse(health.isCircuitOpen(HOST));
+		health.checkRequest(HOST, none);
+	}
+
+	@Test
+	public void hostsAreIndependent() throws Exception {
+		open();
+		health.checkRequest("other.com", policy);
+		assertFalse(health.isCircuitOpen("other.com"));
+	}
+
+	@Test
+	public void retryBudgetIsConsumedAndRefilled() {
+		assertTrue(health.acquireRetry(HOST, policy));
+		assertTrue(health.acquireRetry(HOST, policy));
+		assertFalse(health.acquireRetry(HOST, policy));
+		health.onSuccess(HOST, policy);
+		assertFalse(health.acquireRetry(HOST, policy));// 0.5个令牌不足一次重试
+		health.onSuccess(HOST, policy);
+		assertTrue(health.acquireRetry(HOST, policy));
+		assertEquals(3, health.getRetryCount());
+		assertEquals(2, health.getRetryRejectedCount());
+	}
+
+	@Test
+	public void resetClosesCircuit() throws Exception {
+		open();
+		health.reset(HOST);
+		assertFalse(health.isCircuitOpen(HOST));
+		health.checkRequest(HOST, policy);
+	}
+
+	private void open() {
+		for (int i = 0; i < policy.getCircuitFailureThreshold(); i++) {
+			health.onFailure(HOST, policy);
+		}
+		assertTrue(health.isCircuitOpen(HOST));
+	}
+
+	private void assertFastFail() {
+		try {
+			health.checkRequest(HOST, policy);
+			fail("expected CircuitOpenException");
+		} catch (HostHealth.CircuitOpenException e) {
+		}
+	}
+}
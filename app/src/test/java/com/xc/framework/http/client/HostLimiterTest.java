@@ -0,0 +1,129 @@
+package com.xc.framework.http.client;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description HostLimiter按主机并发限制测试
+ */
+public class HostLimiterTest {
+	private static final String HOST = "example.com";
+	private HostLimiter limiter;
+
+	@Before
+	public void setUp() {
+		limiter = new HostLimiter();
+	}
+
+	@Test
+	public void acquireBelowLimitDoesNotBlock() {
+		assertTrue(limiter.acquire(HOST, 2));
+		assertTrue(limiter.acquire(HOST, 2));
+		assertEquals(2, limiter.getRunningCount(HOST));
+		assertEquals(0, limiter.getWaitingCount());
+	}
+
+	@Test
+	public void acquireAtLimitWaitsForRelease() throws Exception {
+		limiter.acquire(HOST, 2);
+		limiter.acquire(HOST, 2);
+		Waiter waiter = new Waiter(HOST, 2);
+		waiter.start();
+		awaitWaiting(1);
+		assertFalse(waiter.done.await(100, TimeUnit.MILLISECONDS));
+		assertEquals(2, limiter.getRunningCount(HOST));
+		limiter.release(HOST);
+		assertTrue(waiter.done.await(2, TimeUnit.SECONDS));
+		assertTrue(waiter.acquired.get());
+		assertEquals(2, limiter.getRunningCount(HOST));
+		assertEquals(0, limiter.getWaitingCount());
+	}
+
+	@Test
+	public void otherHostsAreNotLimited() {
+		limiter.acquire(HOST, 1);
+		assertTrue(limiter.acquire("other.com", 1));
+		assertTrue(limiter.acquire("example.com:8080", 1));
+		assertEquals(1, limiter.getRunningCount(HOST));
+		assertEquals(3, limiter.getRunningCount());
+	}
+
+	@Test
+	public void zeroLimitIsUnlimited() {
+		for (int i = 0; i < 100; i++) {
+			assertTrue(limiter.acquire(HOST, 0));
+		}
+		assertEquals(100, limiter.getRunningCount(HOST));
+	}
+
+	@Test
+	public void interruptedWaitReturnsFalse() throws Exception {
+		limiter.acquire(HOST, 1);
+		Waiter waiter = new Waiter(HOST, 1);
+		waiter.start();
+		awaitWaiting(1);
+		waiter.interrupt();
+		assertTrue(waiter.done.await(2, TimeUnit.SECONDS));
+		assertFalse(waiter.acquired.get());
+		assertTrue(waiter.interrupted.get());// 保留中断状态
+		assertEquals(1, limiter.getRunningCount(HOST));
+		assertEquals(0, limiter.getWaitingCount());
+	}
+
+	@Test
+	public void releaseRemovesIdleHost() {
+		limiter.acquire(HOST, 1);
+		limiter.release(HOST);
+		assertEquals(0, limiter.getRunningCount(HOST));
+		assertEquals(0, limiter.getRunningCount());
+	}
+
+	@Test
+	public void getHost() {
+		assertEquals("example.com", HostLimiter.getHost("http://Example.COM/a?b=c"));
+		assertEquals("example.com:8080", HostLimiter.getHost("https://example.com:8080/a"));
+		assertEquals("not a url", HostLimiter.getHost("not a url"));
+	}
+
+	private void awaitWaiting(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 2000;
+		while (limiter.getWaitingCount() != count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(count, limiter.getWaitingCount());
+	}
+
+	/**
+	 * 在独立线程获取许可
+	 */
+	private class Waiter extends Thread {
+		final String host;
+		final int maxRequests;
+		final AtomicBoolean acquired = new AtomicBoolean();
+		final AtomicBoolean interrupted = new AtomicBoolean();
+		final CountDownLatch done = new CountDownLatch(1);
+
+		Waiter(String host, int maxRequests) {
+			this.host = host;
+			this.maxRequests = maxRequests;
+		}
+
+		@Override
+		public void run() {
+			acquired.set(limiter.acquire(host, maxRequests));
+			interrupted.set(isInterrupted());
+			done.countDown();
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package com.xc.framework.http.client;
+
+import android.os.Handler;
+
+import com.xc.framework.http.HttpParam;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description HttpDispatcher共享执行中的相同GET请求测试
+ */
+public class HttpDispatcherTest {
+	private static final AtomicInteger urlIndex = new AtomicInteger();
+
+	/**
+	 * 不发送网络请求,执行时等待release后返回固定结果
+	 */
+	private static class TestTask extends HttpTask {
+		final Object response;
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger requestCount = new AtomicInteger();
+
+		TestTask(String url, Object tag, Object response) {
+			super(null, newParam(url, tag), new Handler(), 0, newConfig(), null, null, false);
+			this.response = response;
+		}
+
+		@Override
+		boolean isNetworkUse() {
+			return true;
+		}
+
+		@Override
+		Object requestStart() {
+			requestCount.incrementAndGet();
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {// 被取消
+				return null;
+			}
+			return response;
+		}
+	}
+
+	@Test
+	public void followerReceivesLeaderResult() throws Exception {
+		String url = newUrl();
+		TestTask leader = new TestTask(url, "leader", "leader result");
+		TestTask follower = new TestTask(url, "follower", "follower result");
+		follower.release.countDown();
+		long shared = HttpDispatcher.getInstance().getSharedCount();
+		assertTrue(HttpDispatcher.getInstance().enqueue(leader, HttpDispatcher.LANE_API));
+		assertTrue(leader.started.await(2, TimeUnit.SECONDS));
+		assertTrue(HttpDispatcher.getInstance().enqueue(follower, HttpDispatcher.LANE_API));
+		leader.release.countDown();
+		awaitResult(follower);
+		assertEquals("leader result", follower.getResult());
+		assertEquals(0, follower.requestCount.get());// 未发送请求
+		assertEquals(1, leader.requestCount.get());
+		assertEquals(shared + 1, HttpDispatcher.getInstance().getSharedCount());
+	}
+
+	@Test
+	public void followerRequestsItselfWhenLeaderCancelled() throws Exception {
+		String url = newUrl();
+		TestTask leader = new TestTask(url, "leader" + url, "leader result");
+		TestTask follower = new TestTask(url, "follower" + url, "follower result");
+		follower.release.countDown();
+		HttpDispatcher.getInstance().enqueue(leader, HttpDispatcher.LANE_API);
+		assertTrue(leader.started.await(2, TimeUnit.SECONDS));
+		HttpDispatcher.getInstance().enqueue(follower, HttpDispatcher.LANE_API);
+		assertEquals(1, HttpDispatcher.getInstance().cancel("leader" + url));
+		assertTrue(leader.isCancelled());
+		awaitResult(follower);
+		assertEquals("follower result", follower.getResult());// 重新提交后自己请求
+		assertEquals(1, follower.requestCount.get());
+		assertFalse(follower.isCancelled());
+	}
+
+	@Test
+	public void cancelFollowerByTag() throws Exception {
+		String url = newUrl();
+		TestTask leader = new TestTask(url, "leader" + url, "leader result");
+		TestTask cancelled = new TestTask(url, "cancelled" + url, null);
+		TestTask kept = new TestTask(url, "kept" + url, null);
+		HttpDispatcher.getInstance().enqueue(leader, HttpDispatcher.LANE_API);
+		assertTrue(leader.started.await(2, TimeUnit.SECONDS));
+		HttpDispatcher.getInstance().enqueue(cancelled, HttpDispatcher.LANE_API);
+		HttpDispatcher.getInstance().enqueue(kept, HttpDispatcher.LANE_API);
+		assertEquals(1, HttpDispatcher.getInstance().cancel("cancelled" + url));
+		assertTrue(cancelled.isCancelled());
+		assertFalse(leader.isCancelled());
+		leader.release.countDown();
+		awaitResult(kept);
+		assertEquals("leader result", kept.getResult());
+		assertNull(cancelled.getResult());// 被取消的不返回结果
+		assertEquals(0, cancelled.requestCount.get());
+	}
+
+	@Test
+	public void onlyPlainGetIsShared() {
+		String url = newUrl();
+		assertEquals("GET " + url, new TestTask(url, null, null).getShareKey());
+		assertNull(new HttpTask(null, newParam(url, null), new Handler(), 0, new ConnectionConfig(), null, null, false).getShareKey());// 未开启
+		HttpParam post = newParam(url, null);
+		post.addPostParam("key", "value");
+		assertNull(new HttpTask(null, post, new Handler(), 0, newConfig(), null, null, false).getShareKey());
+		HttpParam save = newParam(url, null);
+		save.setSaveFilePath("/tmp/file");
+		assertNull(new HttpTask(null, save, new Handler(), 0, newConfig(), null, null, false).getShareKey());
+	}
+
+	private static String newUrl() {
+		return "http://example.com/dispatcher/" + urlIndex.incrementAndGet();
+	}
+
+	private static HttpParam newParam(String url, Object tag) {
+		HttpParam param = new HttpParam(url);
+		param.setTag(tag);
+		return param;
+	}
+
+	private static ConnectionConfig newConfig() {
+		ConnectionConfig config = new ConnectionConfig();
+		config.setShareRequest(true);
+		return config;
+	}
+
+	private static void awaitResult(HttpTask task) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 2000;
+		while (task.getResult() == null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com.xc.framework.http.client;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description HttpMetricsCollector直方图分桶及分位数测试
+ */
+public class HttpMetricsCollectorTest {
+	private static final String HOST = "example.com";
+	private HttpMetricsCollector collector;
+
+	@Before
+	public void setUp() {
+		collector = new HttpMetricsCollector();
+	}
+
+	@Test
+	public void bucketUpperBoundIsInclusive() {
+		double[] bounds = HttpMetricsCollector.getBounds();
+		for (int i = 0; i < bounds.length; i++) {
+			collector.reset();
+			call(HOST, bounds[i], 200);
+			assertEquals("bound " + bounds[i], i, bucketOf(collector.getHistogram(HOST)));
+			collector.reset();
+			call(HOST, bounds[i] + 0.001, 200);
+			assertEquals("above " + bounds[i], i + 1, bucketOf(collector.getHistogram(HOST)));
+		}
+	}
+
+	@Test
+	public void overflowBucket() {
+		call(HOST, 30001, 200);
+		call(HOST, 120000, 200);
+		long[] histogram = collector.getHistogram(HOST);
+		assertEquals(HttpMetricsCollector.getBounds().length + 1, histogram.length);
+		assertEquals(2, histogram[histogram.length - 1]);
+		assertEquals(120000, collector.getPercentile(HOST, 100), 0.001);
+	}
+
+	@Test
+	public void zeroDurationGoesToFirstBucket() {
+		call(HOST, 0, 200);
+		assertEquals(0, bucketOf(collector.getHistogram(HOST)));
+	}
+
+	@Test
+	public void percentileReturnsBucketBound() {
+		for (int i = 0; i < 90; i++) {
+			call(HOST, 20, 200);// 25ms桶
+		}
+		for (int i = 0; i < 10; i++) {
+			call(HOST, 800, 200);// 1000ms桶
+		}
+		assertEquals(25, collector.getPercentile(HOST, 50), 0.001);
+		assertEquals(25, collector.getPercentile(HOST, 90), 0.001);
+		assertEquals(800, collector.getPercentile(HOST, 91), 0.001);// 不超过最大值
+		assertEquals(800, collector.getPercentile(HOST, 100), 0.001);
+		assertEquals(25, collector.getPercentile(HOST, 0), 0.001);
+	}
+
+	@Test
+	public void noDataReturnsMinusOne() {
+		assertEquals(-1, collector.getPercentile(HOST, 50), 0.001);
+		assertEquals(-1, collector.getTtfbPercentile(HOST, 50), 0.001);
+		assertEquals(0, collector.getCount(HOST));
+		assertEquals(HttpMetricsCollector.getBounds().length + 1, collector.getHistogram(HOST).length);
+	}
+
+	@Test
+	public void ttfbOnlyRecordedWhenMeasured() {
+		call(HOST, 100, 200);
+		assertEquals(-1, collector.getTtfbPercentile(HOST, 50), 0.001);
+		HttpCallMetrics metrics = newMetrics(HOST, 100, 200);
+		metrics.ttfbNanos = 40 * 1000000L;
+		collector.onCallEnd(metrics);
+		assertEquals(40, collector.getTtfbPercentile(HOST, 50), 0.001);
+	}
+
+	@Test
+	public void errorsAreNetworkFailuresAnd5xx() {
+		call(HOST, 10, 200);
+		call(HOST, 10, 404);
+		call(HOST, 10, 500);
+		call(HOST, 10, 503);
+		HttpCallMetrics metrics = newMetrics(HOST, 10, 0);
+		metrics.error = new IOException("reset");
+		collector.onCallEnd(metrics);
+		assertEquals(5, collector.getCount(HOST));
+		assertEquals(3, collector.getErrorCount(HOST));
+	}
+
+	@Test
+	public void hostsAreSeparated() {
+		call(HOST, 10, 200);
+		call("other.com", 5000, 500);
+		assertEquals(1, collector.getCount(HOST));
+		assertEquals(0, collector.getErrorCount(HOST));
+		assertEquals(10, collector.getPercentile(HOST, 100), 0.001);
+		assertEquals(5000, collector.getPercentile("other.com", 100), 0.001);
+		assertTrue(collector.getHosts().contains("other.com"));
+		collector.reset();
+		assertEquals(0, collector.getHosts().size());
+	}
+
+	private void call(String host, double totalMillis, int statusCode) {
+		collector.onCallEnd(newMetrics(host, totalMillis, statusCode));
+	}
+
+	private static HttpCallMetrics newMetrics(String host, double totalMillis, int statusCode) {
+		HttpCallMetrics metrics = new HttpCallMetrics("GET", "http://" + host + "/", host);
+		metrics.totalNanos = Math.round(totalMillis * 1000000d);
+		metrics.statusCode = statusCode;
+		return metrics;
+	}
+
+	private static int bucketOf(long[] histogram) {
+		int bucket = -1;
+		for (int i = 0; i < histogram.length; i++) {
+			if (histogram[i] > 0) {
+				assertEquals("single bucket expected", -1, bucket);
+				bucket = i;
+			}
+		}
+		return bucket;
+	}
+}
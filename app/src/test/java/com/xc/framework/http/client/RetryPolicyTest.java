@@ -0,0 +1,110 @@
+package com.xc.framework.http.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ZhangXuanChen
+ * @date 2021-4-15
+ * @package com.xc.framework.http.client
+ * @description RetryPolicy退避时间测试
+ */
+public class RetryPolicyTest {
+
+	@Test
+	public void delayDoublesWithinJitterBounds() {
+		RetryPolicy policy = new RetryPolicy();
+		policy.setBaseDelay(500);
+		policy.setMaxDelay(10 * 1000);
+		for (int i = 0; i < 200; i++) {
+			assertBetween(policy.getDelay(1), 250, 500);
+			assertBetween(policy.getDelay(2), 500, 1000);
+			assertBetween(policy.getDelay(3), 1000, 2000);
+			assertBetween(policy.getDelay(4), 2000, 4000);
+		}
+	}
+
+	@Test
+	public void delayIsCappedAtMaxDelay() {
+		RetryPolicy policy = new RetryPolicy();
+		policy.setBaseDelay(500);
+		policy.setMaxDelay(3000);
+		for (int i = 0; i < 200; i++) {
+			assertBetween(policy.getDelay(5), 1500, 3000);
+			assertBetween(policy.getDelay(64), 1500, 3000);// 移位不溢出
+			assertBetween(policy.getDelay(Integer.MAX_VALUE), 1500, 3000);
+		}
+	}
+
+	@Test
+	public void delayBeforeFirstRetryUsesBaseDelay() {
+		RetryPolicy policy = new RetryPolicy();
+		policy.setBaseDelay(100);
+		for (int i = 0; i < 200; i++) {
+			assertBetween(policy.getDelay(0), 50, 100);
+			assertBetween(policy.getDelay(-1), 50, 100);
+		}
+	}
+
+	@Test
+	public void zeroBaseDelayRetriesImmediately() {
+		RetryPolicy policy = new RetryPolicy();
+		policy.setBaseDelay(0);
+		assertEquals(0, policy.getDelay(1));
+		assertEquals(0, policy.getDelay(10));
+	}
+
+	@Test
+	public void jitterSpreadsDelays() {
+		RetryPolicy policy = new RetryPolicy();
+		policy.setBaseDelay(1000);
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		for (int i = 0; i < 500; i++) {
+			long delay = policy.getDelay(1);
+			min = Math.min(min, delay);
+			max = Math.max(max, delay);
+		}
+		assertTrue("delays should not all be equal: " + min + "-" + max, max - min > 100);
+	}
+
+	@Test
+	public void noneDisablesRetryAndCircuit() {
+		RetryPolicy policy = RetryPolicy.none();
+		assertEquals(0, policy.getMaxRetries());
+		assertEquals(0, policy.getCircuitFailureThreshold());
+	}
+
+	@Test
+	public void circuitIsOptIn() {
+		assertEquals(0, new RetryPolicy().getCircuitFailureThreshold());
+	}
+
+	@Test
+	public void onlyGatewayErrorsAreHostFailures() {
+		assertTrue(RetryPolicy.isHostFailure(502));
+		assertTrue(RetryPolicy.isHostFailure(503));
+		assertTrue(RetryPolicy.isHostFailure(504));
+		assertFalse(RetryPolicy.isHostFailure(500));
+		assertFalse(RetryPolicy.isHostFailure(501));
+		assertFalse(RetryPolicy.isHostFailure(404));
+		assertFalse(RetryPolicy.isHostFailure(200));
+	}
+
+	@Test
+	public void idempotentMethods() {
+		assertTrue(RetryPolicy.isIdempotent("GET"));
+		assertTrue(RetryPolicy.isIdempotent("put"));
+		assertTrue(RetryPolicy.isIdempotent("DELETE"));
+		assertFalse(RetryPolicy.isIdempotent("POST"));
+		assertFalse(RetryPolicy.isIdempotent("PATCH"));
+		assertFalse(RetryPolicy.isIdempotent(null));
+	}
+
+	private static void assertBetween(long value, long min, long max) {
+		assertTrue(value + " not in [" + min + ", " + max + "]", value >= min && value <= max);
+	}
+}